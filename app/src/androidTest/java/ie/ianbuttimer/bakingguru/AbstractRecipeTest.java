@@ -59,7 +59,7 @@ public class AbstractRecipeTest {
 
         boolean populate = Utils.getManifestMetaDataBoolean(appContext, appContext.getString(R.string.prepopulate_db_key), false);
 
-        FileReader<Recipe, Recipe.Loader> reader = new FileReader<>(testContext, path, new Recipe.Loader());
+        FileReader<Recipe, Recipe.Loader> reader = new FileReader<>(testContext, path, Recipe.class);
 
         try {
             sRecipes = reader.readArray();
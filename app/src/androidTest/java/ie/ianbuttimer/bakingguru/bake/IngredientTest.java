@@ -25,7 +25,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.parceler.Parcels;
 
+import ie.ianbuttimer.bakingguru.data.LoadableRegistry;
+import ie.ianbuttimer.bakingguru.data.ParseDiagnostics;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
 
 /**
  * Test class for Ingredient class
@@ -53,6 +57,28 @@ public class IngredientTest extends ParcelTest {
         assertIngredients(original, unwrapped, "");
     }
 
+    @Test
+    public void ingredientLenientTest() throws Exception {
+
+        ParseDiagnostics.reset();
+
+        Ingredient read = LoadableRegistry.read(Ingredient.class,
+                "{\"quantity\":\"1 1/2\",\"measure\":null,\"ingredient\":42}");
+
+        assertNotNull(makeAssertMessage("Lenient read"), read);
+        assertEquals(makeAssertMessage("Lenient quantity"), 1.5, read.getQuantity());
+        assertEquals(makeAssertMessage("Lenient measure"), "", read.getMeasure());
+        assertEquals(makeAssertMessage("Lenient ingredient"), "42", read.getIngredient());
+        assertEquals(makeAssertMessage("Lenient coerced"), 2, ParseDiagnostics.getCoerced());
+        assertEquals(makeAssertMessage("Lenient nulls"), 1, ParseDiagnostics.getNulls());
+
+        read = LoadableRegistry.read(Ingredient.class, "{\"quantity\":\"some\",\"measure\":[1]}");
+
+        assertNotNull(makeAssertMessage("Lenient invalid read"), read);
+        assertEquals(makeAssertMessage("Lenient invalid quantity"), 0.0, read.getQuantity());
+        assertEquals(makeAssertMessage("Lenient invalid"), 1, ParseDiagnostics.getInvalid());
+        assertEquals(makeAssertMessage("Lenient skipped"), 1, ParseDiagnostics.getSkipped());
+    }
 
     /**
      * Assert two Ingredient object are the same
@@ -25,6 +25,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.parceler.Parcels;
 
+import java.io.IOException;
+import java.util.List;
+
+import ie.ianbuttimer.bakingguru.data.ByteInput;
+import ie.ianbuttimer.bakingguru.data.LoadableRegistry;
+import ie.ianbuttimer.bakingguru.data.ParallelDecoder;
+
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.*;
 
@@ -64,6 +71,76 @@ public class RecipeTest extends ParcelTest {
         assertRecipes(original, unwrapped, "");
     }
 
+    @Test
+    public void recipeJsonTest() throws Exception {
+
+        String json = original.toJson();
+
+        Recipe read = new Recipe().read(json);
+
+        assertRecipes(original, read, "Json ");
+        assertFalse(makeAssertMessage("Json full"), read.isSummary());
+    }
+
+    @Test
+    public void recipeSummaryJsonTest() throws Exception {
+
+        Recipe summary = new Recipe();
+        summary.setId(original.getId());
+        summary.setName(original.getName());
+        summary.setSummary(true);
+
+        Recipe read = new Recipe().read(summary.toJson());
+
+        assertTrue(makeAssertMessage("Json summary"), read.isSummary());
+    }
+
+    @Test
+    public void recipeBinaryTest() throws Exception {
+
+        byte[] data = RecipeCodec.encode(original);
+
+        assertTrue(makeAssertMessage("Binary format"), RecipeCodec.isEncoded(data));
+
+        Recipe read = RecipeCodec.decode(data);
+
+        assertRecipes(original, read, "Binary ");
+    }
+
+    @Test(expected = IOException.class)
+    public void binaryNegativeLengthTest() throws Exception {
+        // string length varint with the top bit set, i.e. negative as a long
+        byte[] data = new byte[] {
+                (byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x01
+        };
+        new ByteInput(data).readString();
+    }
+
+    @Test
+    public void recipeParallelListTest() throws Exception {
+
+        int count = ParallelDecoder.PARALLEL_THRESHOLD * 2;
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            original.setId(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(original.toJson());
+        }
+        sb.append(",null,1]");  // non-object elements are skipped, as in a serial read
+
+        List<Recipe> list = LoadableRegistry.readList(Recipe.class, sb.toString());
+
+        assertNotNull(makeAssertMessage("Parallel list"), list);
+        assertEquals(makeAssertMessage("Parallel list size"), count, list.size());
+        for (int i = 0; i < count; i++) {
+            original.setId(i);
+            assertRecipes(original, list.get(i), "Parallel " + i + " ");
+        }
+    }
+
     @Test
     public void recipeValuesTest() {
         String name = "banana CUPCAKES";
@@ -25,6 +25,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.parceler.Parcels;
 
+import ie.ianbuttimer.bakingguru.data.LoadableRegistry;
+import ie.ianbuttimer.bakingguru.data.ParseDiagnostics;
+
 import static junit.framework.Assert.assertEquals;
 
 
@@ -56,6 +59,24 @@ public class StepTest extends ParcelTest {
         assertSteps(original, unwrapped, "");
     }
 
+    @Test
+    public void stepLenientIdTest() throws Exception {
+
+        ParseDiagnostics.reset();
+
+        // a numeric string which is also truncated is a single coerced value
+        Step read = LoadableRegistry.read(Step.class, "{\"id\":\"2.5\"}");
+
+        assertEquals(makeAssertMessage("Lenient id"), 2, read.getId());
+        assertEquals(makeAssertMessage("Lenient coerced"), 1, ParseDiagnostics.getCoerced());
+
+        read = LoadableRegistry.read(Step.class, "{\"id\":\"99999999999\"}");
+
+        assertEquals(makeAssertMessage("Lenient range id"), 0, read.getId());
+        assertEquals(makeAssertMessage("Lenient range coerced"), 1, ParseDiagnostics.getCoerced());
+        assertEquals(makeAssertMessage("Lenient range invalid"), 1, ParseDiagnostics.getInvalid());
+    }
+
 
     /**
      * Assert two Step object are the same
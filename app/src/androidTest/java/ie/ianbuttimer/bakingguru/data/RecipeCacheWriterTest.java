@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.db.DbFixture;
+import ie.ianbuttimer.bakingguru.data.provider.ProviderFixture;
+import ie.ianbuttimer.bakingguru.data.provider.RecipeCursorProcessor;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RecipeCacheWriter.<br>
+ * The writer's queue is drained on the test thread, so the state between syncs is deterministic.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeCacheWriterTest {
+
+    private static final int RECIPE_COUNT = 4;
+
+    private ProviderFixture fixture;
+    private List<Runnable> tasks;
+    private RecipeCacheWriter writer;
+
+    /**
+     * Sync listener which records the result
+     */
+    private static class SyncResult implements RecipeCacheWriter.ISyncListener {
+
+        Boolean written;    // null until notified
+
+        @Override
+        public void onSyncComplete(boolean written) {
+            assertNull("Notified more than once", this.written);
+            this.written = written;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new ProviderFixture(InstrumentationRegistry.getTargetContext());
+        tasks = new ArrayList<>();
+        writer = new RecipeCacheWriter(fixture.getContentResolver(), new Executor() {
+            @Override
+            public void execute(@NonNull Runnable runnable) {
+                tasks.add(runnable);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.delete();
+    }
+
+    @Test
+    public void writeTest() throws Exception {
+        SyncResult result = new SyncResult();
+        writer.sync(DbFixture.makeRecipes(RECIPE_COUNT), result);
+        assertNull(makeAssertMessage("Write not drained"), result.written);
+
+        runTasks();
+
+        assertEquals(makeAssertMessage("Write result"), Boolean.TRUE, result.written);
+        assertArrayEquals(makeAssertMessage("Write ids"), new int[] { 1, 2, 3, 4 }, queryIds());
+        assertEquals(makeAssertMessage("Write written"), RECIPE_COUNT, writer.getWritten());
+        assertEquals(makeAssertMessage("Write depth"), 0, writer.getQueueDepth());
+
+        // unchanged recipes aren't rewritten
+        writer.sync(DbFixture.makeRecipes(RECIPE_COUNT));
+        runTasks();
+        assertEquals(makeAssertMessage("Write unchanged"), RECIPE_COUNT, writer.getUnchanged());
+        assertEquals(makeAssertMessage("Write rewritten"), RECIPE_COUNT, writer.getWritten());
+    }
+
+    @Test
+    public void coalesceTest() throws Exception {
+        SyncResult first = new SyncResult();
+        writer.sync(DbFixture.makeRecipes(RECIPE_COUNT), first);
+
+        Recipe[] recipes = DbFixture.makeRecipes(RECIPE_COUNT);
+        recipes[0].setName("Coalesced cake");
+        SyncResult second = new SyncResult();
+        writer.sync(recipes, second);
+
+        // the newer list replaces the queued recipes, before any are written
+        assertEquals(makeAssertMessage("Coalesce superseded"), Boolean.FALSE, first.written);
+        assertEquals(makeAssertMessage("Coalesce coalesced"), RECIPE_COUNT, writer.getCoalesced());
+        assertEquals(makeAssertMessage("Coalesce depth"), RECIPE_COUNT, writer.getQueueDepth());
+
+        runTasks();
+
+        assertEquals(makeAssertMessage("Coalesce result"), Boolean.TRUE, second.written);
+        assertEquals(makeAssertMessage("Coalesce written"), RECIPE_COUNT, writer.getWritten());
+        assertEquals(makeAssertMessage("Coalesce name"), "Coalesced cake", queryRecipe(1).getName());
+    }
+
+    @Test
+    public void requeueTest() throws Exception {
+        fixture.setFailBatch(true);
+        SyncResult failed = new SyncResult();
+        writer.sync(DbFixture.makeRecipes(RECIPE_COUNT), failed);
+        runTasks();
+
+        // batch is put back on the queue, and the list isn't complete so nothing is notified
+        assertNull(makeAssertMessage("Requeue not notified"), failed.written);
+        assertEquals(makeAssertMessage("Requeue failed"), RECIPE_COUNT, writer.getFailed());
+        assertEquals(makeAssertMessage("Requeue depth"), RECIPE_COUNT, writer.getQueueDepth());
+        assertEquals(makeAssertMessage("Requeue count"), 0, queryIds().length);
+
+        // queue is retried when more recipes are queued
+        fixture.setFailBatch(false);
+        SyncResult retry = new SyncResult();
+        writer.sync(DbFixture.makeRecipes(RECIPE_COUNT + 1), retry);
+        runTasks();
+
+        assertEquals(makeAssertMessage("Requeue superseded"), Boolean.FALSE, failed.written);
+        assertEquals(makeAssertMessage("Requeue result"), Boolean.TRUE, retry.written);
+        assertArrayEquals(makeAssertMessage("Requeue ids"), new int[] { 1, 2, 3, 4, 5 }, queryIds());
+        assertEquals(makeAssertMessage("Requeue empty"), 0, writer.getQueueDepth());
+    }
+
+    @Test
+    public void deleteAbsentTest() throws Exception {
+        writer.sync(DbFixture.makeRecipes(RECIPE_COUNT));
+        runTasks();
+        assertEquals(makeAssertMessage("Delete initial"), RECIPE_COUNT, queryIds().length);
+
+        Recipe[] recipes = DbFixture.makeRecipes(RECIPE_COUNT);
+        SyncResult first = new SyncResult();
+        writer.sync(Arrays.copyOf(recipes, 3), first);
+        SyncResult second = new SyncResult();
+        writer.sync(Arrays.copyOf(recipes, 2), second);
+        runTasks();
+
+        // only the latest complete list is kept
+        assertEquals(makeAssertMessage("Delete superseded"), Boolean.FALSE, first.written);
+        assertEquals(makeAssertMessage("Delete result"), Boolean.TRUE, second.written);
+        assertArrayEquals(makeAssertMessage("Delete ids"), new int[] { 1, 2 }, queryIds());
+        assertEquals(makeAssertMessage("Delete deleted"), 2, writer.getDeleted());
+    }
+
+    /**
+     * Run the writer's queued tasks
+     */
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    /**
+     * Query the stored recipe ids
+     * @return  ids in id order
+     */
+    private int[] queryIds() {
+        Cursor cursor = fixture.getContentResolver().query(BakingContract.RecipeEntry.CONTENT_URI,
+                new String[] { BakingContract.RecipeEntry._ID }, null, null, BakingContract.RecipeEntry._ID);
+        assertNotNull(makeAssertMessage("Ids cursor"), cursor);
+        int[] ids = new int[cursor.getCount()];
+        try {
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * Query a stored recipe
+     * @param id    Id of recipe
+     * @return  recipe
+     */
+    private Recipe queryRecipe(int id) {
+        Cursor cursor = fixture.getContentResolver().query(UriUtils.getRecpeWithIdUri(id), null, null, null, null);
+        assertNotNull(makeAssertMessage("Recipe cursor"), cursor);
+        try {
+            Recipe recipe = RecipeCursorProcessor.processSingle(cursor);
+            assertNotNull(makeAssertMessage("Recipe"), recipe);
+            return recipe;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
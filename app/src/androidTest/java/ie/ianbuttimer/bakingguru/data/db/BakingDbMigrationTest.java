@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.RecipeCodec;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for BakingDbHelper schema migrations
+ */
+@RunWith(AndroidJUnit4.class)
+public class BakingDbMigrationTest {
+
+    private static final int RECIPE_COUNT = 4;
+
+    private DbFixture fixture;
+    private Recipe[] recipes;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new DbFixture(InstrumentationRegistry.getTargetContext());
+        recipes = DbFixture.makeRecipes(RECIPE_COUNT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.delete();
+    }
+
+    @Test
+    public void migrationStepTest() throws Exception {
+        // check each step individually, from a fixture at the previous version
+        for (int version = BakingDbHelper.VERSION_JSON; version < BakingDbHelper.VERSION; version++) {
+            fixture.createVersion(recipes, version);
+
+            BakingDbHelper helper = fixture.open(version + 1);
+            try {
+                SQLiteDatabase db = helper.getReadableDatabase();
+                assertEquals(makeAssertMessage("Step " + version + " version"), version + 1, db.getVersion());
+                assertRecipes(db, "Step " + version + " ");
+            } finally {
+                helper.close();
+            }
+        }
+    }
+
+    @Test
+    public void migrationFullTest() throws Exception {
+        fixture.createVersion1(recipes);
+
+        BakingDbHelper helper = fixture.open(BakingDbHelper.VERSION);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+            assertEquals(makeAssertMessage("Full version"), BakingDbHelper.VERSION, db.getVersion());
+            assertRecipes(db, "Full ");
+            assertDerivedTables(db, "Full ");
+            assertTimestamps(db, "Full ");
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void timestampConversionTest() throws Exception {
+        // databases at these versions created by earlier releases still have text timestamps
+        fixture.createVersion(recipes, BakingDbHelper.VERSION_HASH);
+        fixture.execSQL("UPDATE " + BakingContract.RecipeEntry.TABLE_NAME + " SET " +
+                BakingContract.RecipeEntry.COLUMN_TIMESTAMP + "='" + DbFixture.TIMESTAMP + "';");
+
+        BakingDbHelper helper = fixture.open(BakingDbHelper.VERSION_EPOCH);
+        try {
+            assertTimestamps(helper.getReadableDatabase(), "Conversion ");
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void migrationFailureTest() throws Exception {
+        fixture.createVersion1(recipes);
+        // the json to binary step renames the recipes table to this, so make it fail
+        fixture.execSQL("CREATE TABLE " + BakingContract.RecipeEntry.TABLE_NAME + "_json (x INTEGER);");
+
+        BakingDbHelper helper = fixture.open(BakingDbHelper.VERSION);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+            // falls back to recreating the db
+            assertEquals(makeAssertMessage("Failure version"), BakingDbHelper.VERSION, db.getVersion());
+            assertEquals(makeAssertMessage("Failure count"), 0,
+                    count(db, BakingContract.RecipeEntry.TABLE_NAME, null));
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * Assert the fixture recipes are in the db
+     * @param db        Database to check
+     * @param msgPrefix Prefix for error message
+     */
+    private void assertRecipes(SQLiteDatabase db, String msgPrefix) throws Exception {
+        Cursor cursor = db.query(BakingContract.RecipeEntry.TABLE_NAME, null, null, null, null, null,
+                BakingContract.RecipeEntry._ID);
+        try {
+            assertEquals(makeAssertMessage(msgPrefix + "Count"), recipes.length, cursor.getCount());
+            int dataIndex = cursor.getColumnIndex(BakingContract.RecipeEntry.COLUMN_DATA);
+            for (Recipe expected : recipes) {
+                assertTrue(makeAssertMessage(msgPrefix + "Row"), cursor.moveToNext());
+                Recipe recipe = RecipeCodec.decode(cursor.getBlob(dataIndex));
+                assertEquals(makeAssertMessage(msgPrefix + "Id"), expected.getId(), recipe.getId());
+                assertEquals(makeAssertMessage(msgPrefix + "Name"), expected.getName(), recipe.getName());
+                assertArrayEquals(makeAssertMessage(msgPrefix + "Ingredients"),
+                        expected.getIngredients(), recipe.getIngredients());
+                assertArrayEquals(makeAssertMessage(msgPrefix + "Steps"), expected.getSteps(), recipe.getSteps());
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Assert the derived tables have been populated from the recipes
+     * @param db        Database to check
+     * @param msgPrefix Prefix for error message
+     */
+    private void assertDerivedTables(SQLiteDatabase db, String msgPrefix) {
+        int ingredients = 0;
+        int steps = 0;
+        for (Recipe recipe : recipes) {
+            ingredients += recipe.getIngredientCount();
+            steps += recipe.getStepCount();
+        }
+        assertEquals(makeAssertMessage(msgPrefix + "Ingredients"), ingredients,
+                count(db, BakingContract.IngredientEntry.TABLE_NAME, null));
+        assertEquals(makeAssertMessage(msgPrefix + "Steps"), steps,
+                count(db, BakingContract.StepEntry.TABLE_NAME, null));
+        assertEquals(makeAssertMessage(msgPrefix + "Search"), recipes.length,
+                count(db, BakingContract.SearchEntry.TABLE_NAME, null));
+        assertEquals(makeAssertMessage(msgPrefix + "Hash"), recipes.length,
+                count(db, BakingContract.RecipeEntry.TABLE_NAME, BakingContract.RecipeEntry.COLUMN_HASH + " NOT NULL"));
+        assertEquals(makeAssertMessage(msgPrefix + "Size"), recipes.length,
+                count(db, BakingContract.RecipeEntry.TABLE_NAME, BakingContract.RecipeEntry.COLUMN_SIZE +
+                        "=length(" + BakingContract.RecipeEntry.COLUMN_DATA + ")"));
+    }
+
+    /**
+     * Assert the fixture's local time text timestamps have been converted to msec since epoch
+     * @param db        Database to check
+     * @param msgPrefix Prefix for error message
+     */
+    private void assertTimestamps(SQLiteDatabase db, String msgPrefix) {
+        long expected = DbUtils.timestampToDate(DbFixture.TIMESTAMP).getTime();
+        assertEquals(makeAssertMessage(msgPrefix + "Timestamps"), recipes.length,
+                count(db, BakingContract.RecipeEntry.TABLE_NAME,
+                        "typeof(" + BakingContract.RecipeEntry.COLUMN_TIMESTAMP + ")='integer' AND " +
+                        BakingContract.RecipeEntry.COLUMN_TIMESTAMP + "=" + expected));
+    }
+
+    /**
+     * Count rows in a table
+     * @param db        Database to check
+     * @param table     Table to count
+     * @param selection Selection or <code>null</code> for all rows
+     * @return  row count
+     */
+    private int count(SQLiteDatabase db, String table, String selection) {
+        Cursor cursor = db.query(table, null, selection, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
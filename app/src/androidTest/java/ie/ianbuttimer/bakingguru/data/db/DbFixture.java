@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import ie.ianbuttimer.bakingguru.bake.Ingredient;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.Step;
+
+/**
+ * Test harness to create fixture databases with the schema of an earlier version, and to upgrade
+ * them using the migration steps in BakingDbHelper
+ */
+@SuppressWarnings("unused")
+public class DbFixture {
+
+    /** Name of fixture database file */
+    public static final String NAME = "bakingDbFixture.db";
+
+    /** Text timestamp used for fixture rows, in the format & device local time stored by version 1 */
+    public static final String TIMESTAMP = "2017-10-01 12:00:00";
+
+    /* the version 1 schema, as shipped */
+    private static final String SQL_CREATE_VERSION_1 =
+        "CREATE TABLE " + BakingContract.RecipeEntry.TABLE_NAME + " (" +
+            BakingContract.RecipeEntry._ID              + " INTEGER, " +
+            BakingContract.RecipeEntry.COLUMN_JSON      + " STRING NOT NULL, " +
+            BakingContract.RecipeEntry.COLUMN_TIMESTAMP + " TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "PRIMARY KEY (" + BakingContract.RecipeEntry._ID + ") ON CONFLICT REPLACE" +
+        ");";
+
+    private Context mContext;
+
+    /**
+     * Constructor
+     * @param context   The current context
+     */
+    public DbFixture(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Create test recipes
+     * @param count Number of recipes
+     * @return  recipe array
+     */
+    public static Recipe[] makeRecipes(int count) {
+        Recipe[] recipes = new Recipe[count];
+        for (int i = 0; i < count; i++) {
+            Recipe recipe = new Recipe();
+            recipe.setId(i + 1);
+            recipe.setName("Recipe " + (i + 1) + " cake");
+            recipe.setIngredients(new Ingredient[] {
+                    new Ingredient(1, "CUP", "flour"),
+                    new Ingredient(2, "TBLSP", "sugar")
+            });
+            recipe.setSteps(new Step[] {
+                    new Step(0, "step 0", "preheat the oven", "", ""),
+                    new Step(1, "step 1", "mix the flour", "", ""),
+                    new Step(2, "step 2", "bake", "", "")
+            });
+            recipe.setServings(8);
+            recipe.setImage("");
+            recipes[i] = recipe;
+        }
+        return recipes;
+    }
+
+    /**
+     * Delete the fixture database
+     */
+    public void delete() {
+        mContext.deleteDatabase(NAME);
+    }
+
+    /**
+     * Create a version 1 fixture database containing the specified recipes
+     * @param recipes   Recipes to add
+     */
+    public void createVersion1(Recipe[] recipes) {
+        delete();
+        SQLiteDatabase db = mContext.openOrCreateDatabase(NAME, Context.MODE_PRIVATE, null);
+        try {
+            db.execSQL(SQL_CREATE_VERSION_1);
+            ContentValues cv = new ContentValues();
+            for (Recipe recipe : recipes) {
+                cv.clear();
+                cv.put(BakingContract.RecipeEntry._ID, recipe.getId());
+                cv.put(BakingContract.RecipeEntry.COLUMN_JSON, recipe.toJson());
+                cv.put(BakingContract.RecipeEntry.COLUMN_TIMESTAMP, TIMESTAMP);
+                db.insertOrThrow(BakingContract.RecipeEntry.TABLE_NAME, null, cv);
+            }
+            db.setVersion(BakingDbHelper.VERSION_JSON);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Create a fixture database at the specified version containing the specified recipes. A version
+     * 1 database is created and upgraded one version at a time.
+     * @param recipes   Recipes to add
+     * @param version   Version to create
+     */
+    public void createVersion(Recipe[] recipes, int version) {
+        createVersion1(recipes);
+        for (int v = BakingDbHelper.VERSION_JSON + 1; v <= version; v++) {
+            open(v).close();
+        }
+    }
+
+    /**
+     * Open the fixture database, upgrading it if necessary
+     * @param version   Version to open as
+     * @return  database helper, which the caller must close
+     */
+    public BakingDbHelper open(int version) {
+        BakingDbHelper helper = new BakingDbHelper(mContext, NAME, version, null);
+        helper.getWritableDatabase();
+        return helper;
+    }
+
+    /**
+     * Execute sql on the fixture database, outside of a database helper
+     * @param sql   Sql to execute
+     */
+    public void execSQL(String sql) {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(NAME, Context.MODE_PRIVATE, null);
+        try {
+            db.execSQL(sql);
+        } finally {
+            db.close();
+        }
+    }
+}
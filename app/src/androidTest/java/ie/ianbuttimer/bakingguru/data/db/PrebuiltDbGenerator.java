@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+
+import ie.ianbuttimer.bakingguru.R;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.FileReader;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Build step to generate the prebuilt database asset from the json asset.<br>
+ * Run by the <code>generatePrebuiltDb</code> gradle task, which pulls the generated database from
+ * the app's external files directory into <code>src/main/assets</code>.<br>
+ * The task passes the {@link #GENERATE_ARG} instrumentation argument; without it the generator is
+ * skipped, so running the instrumentation tests doesn't overwrite anything.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PrebuiltDbGenerator {
+
+    /** Instrumentation argument to enable generation */
+    public static final String GENERATE_ARG = "generatePrebuiltDb";
+
+    private static final String NAME = "bakingDbPrebuilt.db";
+
+    @Test
+    public void generate() throws Exception {
+        assumeTrue("Prebuilt db generation not requested",
+                Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString(GENERATE_ARG)));
+
+        final Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(NAME);
+
+        final Recipe[] recipes = new FileReader<Recipe, Recipe.Loader>(
+                context, context.getString(R.string.json_asset_file), Recipe.class).readArray();
+        assertNotNull(makeAssertMessage("Json asset"), recipes);
+
+        BakingDbHelper helper = new BakingDbHelper(context, NAME, BakingDbHelper.VERSION,
+                new AbstractBakingDbPopulater(context) {
+                    @Override
+                    public void onCreate(SQLiteDatabase db) {
+                        saveToDb(db, recipes);
+                    }
+                });
+        helper.getWritableDatabase();
+        helper.close();
+
+        // shipped in rollback journal mode with no log, and compacted
+        File dbFile = context.getDatabasePath(NAME);
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        try {
+            query(db, "PRAGMA journal_mode=DELETE");
+            db.execSQL("VACUUM");
+            assertEquals(makeAssertMessage("Version"), BakingDbHelper.VERSION, db.getVersion());
+        } finally {
+            db.close();
+        }
+
+        File out = new File(context.getExternalFilesDir(null), context.getString(R.string.db_asset_file));
+        FileChannel in = new FileInputStream(dbFile).getChannel();
+        FileChannel channel = new FileOutputStream(out).getChannel();
+        try {
+            in.transferTo(0, in.size(), channel);
+        } finally {
+            in.close();
+            channel.close();
+        }
+        context.deleteDatabase(NAME);
+    }
+
+    /**
+     * Run a statement which returns a result
+     * @param db    Database to query
+     * @param sql   Sql to run
+     */
+    private void query(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+import ie.ianbuttimer.bakingguru.utils.PreferenceControl;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PrebuiltDbInstaller
+ */
+@RunWith(AndroidJUnit4.class)
+public class PrebuiltDbInstallerTest {
+
+    private static final int RECIPE_COUNT = 4;
+
+    private Context context;
+    private DbFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        fixture = new DbFixture(context);
+        Recipe[] recipes = DbFixture.makeRecipes(RECIPE_COUNT);
+        fixture.createVersion(recipes, BakingDbHelper.VERSION);
+
+        // as generated by PrebuiltDbGenerator, i.e. saved & accessed long before install
+        BakingDbHelper helper = fixture.open(BakingDbHelper.VERSION);
+        try {
+            ContentValues cv = new ContentValues();
+            cv.put(BakingContract.RecipeEntry.COLUMN_TIMESTAMP, 0L);
+            cv.put(BakingContract.RecipeEntry.COLUMN_ACCESSED, 0L);
+            helper.getWritableDatabase().update(BakingContract.RecipeEntry.TABLE_NAME, cv, null, null);
+        } finally {
+            helper.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.delete();
+    }
+
+    @Test
+    public void purgeAfterInstallTest() throws Exception {
+        assertTrue(makeAssertMessage("Touch"),
+                PrebuiltDbInstaller.touchTimestamps(context.getDatabasePath(DbFixture.NAME)));
+
+        BakingDbHelper helper = fixture.open(BakingDbHelper.VERSION);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            assertEquals(makeAssertMessage("Purged"), 0, purgeExpired(db));
+            assertEquals(makeAssertMessage("Count"), RECIPE_COUNT,
+                    DatabaseUtils.queryNumEntries(db, BakingContract.RecipeEntry.TABLE_NAME));
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void purgeWithoutTouchTest() throws Exception {
+        // sanity check that the fixture rows would otherwise be purged
+        BakingDbHelper helper = fixture.open(BakingDbHelper.VERSION);
+        try {
+            assertEquals(makeAssertMessage("Untouched purged"), RECIPE_COUNT,
+                    purgeExpired(helper.getWritableDatabase()));
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * Purge expired recipes, using the same selection as the db cache service
+     * @param db    Database to purge
+     * @return  Number of deleted rows
+     */
+    private int purgeExpired(SQLiteDatabase db) {
+        int days = PreferenceControl.getCacheLengthPreference(context);
+        long expiryMsec = DbUtils.getTimestamp() - (days * DAY_IN_MILLIS);
+        return db.delete(BakingContract.RecipeEntry.TABLE_NAME,
+                BakingContract.accessedLtEqBatchSelection(BakingContract.RecipeEntry.TABLE_NAME, RECIPE_COUNT),
+                new String[] { String.valueOf(expiryMsec) });
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
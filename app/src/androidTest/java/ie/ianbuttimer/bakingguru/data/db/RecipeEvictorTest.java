@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RecipeEvictor
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeEvictorTest {
+
+    private static final int RECIPE_COUNT = 6;
+
+    private DbFixture fixture;
+    private Recipe[] recipes;
+    private BakingDbHelper helper;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new DbFixture(InstrumentationRegistry.getTargetContext());
+        recipes = DbFixture.makeRecipes(RECIPE_COUNT);
+        fixture.createVersion(recipes, BakingDbHelper.VERSION);
+        helper = fixture.open(BakingDbHelper.VERSION);
+
+        // recipe 1 is the least recently accessed, recipe n the most
+        SQLiteDatabase db = helper.getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        for (Recipe recipe : recipes) {
+            cv.put(BakingContract.RecipeEntry.COLUMN_ACCESSED, recipe.getId() * 1000L);
+            db.update(BakingContract.RecipeEntry.TABLE_NAME, cv, BakingContract.ID_EQ_SELECTION,
+                    new String[] { String.valueOf(recipe.getId()) });
+        }
+        RecipeEvictor.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        helper.close();
+        fixture.delete();
+    }
+
+    @Test
+    public void incrementalVacuumTest() throws Exception {
+        // fixture db is upgraded from an old version, so is converted by the first eviction
+        SQLiteDatabase db = helper.getWritableDatabase();
+        RecipeEvictor.evict(db, totalSize(db));
+        assertEquals(makeAssertMessage("Auto vacuum"), 2,
+                DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+    }
+
+    @Test
+    public void newDbIncrementalVacuumTest() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        String name = "evictorNewDb.db";
+        context.deleteDatabase(name);
+        BakingDbHelper newHelper = new BakingDbHelper(context, name, BakingDbHelper.VERSION, null);
+        try {
+            assertEquals(makeAssertMessage("New db auto vacuum"), 2,
+                    DatabaseUtils.longForQuery(newHelper.getWritableDatabase(), "PRAGMA auto_vacuum", null));
+        } finally {
+            newHelper.close();
+            context.deleteDatabase(name);
+        }
+    }
+
+    @Test
+    public void withinBudgetTest() throws Exception {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        Bundle result = RecipeEvictor.evict(db, totalSize(db));
+
+        assertEquals(makeAssertMessage("Within evicted"), 0, result.getInt(RecipeEvictor.RESULT_EVICTED));
+        assertEquals(makeAssertMessage("Within count"), RECIPE_COUNT, count(db));
+        assertTrue(makeAssertMessage("Within db size"), result.getLong(RecipeEvictor.RESULT_DB_SIZE) > 0);
+    }
+
+    @Test
+    public void overBudgetTest() throws Exception {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long total = totalSize(db);
+        long size = total / RECIPE_COUNT;   // all fixture recipes are the same size
+
+        // budget for all but 2 recipes
+        Bundle result = RecipeEvictor.evict(db, total - (2 * size));
+
+        assertEquals(makeAssertMessage("Over evicted"), 2, result.getInt(RecipeEvictor.RESULT_EVICTED));
+        assertEquals(makeAssertMessage("Over evicted bytes"), 2 * size,
+                result.getLong(RecipeEvictor.RESULT_EVICTED_BYTES));
+        assertEquals(makeAssertMessage("Over count"), RECIPE_COUNT - 2, count(db));
+        // least recently accessed are evicted, with their derived rows
+        assertEquals(makeAssertMessage("Over min id"), 3, DatabaseUtils.longForQuery(db,
+                "SELECT MIN(" + BakingContract.RecipeEntry._ID + ") FROM " + BakingContract.RecipeEntry.TABLE_NAME, null));
+        assertEquals(makeAssertMessage("Over ingredients"), 0, DatabaseUtils.queryNumEntries(db,
+                BakingContract.IngredientEntry.TABLE_NAME, BakingContract.RECIPE_ID_EQ_SELECTION, new String[] { "1" }));
+
+        assertEquals(makeAssertMessage("Over runs"), 1, RecipeEvictor.getRuns());
+        assertEquals(makeAssertMessage("Over total evicted"), 2, RecipeEvictor.getEvicted());
+    }
+
+    /**
+     * Get the total size of the recipes
+     * @param db    Database to check
+     * @return  size in bytes
+     */
+    private long totalSize(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "SELECT SUM(" + BakingContract.RecipeEntry.COLUMN_SIZE +
+                ") FROM " + BakingContract.RecipeEntry.TABLE_NAME, null);
+    }
+
+    /**
+     * Count recipes
+     * @param db    Database to check
+     * @return  row count
+     */
+    private long count(SQLiteDatabase db) {
+        return DatabaseUtils.queryNumEntries(db, BakingContract.RecipeEntry.TABLE_NAME);
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.OperationApplicationException;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.db.DbFixture;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for BakingContentProvider.applyBatch
+ */
+@RunWith(AndroidJUnit4.class)
+public class ApplyBatchTest {
+
+    private static final int RECIPE_COUNT = 4;
+
+    private ProviderFixture fixture;
+    private Recipe[] recipes;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new ProviderFixture(InstrumentationRegistry.getTargetContext());
+        recipes = DbFixture.makeRecipes(RECIPE_COUNT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.delete();
+    }
+
+    @Test
+    public void commitTest() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            operations.add(newInsert(recipe));
+        }
+
+        fixture.getContentResolver().applyBatch(BakingContract.AUTHORITY, operations);
+
+        assertEquals(makeAssertMessage("Commit count"), RECIPE_COUNT, count());
+        // one notification per uri, after the transaction was committed
+        List<Uri> notifications = fixture.takeNotifications();
+        assertTrue(makeAssertMessage("Commit notified"), notifications.contains(BakingContract.RecipeEntry.CONTENT_URI));
+        assertEquals(makeAssertMessage("Commit recipe notifications"), 1,
+                countOf(notifications, BakingContract.RecipeEntry.CONTENT_URI));
+        assertFalse(makeAssertMessage("Commit notified in transaction"), fixture.isNotifiedInTransaction());
+    }
+
+    @Test
+    public void rollbackTest() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            operations.add(newInsert(recipe));
+        }
+        // fails as only one row will be updated
+        operations.add(ContentProviderOperation.newUpdate(BakingContract.RecipeEntry.CONTENT_URI)
+                .withValue(BakingContract.RecipeEntry.COLUMN_TIMESTAMP, DbUtils.getTimestamp())
+                .withSelection(BakingContract.ID_EQ_SELECTION, new String[] { "1" })
+                .withExpectedCount(2)
+                .build());
+
+        try {
+            fixture.getContentResolver().applyBatch(BakingContract.AUTHORITY, operations);
+            fail(makeAssertMessage("Rollback exception"));
+        } catch (OperationApplicationException e) {
+            // expected
+        }
+
+        assertEquals(makeAssertMessage("Rollback count"), 0, count());
+        assertTrue(makeAssertMessage("Rollback notifications"), fixture.takeNotifications().isEmpty());
+    }
+
+    /**
+     * Make a recipe insert operation
+     * @param recipe    Recipe to insert
+     * @return  operation
+     */
+    private ContentProviderOperation newInsert(Recipe recipe) {
+        return ContentProviderOperation.newInsert(BakingContract.RecipeEntry.CONTENT_URI)
+                .withValues(RecipeContentValues.builder()
+                        .setId(recipe.getId())
+                        .setRecipe(recipe)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Count recipes
+     * @return  row count
+     */
+    private long count() {
+        return DatabaseUtils.queryNumEntries(fixture.getHelper().getReadableDatabase(),
+                BakingContract.RecipeEntry.TABLE_NAME);
+    }
+
+    /**
+     * Count the occurrences of a uri
+     * @param uris  Uris to check
+     * @param uri   Uri to count
+     * @return  count
+     */
+    private int countOf(List<Uri> uris, Uri uri) {
+        int count = 0;
+        for (Uri entry : uris) {
+            if (uri.equals(entry)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.OperationApplicationException;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.test.mock.MockContentResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.db.BakingDbHelper;
+
+/**
+ * Test harness to run a BakingContentProvider against a test database, through a content resolver
+ * which records the change notifications rather than delivering them
+ */
+@SuppressWarnings("unused")
+public class ProviderFixture {
+
+    /** Name of test database file */
+    public static final String NAME = "bakingProviderTest.db";
+
+    private Context mContext;
+    private BakingDbHelper mHelper;
+    private BakingContentProvider mProvider;
+    private NotifyingResolver mResolver;
+    private volatile boolean mFailBatch;    // fail batches applied via the provider
+
+    /**
+     * Content resolver which records change notifications
+     */
+    private class NotifyingResolver extends MockContentResolver {
+
+        private final List<Uri> mNotifications = new ArrayList<>();
+        private boolean mNotifiedInTransaction;
+
+        @Override
+        public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+            synchronized (mNotifications) {
+                mNotifications.add(uri);
+                if (mHelper.getWritableDatabase().inTransaction()) {
+                    mNotifiedInTransaction = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     * @param context   The current context
+     */
+    public ProviderFixture(Context context) {
+        mResolver = new NotifyingResolver();
+        mContext = new ContextWrapper(context) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(NAME);
+        mHelper = new BakingDbHelper(mContext, NAME, BakingDbHelper.VERSION, null);
+
+        mProvider = new BakingContentProvider() {
+            @NonNull
+            @Override
+            public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+                                                            throws OperationApplicationException {
+                if (mFailBatch) {
+                    throw new OperationApplicationException("Test batch failure");
+                }
+                return super.applyBatch(operations);
+            }
+        };
+        mProvider.attachInfo(mContext, null);
+        mProvider.setDbHelper(mHelper);
+        mResolver.addProvider(BakingContract.AUTHORITY, mProvider);
+    }
+
+    /**
+     * Close and delete the test database
+     */
+    public void delete() {
+        mHelper.close();
+        mContext.deleteDatabase(NAME);
+    }
+
+    /**
+     * Insert recipes via the provider
+     * @param recipes   Recipes to insert
+     */
+    public void insert(Recipe[] recipes) {
+        RecipeContentValues.Builder builder = RecipeContentValues.builder();
+        for (Recipe recipe : recipes) {
+            ContentValues values = builder.clear()
+                    .setId(recipe.getId())
+                    .setRecipe(recipe)
+                    .build();
+            mResolver.insert(BakingContract.RecipeEntry.CONTENT_URI, values);
+        }
+    }
+
+    /**
+     * Get the recorded change notifications, and clear them
+     * @return  notified uris, in order
+     */
+    public List<Uri> takeNotifications() {
+        List<Uri> notifications;
+        synchronized (mResolver.mNotifications) {
+            notifications = new ArrayList<>(mResolver.mNotifications);
+            mResolver.mNotifications.clear();
+        }
+        return notifications;
+    }
+
+    /**
+     * Check if a change notification was made while a transaction was open
+     * @return  <code>true</code> if notified in a transaction
+     */
+    public boolean isNotifiedInTransaction() {
+        synchronized (mResolver.mNotifications) {
+            return mResolver.mNotifiedInTransaction;
+        }
+    }
+
+    /**
+     * Set whether batches applied via the provider fail
+     * @param failBatch Fail flag
+     */
+    public void setFailBatch(boolean failBatch) {
+        mFailBatch = failBatch;
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public ContentResolver getContentResolver() {
+        return mResolver;
+    }
+
+    public BakingDbHelper getHelper() {
+        return mHelper;
+    }
+}
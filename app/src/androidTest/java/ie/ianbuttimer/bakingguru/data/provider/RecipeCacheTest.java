@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.provider;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.db.DbFixture;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RecipeCache
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeCacheTest {
+
+    /** Time to wait for a change notification to be delivered */
+    private static final long NOTIFY_TIMEOUT_MS = 5000;
+
+    private static final long VERSION = 1234L;
+
+    private Context context;
+    private Recipe[] recipes;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        RecipeCache.register(context);
+        RecipeCache.invalidateAll();
+        recipes = DbFixture.makeRecipes(2);
+        for (Recipe recipe : recipes) {
+            RecipeCache.put(VERSION, recipe, false);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RecipeCache.invalidateAll();
+    }
+
+    @Test
+    public void versionTest() throws Exception {
+        assertSame(makeAssertMessage("Version hit"), recipes[0], RecipeCache.get(1, VERSION, false));
+        assertSame(makeAssertMessage("Version summary hit"), recipes[0], RecipeCache.get(1, VERSION, true));
+        assertNull(makeAssertMessage("Version miss"), RecipeCache.get(1, VERSION + 1, false));
+    }
+
+    @Test
+    public void summaryTest() throws Exception {
+        // a summary doesn't satisfy a full recipe request, or replace a full recipe of the same version
+        Recipe summary = DbFixture.makeRecipes(1)[0];
+        RecipeCache.put(VERSION, summary, true);
+        assertSame(makeAssertMessage("Summary kept full"), recipes[0], RecipeCache.get(1, VERSION, false));
+
+        RecipeCache.invalidate(1);
+        RecipeCache.put(VERSION, summary, true);
+        assertNull(makeAssertMessage("Summary full miss"), RecipeCache.get(1, VERSION, false));
+        assertSame(makeAssertMessage("Summary hit"), summary, RecipeCache.get(1, VERSION, true));
+    }
+
+    @Test
+    public void notifyRecipeTest() throws Exception {
+        // a search uri change doesn't affect the recipes, and notifications to an observer are
+        // delivered in order, so it has been processed by the time the recipe change is
+        notifyChange(UriUtils.getRecipeSearchUri("cake", 0, 1));
+        notifyChange(UriUtils.getRecpeWithIdUri(1));
+
+        assertTrue(makeAssertMessage("Notify invalidated"), waitForInvalidation(1));
+        assertSame(makeAssertMessage("Notify other recipe"), recipes[1], RecipeCache.get(2, VERSION, false));
+    }
+
+    @Test
+    public void notifyTableTest() throws Exception {
+        notifyChange(BakingContract.RecipeEntry.CONTENT_URI);
+
+        assertTrue(makeAssertMessage("Table invalidated 1"), waitForInvalidation(1));
+        assertTrue(makeAssertMessage("Table invalidated 2"), waitForInvalidation(2));
+    }
+
+    /**
+     * Notify a change to the cache's observer
+     * @param uri   Uri of the change
+     */
+    private void notifyChange(Uri uri) {
+        context.getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * Wait for a recipe to be invalidated by a change notification
+     * @param id    Id of recipe
+     * @return  <code>true</code> if invalidated
+     * @throws InterruptedException
+     */
+    private boolean waitForInvalidation(int id) throws InterruptedException {
+        long timeout = SystemClock.uptimeMillis() + NOTIFY_TIMEOUT_MS;
+        boolean invalidated;
+        do {
+            invalidated = (RecipeCache.get(id, VERSION, true) == null);
+            if (!invalidated) {
+                Thread.sleep(10);
+            }
+        } while (!invalidated && (SystemClock.uptimeMillis() < timeout));
+        return invalidated;
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.provider;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.adapter.RecipePagingSource;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.db.DbFixture;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for keyset paging of the recipe list
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipePagingTest {
+
+    private static final int RECIPE_COUNT = 6;
+    private static final int PAGE_SIZE = 4;
+
+    private ProviderFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new ProviderFixture(InstrumentationRegistry.getTargetContext());
+        fixture.insert(DbFixture.makeRecipes(RECIPE_COUNT));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.delete();
+    }
+
+    @Test
+    public void keysetPageTest() throws Exception {
+        assertArrayEquals(makeAssertMessage("First page"), new int[] { 1, 2, 3, 4 },
+                queryIds(UriUtils.getRecipePageUri(0, PAGE_SIZE), null, null));
+        assertArrayEquals(makeAssertMessage("Last page"), new int[] { 5, 6 },
+                queryIds(UriUtils.getRecipePageUri(4, PAGE_SIZE), null, null));
+        assertArrayEquals(makeAssertMessage("After end"), new int[0],
+                queryIds(UriUtils.getRecipePageUri(6, PAGE_SIZE), null, null));
+    }
+
+    @Test
+    public void keysetSelectionTest() throws Exception {
+        // page keyset is combined with the caller's selection
+        assertArrayEquals(makeAssertMessage("Selection page"), new int[] { 4, 5 },
+                queryIds(UriUtils.getRecipePageUri(2, 2), BakingContract.RecipeEntry._ID + "!=?",
+                        new String[] { "3" }));
+    }
+
+    @Test
+    public void pagingSourceTest() throws Exception {
+        final List<Uri> requested = new ArrayList<>();
+        RecipePagingSource source = new RecipePagingSource(new RecipePagingSource.IPageRequester() {
+            @Override
+            public void requestPage(@NonNull Uri uri) {
+                requested.add(uri);
+            }
+        }, PAGE_SIZE);
+        List<Recipe> loaded = new ArrayList<>();
+
+        source.loadFirstPage();
+        assertEquals(makeAssertMessage("Source first request"), 1, requested.size());
+        Recipe[] page = queryPage(requested.get(0));
+        loaded = RecipePagingSource.mergePage(loaded, source.onPageLoaded(page));
+        assertEquals(makeAssertMessage("Source first page"), PAGE_SIZE, loaded.size());
+        assertFalse(makeAssertMessage("Source first end"), source.isEndReached());
+
+        // a redelivered page replaces the loaded recipes rather than duplicating them
+        loaded = RecipePagingSource.mergePage(loaded, source.onPageLoaded(page));
+        assertEquals(makeAssertMessage("Source redelivered"), PAGE_SIZE, loaded.size());
+
+        // next page follows the last loaded id, and a recipe which couldn't be decoded is skipped
+        assertTrue(makeAssertMessage("Source next request"), source.loadNextPage());
+        Recipe[] next = queryPage(requested.get(1));
+        Recipe[] corrupt = Arrays.copyOf(next, next.length + 1);
+        loaded = RecipePagingSource.mergePage(loaded, source.onPageLoaded(corrupt));
+        assertEquals(makeAssertMessage("Source all"), RECIPE_COUNT, loaded.size());
+        for (int i = 0; i < RECIPE_COUNT; i++) {
+            assertEquals(makeAssertMessage("Source order"), i + 1, loaded.get(i).getId());
+        }
+        assertTrue(makeAssertMessage("Source end"), source.isEndReached());
+        assertFalse(makeAssertMessage("Source after end"), source.loadNextPage());
+    }
+
+    /**
+     * Query recipe ids
+     * @param uri           Uri to query
+     * @param selection     Selection
+     * @param selectionArgs Selection arguments
+     * @return  ids in cursor order
+     */
+    private int[] queryIds(Uri uri, String selection, String[] selectionArgs) {
+        Cursor cursor = fixture.getContentResolver().query(uri, new String[] { BakingContract.RecipeEntry._ID },
+                selection, selectionArgs, null);
+        assertNotNull(makeAssertMessage("Cursor"), cursor);
+        int[] ids = new int[cursor.getCount()];
+        try {
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * Query a page of recipe summaries
+     * @param uri   Uri to query
+     * @return  recipes
+     */
+    private Recipe[] queryPage(Uri uri) {
+        Cursor cursor = fixture.getContentResolver().query(uri, null, null, null, null);
+        assertNotNull(makeAssertMessage("Page cursor"), cursor);
+        try {
+            return RecipeCursorProcessor.processSummaryArray(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.provider;
+
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ie.ianbuttimer.bakingguru.bake.Ingredient;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.Step;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the recipes full-text search
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeSearchTest {
+
+    private ProviderFixture fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new ProviderFixture(InstrumentationRegistry.getTargetContext());
+        fixture.insert(new Recipe[] {
+            // one matching term, in the ingredients
+            makeRecipe(1, "Apple pie", new String[] { "flour", "lemon juice" }, "mix the flour"),
+            // name match
+            makeRecipe(2, "Lemon tart", new String[] { "flour", "sugar" }, "bake"),
+            // two matching terms, in the ingredients & steps
+            makeRecipe(3, "Sponge cake", new String[] { "flour", "lemon zest" }, "add the lemon"),
+            // no match
+            makeRecipe(4, "Brownies", new String[] { "flour", "cocoa" }, "bake")
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.delete();
+    }
+
+    @Test
+    public void rankingTest() throws Exception {
+        // name matches first, then by number of matching terms
+        assertIds("Ranking", search("lemon", 0, BakingContract.SearchEntry.DEFAULT_LIMIT), 2, 3, 1);
+    }
+
+    @Test
+    public void prefixTest() throws Exception {
+        assertIds("Prefix", search("LEM", 0, BakingContract.SearchEntry.DEFAULT_LIMIT), 2, 3, 1);
+    }
+
+    @Test
+    public void pageTest() throws Exception {
+        assertIds("Page", search("lemon", 1, 1), 3);
+    }
+
+    @Test
+    public void syntaxTest() throws Exception {
+        // fts syntax characters in user input are ignored
+        assertIds("Syntax", search("\"lemon*( -", 0, BakingContract.SearchEntry.DEFAULT_LIMIT), 2, 3, 1);
+        assertIds("No terms", search(" *\" ", 0, BakingContract.SearchEntry.DEFAULT_LIMIT));
+    }
+
+    @Test
+    public void snippetTest() throws Exception {
+        Cursor cursor = search("tart", 0, BakingContract.SearchEntry.DEFAULT_LIMIT);
+        try {
+            assertTrue(makeAssertMessage("Snippet row"), cursor.moveToFirst());
+            String snippet = cursor.getString(cursor.getColumnIndex(BakingContract.SearchEntry.COLUMN_SNIPPET));
+            assertTrue(makeAssertMessage("Snippet"), snippet.contains("<b>tart</b>"));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Search the recipes
+     * @param query     Search text
+     * @param offset    Index of first result
+     * @param limit     Maximum number of results
+     * @return  result cursor
+     */
+    private Cursor search(String query, int offset, int limit) {
+        Cursor cursor = fixture.getContentResolver().query(UriUtils.getRecipeSearchUri(query, offset, limit),
+                null, null, null, null);
+        assertNotNull(makeAssertMessage("Search cursor"), cursor);
+        return cursor;
+    }
+
+    /**
+     * Assert the recipe ids of a result cursor, and close it
+     * @param msg       Message text
+     * @param cursor    Cursor to check
+     * @param ids       Expected ids, in order
+     */
+    private void assertIds(String msg, Cursor cursor, int... ids) {
+        try {
+            assertEquals(makeAssertMessage(msg + " count"), ids.length, cursor.getCount());
+            int idIndex = cursor.getColumnIndex(BakingContract.RecipeEntry._ID);
+            for (int id : ids) {
+                assertTrue(makeAssertMessage(msg + " row"), cursor.moveToNext());
+                assertEquals(makeAssertMessage(msg + " id"), id, cursor.getInt(idIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Make a test recipe
+     * @param id            Recipe id
+     * @param name          Recipe name
+     * @param ingredients   Ingredient names
+     * @param step          Step description
+     * @return  recipe
+     */
+    private Recipe makeRecipe(int id, String name, String[] ingredients, String step) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName(name);
+        Ingredient[] array = new Ingredient[ingredients.length];
+        for (int i = 0; i < ingredients.length; i++) {
+            array[i] = new Ingredient(1, "CUP", ingredients[i]);
+        }
+        recipe.setIngredients(array);
+        recipe.setSteps(new Step[] {
+                new Step(0, "step 0", step, "", "")
+        });
+        recipe.setServings(8);
+        recipe.setImage("");
+        return recipe;
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.network;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for HttpCacheInterceptor, against a local server
+ */
+@RunWith(AndroidJUnit4.class)
+public class HttpCacheInterceptorTest {
+
+    /** Max-age of cached responses */
+    private static final int MAX_AGE_SECS = 1;
+    /** Time after which a cached response is stale */
+    private static final long STALE_WAIT_MS = TimeUnit.SECONDS.toMillis(MAX_AGE_SECS) + 1500;
+    /** Stale period for the policy under test */
+    private static final int STALE_SECS = 60;
+
+    private static final String ETAG = "\"v1\"";
+
+    private Context context;
+    private MockWebServer server;
+    private Cache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        server = new MockWebServer();
+        server.start();
+        cache = new Cache(new File(context.getCacheDir(), "httpCacheTest"), 1024 * 1024);
+        cache.evictAll();
+        HttpCacheDiagnostics.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        cache.delete();
+    }
+
+    @Test
+    public void staleWhileRevalidateTest() throws Exception {
+        OkHttpClient client = newClient(new HttpCachePolicy.Builder()
+                .setMaxAge(MAX_AGE_SECS, TimeUnit.SECONDS)
+                .setStaleWhileRevalidate(STALE_SECS, TimeUnit.SECONDS)
+                .build());
+        server.enqueue(new MockResponse().setBody("one").setHeader("ETag", ETAG));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        assertEquals(makeAssertMessage("Swr first"), "one", get(client, newRequest()));
+        server.takeRequest();
+        Thread.sleep(STALE_WAIT_MS);
+
+        // stale response served immediately, and revalidated in the background
+        assertEquals(makeAssertMessage("Swr stale"), "one", get(client, newRequest()));
+        assertEquals(makeAssertMessage("Swr stale count"), 1, HttpCacheDiagnostics.getStaleRevalidate());
+        assertEquals(makeAssertMessage("Swr revalidations"), 1, HttpCacheDiagnostics.getRevalidations());
+
+        RecordedRequest revalidation = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(makeAssertMessage("Swr revalidated"), revalidation);
+        assertEquals(makeAssertMessage("Swr conditional"), ETAG, revalidation.getHeader(NetworkUtils.HEADER_IF_NONE_MATCH));
+    }
+
+    @Test
+    public void staleIfErrorTest() throws Exception {
+        OkHttpClient client = newClient(new HttpCachePolicy.Builder()
+                .setMaxAge(MAX_AGE_SECS, TimeUnit.SECONDS)
+                .setStaleIfError(STALE_SECS, TimeUnit.SECONDS)
+                .build());
+        server.enqueue(new MockResponse().setBody("one"));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+
+        assertEquals(makeAssertMessage("Sie first"), "one", get(client, newRequest()));
+        Thread.sleep(STALE_WAIT_MS);
+
+        // server error, so the stale response is served
+        assertEquals(makeAssertMessage("Sie stale"), "one", get(client, newRequest()));
+        assertEquals(makeAssertMessage("Sie stale count"), 1, HttpCacheDiagnostics.getStaleIfError());
+    }
+
+    @Test
+    public void staleIfErrorExpiredTest() throws Exception {
+        OkHttpClient client = newClient(new HttpCachePolicy.Builder()
+                .setMaxAge(MAX_AGE_SECS, TimeUnit.SECONDS)
+                .build());
+        server.enqueue(new MockResponse().setBody("one"));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+
+        assertEquals(makeAssertMessage("No sie first"), "one", get(client, newRequest()));
+        Thread.sleep(STALE_WAIT_MS);
+
+        // no stale period, so the error is returned
+        Response response = client.newCall(newRequest()).execute();
+        try {
+            assertEquals(makeAssertMessage("No sie code"), HttpURLConnection.HTTP_UNAVAILABLE, response.code());
+        } finally {
+            response.close();
+        }
+        assertEquals(makeAssertMessage("No sie stale count"), 0, HttpCacheDiagnostics.getStaleIfError());
+    }
+
+    @Test
+    public void conditionalPassThroughTest() throws Exception {
+        OkHttpClient client = newClient(new HttpCachePolicy.Builder()
+                .setMaxAge(STALE_SECS, TimeUnit.SECONDS)
+                .setStaleWhileRevalidate(STALE_SECS, TimeUnit.SECONDS)
+                .setStaleIfError(STALE_SECS, TimeUnit.SECONDS)
+                .build());
+        server.enqueue(new MockResponse().setBody("one").setHeader("ETag", ETAG));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        assertEquals(makeAssertMessage("Conditional first"), "one", get(client, newRequest()));
+        server.takeRequest();
+
+        // request with its own validators goes to the server, and gets its 304
+        Response response = client.newCall(newRequest().newBuilder()
+                .header(NetworkUtils.HEADER_IF_NONE_MATCH, ETAG)
+                .build()).execute();
+        try {
+            assertEquals(makeAssertMessage("Conditional code"), HttpURLConnection.HTTP_NOT_MODIFIED, response.code());
+        } finally {
+            response.close();
+        }
+        RecordedRequest conditional = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(makeAssertMessage("Conditional sent"), conditional);
+        assertEquals(makeAssertMessage("Conditional header"), ETAG, conditional.getHeader(NetworkUtils.HEADER_IF_NONE_MATCH));
+
+        // while a policy request is served from the cache
+        assertEquals(makeAssertMessage("Conditional cached"), "one", get(client, newRequest()));
+        assertEquals(makeAssertMessage("Conditional requests"), 2, server.getRequestCount());
+    }
+
+    /**
+     * Make a client with the cache policy, configured as by NetworkUtils
+     * @param policy    Cache policy
+     * @return  client
+     */
+    private OkHttpClient newClient(HttpCachePolicy policy) {
+        HttpCacheInterceptor interceptor = new HttpCacheInterceptor(context, policy);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(cache)
+                .addInterceptor(interceptor)
+                .addNetworkInterceptor(new HttpCacheInterceptor.ForceCacheInterceptor(policy))
+                .build();
+        interceptor.setClient(client);
+        return client;
+    }
+
+    /**
+     * Make a request to the test server
+     * @return  request
+     */
+    private Request newRequest() {
+        return new Request.Builder().url(server.url("/recipes")).build();
+    }
+
+    /**
+     * Make a request and read the response body
+     * @param client    Client to use
+     * @param request   Request to make
+     * @return  response body
+     * @throws IOException
+     */
+    private String get(OkHttpClient client, Request request) throws IOException {
+        Response response = client.newCall(request).execute();
+        try {
+            assertTrue(makeAssertMessage("Successful"), response.isSuccessful());
+            return response.body().string();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Make a message to use for an assert
+     * @param msg   Message text
+     * @return
+     */
+    private String makeAssertMessage(String msg) {
+        return getClass().getSimpleName() + ": " + msg;
+    }
+}
@@ -18,43 +18,46 @@
 package ie.ianbuttimer.bakingguru;
 
 import android.app.Activity;
-import android.content.ContentValues;
 import android.content.Context;
-import android.content.Intent;
 import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.Loader;
+import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 
 import org.parceler.Parcels;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import ie.ianbuttimer.bakingguru.bake.Recipe;
 import ie.ianbuttimer.bakingguru.data.AsyncCallback;
-import ie.ianbuttimer.bakingguru.data.DbCacheIntentService;
-import ie.ianbuttimer.bakingguru.data.JsonStringReader;
+import ie.ianbuttimer.bakingguru.data.ICallback;
+import ie.ianbuttimer.bakingguru.data.IItemCallback;
+import ie.ianbuttimer.bakingguru.data.RecipeCacheWriter;
+import ie.ianbuttimer.bakingguru.data.RecipeStreamLoader;
 import ie.ianbuttimer.bakingguru.data.adapter.IAdapterOnClickHandler;
 import ie.ianbuttimer.bakingguru.data.adapter.RecipeAdapter;
-import ie.ianbuttimer.bakingguru.data.provider.RecipeContentValues;
+import ie.ianbuttimer.bakingguru.data.adapter.RecipePagingSource;
 import ie.ianbuttimer.bakingguru.data.provider.RecipeCursorProcessor;
 import ie.ianbuttimer.bakingguru.network.NetworkStatusReceiver;
 import ie.ianbuttimer.bakingguru.network.NetworkUtils;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
 import ie.ianbuttimer.bakingguru.utils.ErrorTuple;
 import ie.ianbuttimer.bakingguru.utils.PreferenceControl;
 import ie.ianbuttimer.bakingguru.utils.ResponseHandler;
 import ie.ianbuttimer.bakingguru.utils.UriUtils;
 import ie.ianbuttimer.bakingguru.utils.Utils;
-
-import static ie.ianbuttimer.bakingguru.data.DbCacheIntentService.BULK_INSERT_RECIPE;
-import static ie.ianbuttimer.bakingguru.data.DbCacheIntentService.CV_ARRAY_EXTRA;
-import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.CONTENT_URI;
-import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.REQUEST_URL;
+import timber.log.Timber;
 
 public abstract class AbstractRecipeListActivity extends AppCompatActivity {
 
@@ -69,6 +72,31 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
     private static final String NETWORK_STATUS_ARG = "network_status";
     /** Setup network status listener argument for instance state bundle */
     protected static final String ERROR_MSG_ARG = "error_msg";
+    /** Paging enabled argument for instance state bundle */
+    private static final String PAGING_ARG = "paging";
+    /** Revalidation in progress argument for instance state bundle */
+    private static final String REVALIDATE_ARG = "revalidate";
+    /** Last refreshed timestamp argument for instance state bundle */
+    private static final String REFRESHED_ARG = "refreshed";
+
+    /** Maximum number of recipes saved in instance state */
+    private static final int MAX_SAVED_RECIPES = RecipePagingSource.DEFAULT_PAGE_SIZE * 4;
+
+    /** Id of loader used to stream recipes from the server */
+    private static final int STREAM_LOADER_ID = 1;
+
+    private RecipeStreamCallbacks mStreamCallbacks = new RecipeStreamCallbacks();
+    private boolean mStreaming;     // server response in progress flag
+    private volatile boolean mRevalidating;  // background revalidation of displayed list in progress flag
+    private long mLastRefreshed;    // time displayed list was received from the server, msec since epoch
+
+    /** Pages recipes from the db as the list is scrolled */
+    private RecipePagingSource mPagingSource = new RecipePagingSource(new RecipePagingSource.IPageRequester() {
+        @Override
+        public void requestPage(@NonNull Uri uri) {
+            mProvider.query(AbstractRecipeListActivity.this, UriUtils.matchBakingUri(uri), uri);
+        }
+    });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -78,12 +106,23 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
             if (savedInstanceState.containsKey(LIST_ARG)) {
                 mRecipeList = Parcels.unwrap(savedInstanceState.getParcelable(LIST_ARG));
             }
+            mRevalidating = savedInstanceState.getBoolean(REVALIDATE_ARG, false);
+            mLastRefreshed = savedInstanceState.getLong(REFRESHED_ARG, 0);
         }
         if (mRecipeList == null) {
             mRecipeList = new ArrayList<>();
+        } else if ((savedInstanceState != null) && savedInstanceState.getBoolean(PAGING_ARG, false)) {
+            // continue paging after the restored list
+            mPagingSource.resume(mRecipeList);
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showLastRefreshed(mLastRefreshed);    // update the age
+    }
+
     @Override
     protected void onStop() {
         super.onStop();
@@ -94,8 +133,21 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
 
-        outState.putParcelable(LIST_ARG, Parcels.wrap(mRecipeList));
+        if (!mStreaming) {
+            // don't save a partial list, the request will be restarted when recreated
+            if (mRecipeList.size() <= MAX_SAVED_RECIPES) {
+                outState.putParcelable(LIST_ARG, Parcels.wrap(mRecipeList));
+            } else if (mPagingSource.isEnabled()) {
+                // just save the first pages, paging resumes after them
+                outState.putParcelable(LIST_ARG,
+                        Parcels.wrap(new ArrayList<>(mRecipeList.subList(0, MAX_SAVED_RECIPES))));
+            }
+            // otherwise too large to save, the list is requested again when recreated
+        }
         outState.putBoolean(NETWORK_STATUS_ARG, (mNetworkStatus != null));
+        outState.putBoolean(PAGING_ARG, mPagingSource.isEnabled());
+        outState.putBoolean(REVALIDATE_ARG, mRevalidating);
+        outState.putLong(REFRESHED_ARG, mLastRefreshed);
     }
 
     /**
@@ -114,7 +166,15 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
             }
         }
 
-        if (mRecipeList.size() == 0) {
+        if (getSupportLoaderManager().getLoader(STREAM_LOADER_ID) != null) {
+            if (mRevalidating) {
+                // displayed list was saved, so just restart the revalidation
+                revalidateRecipes();
+            } else {
+                // server response was in progress, partial list was not saved so restart request
+                requestRecipesServer();
+            }
+        } else if (mRecipeList.size() == 0) {
             boolean available = NetworkUtils.isInternetAvailable(this);
             if (!available && setupListener) {
                 // internet not currently available & was listening for connection, so start listening again
@@ -144,6 +204,9 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
 
         /* Setting the adapter attaches it to the RecyclerView in our layout. */
         recyclerView.setAdapter(mRecipeAdapter);
+
+        // request next page from the db as the end of the list is approached
+        mPagingSource.attach(recyclerView);
     }
 
     /**
@@ -198,38 +261,109 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
         public void processQueryResponse(@Nullable QueryResultWrapper response) {
             Recipe[] recipes = null;
             boolean processResponse = true;
+            boolean firstPage = mPagingSource.isFirstPage();
 
             if (response != null) {
                 Cursor cursor = response.getCursorResult();
-                recipes = RecipeCursorProcessor.processArray(cursor);
+                if (firstPage) {
+                    setLastRefreshed(getOldestTimestamp(cursor));
+                }
+                // list only displays summary info, full recipe is loaded when selected
+                recipes = RecipeCursorProcessor.processSummaryArray(cursor);
 
-                if ((recipes != null) && (recipes.length == 0)) {
+                if (firstPage && (recipes != null) && (recipes.length == 0)) {
                     // nothing in db, request from server
+                    mPagingSource.onPageLoaded(recipes);
                     requestRecipesServer();
                     processResponse = false;
                 }
             }
             if (processResponse) {
-                onRecipesResponse(recipes, 0, "");
+                List<Recipe> page = mPagingSource.onPageLoaded(recipes);
+                if (firstPage) {
+                    onRecipesResponse(page.toArray(new Recipe[page.size()]), 0, "");
+                    if (!page.isEmpty() && PreferenceControl.getRevalidatePreference(getActivityContext())) {
+                        // cached list displayed, now bring it up to date with the server
+                        getActivityContext().runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                revalidateRecipes();
+                            }
+                        });
+                    }
+                } else if (!page.isEmpty()) {
+                    onRecipesPage(page);
+                }
             }
         }
+    };
+
+    /**
+     * Loader callbacks for the streamed server request; recipes are added to the list as they are
+     * decoded, so the first recipes are displayed before the download has finished
+     */
+    private class RecipeStreamCallbacks implements LoaderManager.LoaderCallbacks<ICallback.CallResultWrapper>,
+                                                    IItemCallback<Recipe> {
+
+        private boolean mFirst;     // first recipe of the response flag
+        private final List<Recipe> mFresh = new ArrayList<>();  // revalidated list, merged when complete
 
         @Override
-        public void processCallResponse(@Nullable CallResultWrapper response) {
-            Recipe[] recipes = null;
+        public Loader<ICallback.CallResultWrapper> onCreateLoader(int id, Bundle args) {
+            mFirst = true;
+            synchronized (mFresh) {
+                mFresh.clear();
+            }
+            // a revalidation must come from the server, a cached copy may be as old as the displayed list
+            return new RecipeStreamLoader(getActivityContext(), getString(R.string.json_network_resource), this,
+                    mRevalidating);
+        }
+
+        @Override
+        public void onItem(final Recipe item) {
+            if (mRevalidating) {
+                // displayed list stays in place until the fresh list is complete
+                synchronized (mFresh) {
+                    mFresh.add(item);
+                }
+                return;
+            }
+            // called on the loader thread, ui updates need to be on ui thread
+            getActivityContext().runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mFirst) {
+                        mFirst = false;
+                        hideRefreshInProgress();
+                        mRecipeAdapter.clear();
+                        mRecipeAdapter.notifyDataSetChanged();
+                    }
+                    mRecipeAdapter.add(item);
+                    mRecipeAdapter.notifyItemInserted(mRecipeAdapter.getItemCount() - 1);
+                }
+            });
+        }
+
+        @Override
+        public void onLoadFinished(Loader<ICallback.CallResultWrapper> loader, ICallback.CallResultWrapper response) {
+            if (mRevalidating) {
+                onRevalidateFinished(response);
+                getSupportLoaderManager().destroyLoader(STREAM_LOADER_ID);
+                return;
+            }
+
             int msgId = 0;
             String errorMsg = "";
             boolean isError = true;
+            mStreaming = false;
             if (response != null) {
-                if (response.isString()) {
-                    String json = response.getStringResult();
-                    if (!TextUtils.isEmpty(json)) {
-                        JsonStringReader<Recipe, Recipe.Loader> reader = new JsonStringReader<>(json, new Recipe.Loader());
-                        recipes = reader.readArray();
-
-                        boolean cache = PreferenceControl.getCachePreference(getContext());
+                if (response.isBundle()) {
+                    int count = response.getBundleResult().getInt(RecipeStreamLoader.STREAM_COUNT, 0);
+                    if (count > 0) {
+                        boolean cache = PreferenceControl.getCachePreference(getActivityContext());
                         if (cache) {
-                            startDbCacheIntentService(BULK_INSERT_RECIPE, recipes);
+                            RecipeCacheWriter.getInstance(getActivityContext()).sync(
+                                    mRecipeList.toArray(new Recipe[mRecipeList.size()]));
                         }
 
                         isError = false;
@@ -240,29 +374,50 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
                     ErrorTuple error = response.getErrorResult();
                     errorMsg = error.getErrorString();
                 }
+            } else {
+                msgId = R.string.no_response;
             }
 
             if (isError) {
                 onCallError();
+                onRecipesResponse(null, msgId, errorMsg);
             } else {
                 unregisterNetworkStatusListener();
+                hideRefreshInProgress();
+                setLastRefreshed(System.currentTimeMillis());
             }
-            onRecipesResponse(recipes, msgId, errorMsg);
+            getSupportLoaderManager().destroyLoader(STREAM_LOADER_ID);
         }
-    };
 
-    /**
-     * Start the DbCacheIntentService
-     *
-     * @param action    Service action to perform
-     * @param recipes   Recipes to save
-     */
-    private void startDbCacheIntentService(@NonNull String action, Recipe[] recipes) {
-        ContentValues[] cvArray = RecipeContentValues.buildArray(recipes);
-        if ((cvArray != null) && (cvArray.length > 0)) {
-            Intent intent = DbCacheIntentService.getLaunchIntent(this, action);
-            intent.putExtra(CV_ARRAY_EXTRA, cvArray);
-            this.startService(intent);
+        /**
+         * Merge the revalidated list into the displayed list
+         * @param response  Server response
+         */
+        private void onRevalidateFinished(ICallback.CallResultWrapper response) {
+            mRevalidating = false;
+            List<Recipe> fresh;
+            synchronized (mFresh) {
+                fresh = new ArrayList<>(mFresh);
+                mFresh.clear();
+            }
+            if ((response != null) && response.isBundle() && !fresh.isEmpty()) {
+                mPagingSource.setEnabled(false);    // server response is the full list
+                mRecipeAdapter.merge(fresh);
+                setLastRefreshed(System.currentTimeMillis());
+
+                if (PreferenceControl.getCachePreference(getActivityContext())) {
+                    RecipeCacheWriter.getInstance(getActivityContext()).sync(
+                            fresh.toArray(new Recipe[fresh.size()]));
+                }
+            } else {
+                // keep displaying the saved list, it is revalidated on the next request
+                Timber.d("Recipe list revalidation failed");
+            }
+        }
+
+        @Override
+        public void onLoaderReset(Loader<ICallback.CallResultWrapper> loader) {
+            // no op
         }
     }
 
@@ -278,6 +433,7 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
         public void run() {
             super.run();
             setRecipeList(getResponse());
+            mPagingSource.onPageBound();
 
             String message = getMessageToDisplay();
             if (!TextUtils.isEmpty(message)) {
@@ -309,13 +465,92 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
         activity.runOnUiThread(new RecipesResponseHandler(activity, response, msgId, errorMsg));
     }
 
+    /**
+     * Add a page of recipes to the list
+     * @param page  Recipes to add
+     */
+    private void onRecipesPage(final List<Recipe> page) {
+        // ui updates need to be on ui thread
+        getActivityContext().runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // redelivered recipes replace the loaded versions, new ones are appended
+                mRecipeAdapter.merge(RecipePagingSource.mergePage(mRecipeList, page));
+                mPagingSource.onPageBound();
+            }
+        });
+    }
+
     /**
      * Request recipes from the server
      */
     protected void requestRecipesServer() {
+        mPagingSource.setEnabled(false);    // server response is the full list
         hideErrorMessage();
         showRefreshInProgress();
-        mProvider.call(this, UriUtils.matchBakingUri(CONTENT_URI), CONTENT_URI, REQUEST_URL, getString(R.string.json_network_resource), null);
+        mStreaming = true;
+        mRevalidating = false;
+        getSupportLoaderManager().restartLoader(STREAM_LOADER_ID, null, mStreamCallbacks);
+    }
+
+    /**
+     * Revalidate the displayed recipes with the server in the background; the displayed list is
+     * updated in place once the server response is complete
+     */
+    protected void revalidateRecipes() {
+        mRevalidating = true;
+        getSupportLoaderManager().restartLoader(STREAM_LOADER_ID, null, mStreamCallbacks);
+    }
+
+    /**
+     * Get the time the oldest recipe in a cursor was received from the server
+     * @param cursor    Cursor to check
+     * @return  Timestamp, msec since epoch, or 0 if not available
+     */
+    private long getOldestTimestamp(Cursor cursor) {
+        long oldest = 0;
+        if ((cursor != null) && cursor.moveToFirst()) {
+            do {
+                long timestamp = DbUtils.timestampToDate(cursor).getTime();
+                if ((timestamp > 0) && ((oldest == 0) || (timestamp < oldest))) {
+                    oldest = timestamp;
+                }
+            } while (cursor.moveToNext());
+            cursor.moveToPosition(-1);
+        }
+        return oldest;
+    }
+
+    /**
+     * Set the time the displayed list was received from the server
+     * @param timestamp Timestamp, msec since epoch
+     */
+    private void setLastRefreshed(final long timestamp) {
+        mLastRefreshed = timestamp;
+        // ui updates need to be on ui thread
+        getActivityContext().runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                showLastRefreshed(timestamp);
+            }
+        });
+    }
+
+    /**
+     * Show the age of the displayed list in the action bar
+     * @param timestamp Time the list was received from the server, msec since epoch, or 0 if unknown
+     */
+    protected void showLastRefreshed(long timestamp) {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            CharSequence subtitle = null;
+            if (timestamp > 0) {
+                subtitle = getString(R.string.last_refreshed,
+                        DateUtils.getRelativeTimeSpanString(timestamp, System.currentTimeMillis(),
+                                DateUtils.MINUTE_IN_MILLIS));
+            }
+            actionBar.setSubtitle(subtitle);
+        }
     }
 
     /**
@@ -324,7 +559,7 @@ public abstract class AbstractRecipeListActivity extends AppCompatActivity {
     protected void requestRecipesDb() {
         hideErrorMessage();
         showRefreshInProgress();
-        mProvider.query(this, UriUtils.matchBakingUri(CONTENT_URI), CONTENT_URI);
+        mPagingSource.loadFirstPage();
     }
 
     /**
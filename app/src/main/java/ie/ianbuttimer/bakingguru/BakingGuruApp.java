@@ -24,7 +24,11 @@ import android.util.Log;
 
 import java.lang.ref.WeakReference;
 
+import ie.ianbuttimer.bakingguru.data.RecipeSyncScheduler;
+import ie.ianbuttimer.bakingguru.data.provider.RecipeCache;
+import ie.ianbuttimer.bakingguru.network.HttpCachePolicy;
 import ie.ianbuttimer.bakingguru.network.NetworkStatusReceiver;
+import ie.ianbuttimer.bakingguru.network.NetworkUtils;
 import ie.ianbuttimer.bakingguru.utils.DebugTree;
 import timber.log.Timber;
 
@@ -62,8 +66,17 @@ public class BakingGuruApp extends Application {
         Timber.plant(new DebugTree(logLevel));
         Timber.i("Application launched in " + mode + " mode");
 
+        // cache http responses on disk
+        NetworkUtils.init(context, HttpCachePolicy.fromResources(context));
+
         // register broadcast receivers
         context.registerReceiver(new NetworkStatusReceiver(), new IntentFilter(CONNECTIVITY_ACTION));
+
+        // invalidate decoded recipes when the db changes
+        RecipeCache.register(context);
+
+        // revalidate the recipe feed in the background when it is cheap to do so
+        RecipeSyncScheduler.schedule(context);
     }
 
     /**
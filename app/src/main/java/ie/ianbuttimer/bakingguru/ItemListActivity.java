@@ -19,8 +19,10 @@ package ie.ianbuttimer.bakingguru;
 
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.test.espresso.IdlingResource;
@@ -50,12 +52,17 @@ import ie.ianbuttimer.bakingguru.bake.Ingredient;
 import ie.ianbuttimer.bakingguru.bake.IngredientsStep;
 import ie.ianbuttimer.bakingguru.bake.Recipe;
 import ie.ianbuttimer.bakingguru.bake.Step;
+import ie.ianbuttimer.bakingguru.data.AsyncCallback;
+import ie.ianbuttimer.bakingguru.data.DbCacheIntentService;
 import ie.ianbuttimer.bakingguru.data.adapter.AdapterOnClickHandlerImpl;
 import ie.ianbuttimer.bakingguru.data.adapter.RecipeItemsAdapter;
 import ie.ianbuttimer.bakingguru.data.adapter.StepAdapter;
+import ie.ianbuttimer.bakingguru.data.provider.RecipeCursorProcessor;
 import ie.ianbuttimer.bakingguru.idling_resource.SimpleIdlingResource;
 import ie.ianbuttimer.bakingguru.utils.ITester;
+import ie.ianbuttimer.bakingguru.utils.PreferenceControl;
 import ie.ianbuttimer.bakingguru.utils.ScreenMode;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
 import ie.ianbuttimer.bakingguru.utils.Utils;
 
 import static ie.ianbuttimer.bakingguru.ItemDetailFragment.ARG_STEP;
@@ -132,9 +139,52 @@ public class ItemListActivity extends AppCompatActivity implements ItemDetailFra
         String name = mRecipe.getName();
         setTitle(name);
 
-        setupRecyclerView(mRecyclerView);
+        if ((savedInstanceState == null) && PreferenceControl.getCachePreference(this)) {
+            // record the recipe was opened, so it is kept in preference to recipes not recently opened
+            startService(DbCacheIntentService.getLaunchIntent(this, DbCacheIntentService.ACCESS_RECIPE)
+                    .putExtra(BaseColumns._ID, mRecipe.getId()));
+        }
+
+        if (mRecipe.isSummary()) {
+            // only have the summary info from the recipe list, so load the full recipe
+            requestRecipe();
+        } else {
+            setupRecyclerView(mRecyclerView);
+        }
     }
 
+    /**
+     * Request the full recipe from the db
+     */
+    private void requestRecipe() {
+        Uri uri = UriUtils.getRecpeWithIdUri(mRecipe.getId());
+        mProgressBar.setVisibility(View.VISIBLE);
+        mProvider.query(this, UriUtils.matchBakingUri(uri), uri);
+    }
+
+    /**
+     * Async request/response handler for the full recipe
+     */
+    private AsyncCallback mProvider = new AsyncCallback() {
+        @Override
+        public Context getContext() {
+            return ItemListActivity.this;
+        }
+
+        @Override
+        public void processQueryResponse(@Nullable QueryResultWrapper response) {
+            Recipe recipe = null;
+            if (response != null) {
+                recipe = RecipeCursorProcessor.processSingle(response.getCursorResult());
+            }
+            mProgressBar.setVisibility(View.INVISIBLE);
+            if (recipe != null) {
+                mRecipe = recipe;
+            }
+            setupRecyclerView(mRecyclerView);
+        }
+    };
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
 
@@ -18,15 +18,17 @@
 package ie.ianbuttimer.bakingguru.bake;
 
 import android.util.JsonReader;
-
-import com.google.gson.Gson;
+import android.util.JsonToken;
+import android.util.JsonWriter;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.List;
 
 import ie.ianbuttimer.bakingguru.data.ILoadable;
+import ie.ianbuttimer.bakingguru.data.LoadableRegistry;
+import ie.ianbuttimer.bakingguru.data.ParseDiagnostics;
 
 /**
  * Abstract base class for bake objects
@@ -35,53 +37,271 @@ import ie.ianbuttimer.bakingguru.data.ILoadable;
 public abstract class AbstractBakeObject {
 
     /**
-     * Returns the int value of the next token, consuming it
+     * Returns the int value of the next token, consuming it.<br>
+     * Nulls, numeric strings, fractions and booleans are coerced without throwing, and recorded
+     * in the {@link ParseDiagnostics}.
      * @param reader        Reader to read from
-     * @param dfltValue     Default value to return in case of error
+     * @param dfltValue     Default value to return if the value can't be coerced
      * @return  int value
+     * @throws IOException if the JSON is malformed
      */
-    public static int nextInt(JsonReader reader, int dfltValue) {
+    public static int nextInt(JsonReader reader, int dfltValue) throws IOException {
         int value = dfltValue;
-        try {
-            value = reader.nextInt();
-        } catch (IllegalStateException | NumberFormatException | IOException e) {
-            e.printStackTrace();
+        JsonToken token = reader.peek();
+        double number = nextNumber(reader);
+        // each value is recorded once, whether it was converted to a number, truncated or both
+        if ((number >= Integer.MIN_VALUE) && (number <= Integer.MAX_VALUE)) {     // false for NaN
+            value = (int) number;
+            if (value != number) {
+                ParseDiagnostics.coerced();     // truncated
+            } else {
+                recordNumber(token, number);
+            }
+        } else if (!Double.isNaN(number)) {
+            ParseDiagnostics.invalid();         // out of range
+        } else {
+            recordNumber(token, number);
         }
         return value;
     }
 
     /**
-     * Returns the double value of the next token, consuming it
+     * Returns the double value of the next token, consuming it.<br>
+     * Nulls, numeric strings, fractions and booleans are coerced without throwing, and recorded
+     * in the {@link ParseDiagnostics}.
      * @param reader        Reader to read from
-     * @param dfltValue     Default value to return in case of error
+     * @param dfltValue     Default value to return if the value can't be coerced
      * @return  double value
+     * @throws IOException if the JSON is malformed
      */
-    public static double nextDouble(JsonReader reader, double dfltValue) {
-        double value = dfltValue;
-        try {
-            value = reader.nextDouble();
-        } catch (IllegalStateException | NumberFormatException | IOException e) {
-            e.printStackTrace();
+    public static double nextDouble(JsonReader reader, double dfltValue) throws IOException {
+        JsonToken token = reader.peek();
+        double number = nextNumber(reader);
+        recordNumber(token, number);
+        return (Double.isNaN(number) ? dfltValue : number);
+    }
+
+    /**
+     * Returns the numeric value of the next token, consuming it. Only skipped values are recorded
+     * in the {@link ParseDiagnostics}, see {@link #recordNumber(JsonToken, double)}.
+     * @param reader        Reader to read from
+     * @return  numeric value or {@link Double#NaN} if the value can't be coerced
+     * @throws IOException if the JSON is malformed
+     */
+    private static double nextNumber(JsonReader reader) throws IOException {
+        double number = Double.NaN;
+        JsonToken token = reader.peek();
+        switch (token) {
+            case NUMBER:
+                number = reader.nextDouble();
+                break;
+            case STRING:
+                number = parseNumber(reader.nextString());
+                break;
+            case BOOLEAN:
+                number = (reader.nextBoolean() ? 1 : 0);
+                break;
+            default:
+                skip(reader, token);
+                break;
+        }
+        return number;
+    }
+
+    /**
+     * Record the conversion of a non-numeric token to a number in the {@link ParseDiagnostics}
+     * @param token     Token the number was read from
+     * @param number    Numeric value or {@link Double#NaN} if the value couldn't be coerced
+     */
+    private static void recordNumber(JsonToken token, double number) {
+        switch (token) {
+            case STRING:
+                if (Double.isNaN(number)) {
+                    ParseDiagnostics.invalid();
+                } else {
+                    ParseDiagnostics.coerced();
+                }
+                break;
+            case BOOLEAN:
+                ParseDiagnostics.coerced();
+                break;
+            default:
+                // numbers need no conversion, nulls & skipped values are recorded when skipped
+                break;
         }
-        return value;
     }
 
     /**
-     * Returns the string value of the next token, consuming it
+     * Returns the string value of the next token, consuming it.<br>
+     * Nulls, numbers and booleans are coerced without throwing, and recorded in the
+     * {@link ParseDiagnostics}.
      * @param reader        Reader to read from
-     * @param dfltValue     Default value to return in case of error
+     * @param dfltValue     Default value to return if the value can't be coerced
      * @return  string value
+     * @throws IOException if the JSON is malformed
      */
-    public static String nextString(JsonReader reader, String dfltValue) {
+    public static String nextString(JsonReader reader, String dfltValue) throws IOException {
         String value = dfltValue;
-        try {
-            value = reader.nextString();
-        } catch (IllegalStateException | IOException e) {
-            e.printStackTrace();
+        JsonToken token = reader.peek();
+        switch (token) {
+            case STRING:
+                value = reader.nextString();
+                break;
+            case NUMBER:
+                value = reader.nextString();
+                ParseDiagnostics.coerced();
+                break;
+            case BOOLEAN:
+                value = String.valueOf(reader.nextBoolean());
+                ParseDiagnostics.coerced();
+                break;
+            default:
+                skip(reader, token);
+                break;
         }
         return value;
     }
 
+    /**
+     * Check if the next token is the start of an array, skipping the value if not
+     * @param reader        Reader to read from
+     * @return  <code>true</code> if the next token is the start of an array
+     * @throws IOException if the JSON is malformed
+     */
+    public static boolean isNextArray(JsonReader reader) throws IOException {
+        return isNext(reader, JsonToken.BEGIN_ARRAY);
+    }
+
+    /**
+     * Check if the next token is the start of an object, skipping the value if not
+     * @param reader        Reader to read from
+     * @return  <code>true</code> if the next token is the start of an object
+     * @throws IOException if the JSON is malformed
+     */
+    public static boolean isNextObject(JsonReader reader) throws IOException {
+        return isNext(reader, JsonToken.BEGIN_OBJECT);
+    }
+
+    /**
+     * Check if the next token is the specified token, skipping the value if not
+     * @param reader        Reader to read from
+     * @param expected      Expected token
+     * @return  <code>true</code> if the next token is the expected token
+     * @throws IOException if the JSON is malformed
+     */
+    private static boolean isNext(JsonReader reader, JsonToken expected) throws IOException {
+        JsonToken token = reader.peek();
+        boolean isNext = (token == expected);
+        if (!isNext) {
+            skip(reader, token);
+        }
+        return isNext;
+    }
+
+    /**
+     * Skip the next value
+     * @param reader        Reader to read from
+     * @param token         Next token
+     * @throws IOException if the JSON is malformed
+     */
+    private static void skip(JsonReader reader, JsonToken token) throws IOException {
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            ParseDiagnostics.nulled();
+        } else {
+            reader.skipValue();
+            ParseDiagnostics.skipped();
+        }
+    }
+
+    /**
+     * Parse a numeric string without throwing exceptions. Supported formats are decimals,
+     * e.g. "1.5", fractions, e.g. "1/2", mixed numbers, e.g. "1 1/2" and booleans.
+     * @param value     String to parse
+     * @return  numeric value or {@link Double#NaN} if the string is not numeric
+     */
+    public static double parseNumber(String value) {
+        double number = Double.NaN;
+        if (value != null) {
+            String str = value.trim();
+            int space = str.indexOf(' ');
+            if (space > 0) {
+                // mixed number
+                double whole = parseDecimal(str.substring(0, space));
+                double fraction = parseFraction(str.substring(space + 1).trim());
+                if (!Double.isNaN(whole) && (fraction >= 0)) {
+                    number = (whole < 0 ? whole - fraction : whole + fraction);
+                }
+            } else if (str.indexOf('/') > 0) {
+                number = parseFraction(str);
+            } else if ("true".equalsIgnoreCase(str)) {
+                number = 1;
+            } else if ("false".equalsIgnoreCase(str)) {
+                number = 0;
+            } else {
+                number = parseDecimal(str);
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Parse a fraction string, e.g. "1/2"
+     * @param str   String to parse
+     * @return  numeric value or {@link Double#NaN} if the string is not a fraction
+     */
+    private static double parseFraction(String str) {
+        double number = Double.NaN;
+        int slash = str.indexOf('/');
+        if (slash > 0) {
+            double numerator = parseDecimal(str.substring(0, slash).trim());
+            double denominator = parseDecimal(str.substring(slash + 1).trim());
+            if (!Double.isNaN(numerator) && !Double.isNaN(denominator) && (denominator != 0)) {
+                number = numerator / denominator;
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Parse a decimal string, e.g. "-1.5e2"
+     * @param str   String to parse
+     * @return  numeric value or {@link Double#NaN} if the string is not a decimal
+     */
+    private static double parseDecimal(String str) {
+        int length = str.length();
+        int index = 0;
+        boolean digits = false;
+
+        // validate format before parsing, so no exception is thrown
+        if ((index < length) && ((str.charAt(index) == '+') || (str.charAt(index) == '-'))) {
+            ++index;
+        }
+        while ((index < length) && Character.isDigit(str.charAt(index))) {
+            ++index;
+            digits = true;
+        }
+        if ((index < length) && (str.charAt(index) == '.')) {
+            ++index;
+            while ((index < length) && Character.isDigit(str.charAt(index))) {
+                ++index;
+                digits = true;
+            }
+        }
+        if (digits && (index < length) && ((str.charAt(index) == 'e') || (str.charAt(index) == 'E'))) {
+            ++index;
+            if ((index < length) && ((str.charAt(index) == '+') || (str.charAt(index) == '-'))) {
+                ++index;
+            }
+            digits = false;
+            while ((index < length) && Character.isDigit(str.charAt(index))) {
+                ++index;
+                digits = true;
+            }
+        }
+        return ((digits && (index == length)) ? Double.parseDouble(str) : Double.NaN);
+    }
+
     /**
      * Checks if an object is the correct type
      * @param obj   Object to check
@@ -107,69 +327,81 @@ public abstract class AbstractBakeObject {
     public abstract void set(Object original) throws IllegalArgumentException;
 
     /**
-     * Create a JSON string representation of this object
-     * @return  JSON string
+     * Write a string name/value pair, omitting the pair if the value is <code>null</code>
+     * @param writer    Writer to write to
+     * @param name      Name of value
+     * @param value     Value to write
+     * @throws IOException
      */
-    public String toJson() {
-        return new Gson().toJson(this);
+    protected static void writeString(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
     }
 
     /**
-     * Get a ILoadable instance corresponding to this object
-     * @return  new ILoadable instance
+     * Write an object array name/value pair, omitting the pair if the array is <code>null</code>
+     * @param writer    Writer to write to
+     * @param name      Name of array
+     * @param array     Array to write
+     * @throws IOException
      */
-    public abstract ILoadable<? extends AbstractBakeObject> getLoader();
-
-    enum ReadType { OBJECT, LIST, ARRAY }
+    protected static void writeArray(JsonWriter writer, String name, AbstractBakeObject[] array) throws IOException {
+        if (array != null) {
+            writer.name(name).beginArray();
+            for (AbstractBakeObject obj : array) {
+                obj.write(writer);
+            }
+            writer.endArray();
+        }
+    }
 
     /**
-     * Read an object from a JSON string
-     * @param json  JSON string to read
-     * @param type  Typr of object to read; one of {@link ReadType}
-     * @return new object
-     * @throws FileNotFoundException
+     * Write a JSON representation of this object
+     * @param writer    Writer to write to
+     * @throws IOException
      */
-    protected Object read(String json, ReadType type) throws FileNotFoundException {
-        Object result = null;
-
-        // TODO static version of AbstractBakeObject.read() required to avoid unnecessary object creation
+    public abstract void write(JsonWriter writer) throws IOException;
 
-        ILoadable<? extends AbstractBakeObject> loader = getLoader();   // current reason it can't be static
-        if (loader != null) {
-            StringReader strReader = new StringReader(json);
-            JsonReader jsonReader = null;
+    /**
+     * Create a JSON string representation of this object
+     * @return  JSON string
+     */
+    public String toJson() {
+        StringWriter strWriter = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(strWriter);
+        try {
+            write(jsonWriter);
+            jsonWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
             try {
-                jsonReader = new JsonReader(strReader);
-
-                switch (type) {
-                    case OBJECT:
-                        result = loader.read(jsonReader);
-                        break;
-                    case LIST:
-                        result = loader.readList(jsonReader);
-                        break;
-                    case ARRAY:
-                        result = loader.readArray(jsonReader);
-                        break;
-                }
+                jsonWriter.close();
             } catch (IOException e) {
                 e.printStackTrace();
-            } finally {
-                close(strReader, jsonReader);
             }
         }
-        return result;
+        return strWriter.toString();
     }
 
+    /**
+     * Get the shared ILoadable instance corresponding to this object
+     * @return  ILoadable instance
+     */
+    public abstract ILoadable<? extends AbstractBakeObject> getLoader();
+
     /**
      * Read an object from a JSON string
      * @param json  JSON string to read
      * @param <T>   Type of object to return
      * @return  new object
      * @throws FileNotFoundException
+     * @see LoadableRegistry#read(Class, String)
      */
+    @SuppressWarnings("unchecked")
     public <T extends AbstractBakeObject> T read(String json) throws FileNotFoundException {
-        return (T) read(json, ReadType.OBJECT);
+        return (T) LoadableRegistry.read(getLoader(), json);
     }
 
     /**
@@ -178,9 +410,11 @@ public abstract class AbstractBakeObject {
      * @param <T>   Type of object to return
      * @return  new object list
      * @throws FileNotFoundException
+     * @see LoadableRegistry#readList(Class, String)
      */
+    @SuppressWarnings("unchecked")
     public <T extends AbstractBakeObject> List<T> readList(String json) throws FileNotFoundException {
-        return (List<T>) read(json, ReadType.OBJECT);
+        return (List<T>) LoadableRegistry.readList(getLoader(), json);
     }
 
     /**
@@ -189,27 +423,11 @@ public abstract class AbstractBakeObject {
      * @param <T>   Type of object to return
      * @return  new object array
      * @throws FileNotFoundException
+     * @see LoadableRegistry#readArray(Class, String)
      */
+    @SuppressWarnings("unchecked")
     public <T extends AbstractBakeObject> T[] readArray(String json) throws FileNotFoundException {
-        return (T[]) read(json, ReadType.OBJECT);
-    }
-
-    /**
-     * Tidy up after json read
-     * @param strReader     String reader
-     * @param jsonReader    JSON reader
-     */
-    private void close(StringReader strReader, JsonReader jsonReader) {
-        try {
-            if (jsonReader != null) {
-                jsonReader.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        if (strReader != null) {
-            strReader.close();
-        }
+        return (T[]) LoadableRegistry.readArray(getLoader(), json);
     }
 
 }
@@ -18,6 +18,7 @@
 package ie.ianbuttimer.bakingguru.bake;
 
 import android.util.JsonReader;
+import android.util.JsonWriter;
 
 import org.parceler.Parcel;
 
@@ -26,6 +27,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import ie.ianbuttimer.bakingguru.data.ILoadable;
+import ie.ianbuttimer.bakingguru.data.ParseContext;
+import ie.ianbuttimer.bakingguru.data.StringPool;
 
 /**
  * Class representing a recipe ingredient
@@ -38,6 +41,9 @@ public class Ingredient extends AbstractBakeObject {
     public static final String ID_MEASURE = "measure";
     public static final String ID_INGREDIENT = "ingredient";
 
+    /** Shared, stateless loader for Ingredient objects */
+    public static final Loader LOADER = new Loader();
+
     double quantity;
     String measure;
     String ingredient;
@@ -74,15 +80,19 @@ public class Ingredient extends AbstractBakeObject {
 
         reader.beginObject();
         while (reader.hasNext()) {
-            String name = reader.nextName();
-            if (name.equals(ID_QUANTITY)) {
-                ingredient.quantity = nextDouble(reader, 0);
-            } else if (name.equals(ID_MEASURE)) {
-                ingredient.measure = nextString(reader, "");
-            } else if (name.equals(ID_INGREDIENT)) {
-                ingredient.ingredient = nextString(reader, "");
-            } else {
-                reader.skipValue();
+            switch (reader.nextName()) {
+                case ID_QUANTITY:
+                    ingredient.quantity = nextDouble(reader, 0);
+                    break;
+                case ID_MEASURE:
+                    ingredient.measure = StringPool.intern(nextString(reader, ""));
+                    break;
+                case ID_INGREDIENT:
+                    ingredient.ingredient = StringPool.intern(nextString(reader, ""));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
         reader.endObject();
@@ -96,11 +106,22 @@ public class Ingredient extends AbstractBakeObject {
      * @throws IOException
      */
     public static List<Ingredient> readIngredientList(JsonReader reader) throws IOException {
-        List<Ingredient> list = new ArrayList<>();
+        return readIngredientList(reader, new ArrayList<Ingredient>());
+    }
 
+    /**
+     * Read Ingredient objects from the specified reader into a list
+     * @param reader    Reader to read object from
+     * @param list      List to add to
+     * @return  list
+     * @throws IOException
+     */
+    private static List<Ingredient> readIngredientList(JsonReader reader, List<Ingredient> list) throws IOException {
         reader.beginArray();
         while (reader.hasNext()) {
-            list.add(readIngredient(reader));
+            if (isNextObject(reader)) {
+                list.add(readIngredient(reader));
+            }
         }
         reader.endArray();
         return list;
@@ -113,10 +134,36 @@ public class Ingredient extends AbstractBakeObject {
      * @throws IOException
      */
     public static Ingredient[] readIngredientsArray(JsonReader reader) throws IOException {
-        List<Ingredient> list = readIngredientList(reader);
-        return list.toArray(new Ingredient[list.size()]);
+        // read into a reusable scratch list, to avoid a throwaway list per array
+        ParseContext context = ParseContext.obtain();
+        List<Ingredient> list = context.obtainList(Ingredient.class);
+        try {
+            readIngredientList(reader, list);
+            return list.toArray(new Ingredient[list.size()]);
+        } finally {
+            list.clear();
+            context.release();
+        }
     }
 
+    /**
+     * Write an Ingredient object to the specified writer
+     * @param writer        Writer to write object to
+     * @param ingredient    Object to write
+     * @throws IOException
+     */
+    public static void writeIngredient(JsonWriter writer, Ingredient ingredient) throws IOException {
+        writer.beginObject();
+        writer.name(ID_QUANTITY).value(ingredient.quantity);
+        writeString(writer, ID_MEASURE, ingredient.measure);
+        writeString(writer, ID_INGREDIENT, ingredient.ingredient);
+        writer.endObject();
+    }
+
+    @Override
+    public void write(JsonWriter writer) throws IOException {
+        writeIngredient(writer, this);
+    }
 
     @Override
     public void set(Object original) throws IllegalArgumentException {
@@ -131,7 +178,7 @@ public class Ingredient extends AbstractBakeObject {
 
     @Override
     public ILoadable<Ingredient> getLoader() {
-        return new Loader();
+        return LOADER;
     }
 
     public double getQuantity() {
@@ -185,7 +232,7 @@ public class Ingredient extends AbstractBakeObject {
     /**
      * Loader class for Ingredients
      */
-    public class Loader implements ILoadable<Ingredient> {
+    public static class Loader implements ILoadable<Ingredient> {
 
         @Override
         public Ingredient read(JsonReader reader) throws IOException {
@@ -18,6 +18,8 @@
 package ie.ianbuttimer.bakingguru.bake;
 
 import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
 
 import org.parceler.Parcel;
 
@@ -26,7 +28,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import ie.ianbuttimer.bakingguru.BakingGuruApp;
+import ie.ianbuttimer.bakingguru.data.IItemCallback;
 import ie.ianbuttimer.bakingguru.data.ILoadable;
+import ie.ianbuttimer.bakingguru.data.StringPool;
 
 /**
  * Class representing a recipe
@@ -41,6 +45,10 @@ public class Recipe extends AbstractBakeObject {
     public static final String ID_STEPS = "steps";
     public static final String ID_SERVINGS = "servings";
     public static final String ID_IMAGE = "image";
+    public static final String ID_SUMMARY = "summary";     // app only, not in the server json
+
+    /** Shared, stateless loader for Recipe objects */
+    public static final Loader LOADER = new Loader();
 
     int id;
     String name;
@@ -49,6 +57,7 @@ public class Recipe extends AbstractBakeObject {
     int servings;
     String image;
     RecipeType type;
+    boolean summary;    // only summary info, i.e. no ingredients or steps
 
     /**
      * Default constructor
@@ -61,6 +70,7 @@ public class Recipe extends AbstractBakeObject {
         servings = 0;
         image = "";
         type = RecipeType.FOOD;
+        summary = false;
     }
 
     /**
@@ -74,21 +84,39 @@ public class Recipe extends AbstractBakeObject {
 
         reader.beginObject();
         while (reader.hasNext()) {
-            String name = reader.nextName();
-            if (name.equals(ID_KEY)) {
-                recipe.id = nextInt(reader, 0);
-            } else if (name.equals(ID_NAME)) {
-                recipe.setName(nextString(reader, ""));
-            } else if (name.equals(ID_INGREDIENTS)) {
-                recipe.ingredients = Ingredient.readIngredientsArray(reader);
-            } else if (name.equals(ID_STEPS)) {
-                recipe.steps = Step.readStepsArray(reader);
-            } else if (name.equals(ID_SERVINGS)) {
-                recipe.servings = nextInt(reader, 0);
-            } else if (name.equals(ID_IMAGE)) {
-                recipe.image = nextString(reader, "");
-            } else {
-                reader.skipValue();
+            switch (reader.nextName()) {
+                case ID_KEY:
+                    recipe.id = nextInt(reader, 0);
+                    break;
+                case ID_NAME:
+                    recipe.setName(nextString(reader, ""));
+                    break;
+                case ID_INGREDIENTS:
+                    if (isNextArray(reader)) {
+                        recipe.ingredients = Ingredient.readIngredientsArray(reader);
+                    }
+                    break;
+                case ID_STEPS:
+                    if (isNextArray(reader)) {
+                        recipe.steps = Step.readStepsArray(reader);
+                    }
+                    break;
+                case ID_SERVINGS:
+                    recipe.servings = nextInt(reader, 0);
+                    break;
+                case ID_IMAGE:
+                    recipe.image = nextString(reader, "");
+                    break;
+                case ID_SUMMARY:
+                    if (reader.peek() == JsonToken.BOOLEAN) {
+                        recipe.summary = reader.nextBoolean();
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
         reader.endObject();
@@ -104,14 +132,48 @@ public class Recipe extends AbstractBakeObject {
     public static List<Recipe> readRecipeList(JsonReader reader) throws IOException {
         List<Recipe> list = new ArrayList<>();
 
-        reader.beginArray();
-        while (reader.hasNext()) {
-            list.add(readRecipe(reader));
+        StringPool.begin();
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (isNextObject(reader)) {
+                    list.add(readRecipe(reader));
+                }
+            }
+            reader.endArray();
+        } finally {
+            StringPool.end();
         }
-        reader.endArray();
         return list;
     }
 
+    /**
+     * Read a Recipe object list from the specified reader, passing each object to the callback
+     * as soon as it has been read
+     * @param reader    Reader to read object from
+     * @param callback  Callback to receive each Recipe object
+     * @return  number of Recipe objects read
+     * @throws IOException
+     */
+    public static int readRecipeList(JsonReader reader, IItemCallback<Recipe> callback) throws IOException {
+        int count = 0;
+
+        StringPool.begin();
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (isNextObject(reader)) {
+                    callback.onItem(readRecipe(reader));
+                    ++count;
+                }
+            }
+            reader.endArray();
+        } finally {
+            StringPool.end();
+        }
+        return count;
+    }
+
     /**
      * Read an Recipe object array from the specified reader
      * @param reader    Reader to read object from
@@ -123,6 +185,32 @@ public class Recipe extends AbstractBakeObject {
         return list.toArray(new Recipe[list.size()]);
     }
 
+    /**
+     * Write a Recipe object to the specified writer
+     * @param writer    Writer to write object to
+     * @param recipe    Object to write
+     * @throws IOException
+     */
+    public static void writeRecipe(JsonWriter writer, Recipe recipe) throws IOException {
+        writer.beginObject();
+        writer.name(ID_KEY).value(recipe.id);
+        writeString(writer, ID_NAME, recipe.name);
+        writeArray(writer, ID_INGREDIENTS, recipe.ingredients);
+        writeArray(writer, ID_STEPS, recipe.steps);
+        writer.name(ID_SERVINGS).value(recipe.servings);
+        writeString(writer, ID_IMAGE, recipe.image);
+        if (recipe.summary) {
+            // only written when set, so full recipes match the server json
+            writer.name(ID_SUMMARY).value(true);
+        }
+        writer.endObject();
+    }
+
+    @Override
+    public void write(JsonWriter writer) throws IOException {
+        writeRecipe(writer, this);
+    }
+
     @Override
     public void set(Object original) throws IllegalArgumentException {
         checkObject(original, getClass());
@@ -135,11 +223,12 @@ public class Recipe extends AbstractBakeObject {
         this.steps = from.steps;
         this.servings = from.servings;
         this.image = from.image;
+        this.summary = from.summary;
     }
 
     @Override
     public ILoadable<Recipe> getLoader() {
-        return new Loader();
+        return LOADER;
     }
 
     public int getId() {
@@ -212,6 +301,18 @@ public class Recipe extends AbstractBakeObject {
         this.type = type;
     }
 
+    /**
+     * Check if this object only contains the recipe summary, i.e. id, name, servings, image & type
+     * @return  <code>true</code> if ingredients & steps have not been loaded
+     */
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public void setSummary(boolean summary) {
+        this.summary = summary;
+    }
+
     /**
      * Return the number od recipe steps
      * @return  Number of steps
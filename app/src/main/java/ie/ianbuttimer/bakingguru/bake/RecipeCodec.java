@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.bake;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ie.ianbuttimer.bakingguru.data.ByteInput;
+import ie.ianbuttimer.bakingguru.data.ParseContext;
+import ie.ianbuttimer.bakingguru.data.StringPool;
+
+/**
+ * Compact, versioned binary encoding of Recipe objects for database storage.<br>
+ * Layout:
+ * <ul>
+ *     <li>format version byte</li>
+ *     <li>measure string table; varint count followed by the strings</li>
+ *     <li>recipe; id, name, servings, image, ingredients & steps</li>
+ * </ul>
+ * Integers are zigzag varints, strings are varint length (+1, 0 for <code>null</code>) prefixed UTF-8,
+ * ingredient measures are varint indices into the string table and quantities are stored as
+ * thousandths where exact, otherwise as raw double bits.
+ */
+@SuppressWarnings("unused")
+public final class RecipeCodec {
+
+    /** Current binary format version */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int QUANTITY_SCALE = 1000;
+    private static final double QUANTITY_SCALED_LIMIT = 1e12;
+    private static final int QUANTITY_RAW_FLAG = 0x01;
+
+    /**
+     * Private constructor
+     */
+    private RecipeCodec() {
+        // can't instantiate class
+    }
+
+    /**
+     * Encode a Recipe object
+     * @param recipe    Object to encode
+     * @return  encoded bytes
+     */
+    public static @NonNull byte[] encode(@NonNull Recipe recipe) {
+        Output out = new Output();
+        out.writeByte(FORMAT_VERSION);
+
+        // build measure string table
+        Map<String, Integer> measures = new LinkedHashMap<>();
+        if (recipe.ingredients != null) {
+            for (Ingredient ingredient : recipe.ingredients) {
+                String measure = ingredient.measure;
+                if ((measure != null) && !measures.containsKey(measure)) {
+                    measures.put(measure, measures.size());
+                }
+            }
+        }
+        out.writeVarint(measures.size());
+        for (String measure : measures.keySet()) {
+            out.writeString(measure);
+        }
+
+        out.writeSignedVarint(recipe.id);
+        out.writeString(recipe.name);
+        out.writeSignedVarint(recipe.servings);
+        out.writeString(recipe.image);
+
+        if (recipe.ingredients == null) {
+            out.writeVarint(0);
+        } else {
+            out.writeVarint(recipe.ingredients.length);
+            for (Ingredient ingredient : recipe.ingredients) {
+                out.writeQuantity(ingredient.quantity);
+                // 0 is null, otherwise table index + 1
+                out.writeVarint(ingredient.measure == null ? 0 : measures.get(ingredient.measure) + 1);
+                out.writeString(ingredient.ingredient);
+            }
+        }
+
+        if (recipe.steps == null) {
+            out.writeVarint(0);
+        } else {
+            out.writeVarint(recipe.steps.length);
+            for (Step step : recipe.steps) {
+                out.writeSignedVarint(step.id);
+                out.writeString(step.shortDescription);
+                out.writeString(step.description);
+                out.writeString(step.videoURL);
+                out.writeString(step.thumbnailURL);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a Recipe object
+     * @param data  Encoded bytes, e.g. directly from a cursor blob
+     * @return  new Recipe object
+     * @throws IOException if the data is not a valid encoding
+     */
+    public static @NonNull Recipe decode(@Nullable byte[] data) throws IOException {
+        ParseContext context = ParseContext.obtain();
+        ByteInput in = context.obtainByteInput(data);
+        List<String> measures = context.obtainList(String.class);
+        try {
+            return decode(in, measures);
+        } finally {
+            measures.clear();
+            context.releaseByteInput(in);
+            context.release();
+        }
+    }
+
+    /**
+     * Decode a Recipe object
+     * @param in        Input to read from
+     * @param measures  Empty list to use for the measure string table
+     * @return  new Recipe object
+     * @throws IOException if the data is not a valid encoding
+     */
+    private static Recipe decode(ByteInput in, List<String> measures) throws IOException {
+        readVersion(in);
+
+        int count = in.readCount();
+        for (int i = 0; i < count; i++) {
+            measures.add(StringPool.intern(in.readString()));
+        }
+
+        Recipe recipe = readSummary(in);
+
+        count = in.readCount();
+        Ingredient[] ingredients = new Ingredient[count];
+        for (int i = 0; i < count; i++) {
+            double quantity = readQuantity(in);
+            long measure = in.readVarint();
+            if (measure > measures.size()) {
+                throw new IOException("Invalid measure index " + measure);
+            }
+            ingredients[i] = new Ingredient(quantity,
+                    (measure == 0 ? null : measures.get((int) measure - 1)), StringPool.intern(in.readString()));
+        }
+        recipe.ingredients = ingredients;
+
+        count = in.readCount();
+        Step[] steps = new Step[count];
+        for (int i = 0; i < count; i++) {
+            int id = in.readSignedVarint();
+            steps[i] = new Step(id, StringPool.intern(in.readString()), in.readString(), in.readString(), in.readString());
+        }
+        recipe.steps = steps;
+
+        return recipe;
+    }
+
+    /**
+     * Decode the summary of a Recipe object, i.e. id, name, servings, image & type. The ingredients
+     * and steps are not decoded.
+     * @param data  Encoded bytes, e.g. directly from a cursor blob
+     * @return  new Recipe object, flagged as a summary
+     * @throws IOException if the data is not a valid encoding
+     * @see Recipe#isSummary()
+     */
+    public static @NonNull Recipe decodeSummary(@Nullable byte[] data) throws IOException {
+        ParseContext context = ParseContext.obtain();
+        ByteInput in = context.obtainByteInput(data);
+        try {
+            readVersion(in);
+
+            int count = in.readCount();
+            for (int i = 0; i < count; i++) {
+                in.skipString();
+            }
+
+            Recipe recipe = readSummary(in);
+            recipe.summary = true;
+            return recipe;
+        } finally {
+            context.releaseByteInput(in);
+            context.release();
+        }
+    }
+
+    /**
+     * Read and check the format version
+     * @param in    Input to read from
+     * @throws IOException if the data is not a valid encoding
+     */
+    private static void readVersion(ByteInput in) throws IOException {
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+    }
+
+    /**
+     * Read an ingredient quantity
+     * @param in    Input to read from
+     * @return  quantity
+     * @throws IOException if the data is not a valid encoding
+     */
+    private static double readQuantity(ByteInput in) throws IOException {
+        long value = in.readVarint();
+        double quantity;
+        if ((value & QUANTITY_RAW_FLAG) != 0) {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (long) in.readByte() << (i * 8);
+            }
+            quantity = Double.longBitsToDouble(bits);
+        } else {
+            value >>>= 1;
+            long scaled = (value >>> 1) ^ -(value & 1);
+            quantity = (double) scaled / QUANTITY_SCALE;
+        }
+        return quantity;
+    }
+
+    /**
+     * Read the recipe summary fields
+     * @param in    Input to read from
+     * @return  new Recipe object
+     * @throws IOException if the data is not a valid encoding
+     */
+    private static Recipe readSummary(ByteInput in) throws IOException {
+        Recipe recipe = new Recipe();
+        recipe.id = in.readSignedVarint();
+        recipe.setName(in.readString());
+        recipe.servings = in.readSignedVarint();
+        recipe.image = in.readString();
+        return recipe;
+    }
+
+    /**
+     * Check if the specified data is in the binary format
+     * @param data  Data to check
+     * @return  <code>true</code> if data is a binary encoding
+     */
+    public static boolean isEncoded(@Nullable byte[] data) {
+        return ((data != null) && (data.length > 0) && (data[0] == FORMAT_VERSION));
+    }
+
+    /**
+     * Calculate a content hash of binary data (64-bit FNV-1a). As the encoding is deterministic,
+     * recipes with the same content have the same hash.
+     * @param data  Data to hash
+     * @return  hash value
+     */
+    public static long hash(@Nullable byte[] data) {
+        long hash = 0xcbf29ce484222325L;    // offset basis
+        if (data != null) {
+            for (byte b : data) {
+                hash ^= (b & 0xff);
+                hash *= 0x100000001b3L;     // prime
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Binary output buffer
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(256);
+        }
+
+        void writeByte(int value) {
+            write(value);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));  // zigzag
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+            } else {
+                byte[] bytes = value.getBytes(UTF_8);
+                writeVarint(bytes.length + 1);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        void writeQuantity(double value) {
+            long scaled = Math.round(value * QUANTITY_SCALE);
+            if ((Math.abs(value) < QUANTITY_SCALED_LIMIT) && (((double) scaled / QUANTITY_SCALE) == value)) {
+                writeVarint(((scaled << 1) ^ (scaled >> 63)) << 1);
+            } else {
+                long bits = Double.doubleToRawLongBits(value);
+                writeVarint(QUANTITY_RAW_FLAG);
+                for (int i = 0; i < 8; i++) {
+                    write((int) (bits >>> (i * 8)));
+                }
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package ie.ianbuttimer.bakingguru.bake;
 
 import android.text.TextUtils;
 import android.util.JsonReader;
+import android.util.JsonWriter;
 
 import org.parceler.Parcel;
 
@@ -27,6 +28,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import ie.ianbuttimer.bakingguru.data.ILoadable;
+import ie.ianbuttimer.bakingguru.data.ParseContext;
+import ie.ianbuttimer.bakingguru.data.StringPool;
 
 /**
  * Class representing a recipe step
@@ -43,6 +46,9 @@ public class Step extends AbstractBakeObject {
 
     public static final int INVALID_ID = -1;
 
+    /** Shared, stateless loader for Step objects */
+    public static final Loader LOADER = new Loader();
+
     private enum URL_TYPE { UNKNOWN, EMPTY, VIDEO, IMAGE };
 
     int id;
@@ -89,19 +95,25 @@ public class Step extends AbstractBakeObject {
 
         reader.beginObject();
         while (reader.hasNext()) {
-            String name = reader.nextName();
-            if (name.equals(ID_KEY)) {
-                step.id = nextInt(reader, 0);
-            } else if (name.equals(SHORT_DESCRIPTION_KEY)) {
-                step.shortDescription = nextString(reader, "");
-            } else if (name.equals(DESCRIPTION_KEY)) {
-                step.description = nextString(reader, "");
-            } else if (name.equals(VIDEO_URL_KEY)) {
-                step.videoURL = nextString(reader, "");
-            } else if (name.equals(THUMBNAIL_URL_KEY)) {
-                step.thumbnailURL = nextString(reader, "");
-            } else {
-                reader.skipValue();
+            switch (reader.nextName()) {
+                case ID_KEY:
+                    step.id = nextInt(reader, 0);
+                    break;
+                case SHORT_DESCRIPTION_KEY:
+                    step.shortDescription = StringPool.intern(nextString(reader, ""));
+                    break;
+                case DESCRIPTION_KEY:
+                    step.description = nextString(reader, "");
+                    break;
+                case VIDEO_URL_KEY:
+                    step.videoURL = nextString(reader, "");
+                    break;
+                case THUMBNAIL_URL_KEY:
+                    step.thumbnailURL = nextString(reader, "");
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
         reader.endObject();
@@ -115,11 +127,22 @@ public class Step extends AbstractBakeObject {
      * @throws IOException
      */
     public static List<Step> readStepsList(JsonReader reader) throws IOException {
-        List<Step> list = new ArrayList<>();
+        return readStepsList(reader, new ArrayList<Step>());
+    }
 
+    /**
+     * Read Step objects from the specified reader into a list
+     * @param reader    Reader to read object from
+     * @param list      List to add to
+     * @return  list
+     * @throws IOException
+     */
+    private static List<Step> readStepsList(JsonReader reader, List<Step> list) throws IOException {
         reader.beginArray();
         while (reader.hasNext()) {
-            list.add(readStep(reader));
+            if (isNextObject(reader)) {
+                list.add(readStep(reader));
+            }
         }
         reader.endArray();
         return list;
@@ -132,8 +155,16 @@ public class Step extends AbstractBakeObject {
      * @throws IOException
      */
     public static Step[] readStepsArray(JsonReader reader) throws IOException {
-        List<Step> list = readStepsList(reader);
-        return list.toArray(new Step[list.size()]);
+        // read into a reusable scratch list, to avoid a throwaway list per array
+        ParseContext context = ParseContext.obtain();
+        List<Step> list = context.obtainList(Step.class);
+        try {
+            readStepsList(reader, list);
+            return list.toArray(new Step[list.size()]);
+        } finally {
+            list.clear();
+            context.release();
+        }
     }
 
     /**
@@ -180,6 +211,27 @@ public class Step extends AbstractBakeObject {
         return type;
     }
 
+    /**
+     * Write a Step object to the specified writer
+     * @param writer    Writer to write object to
+     * @param step      Object to write
+     * @throws IOException
+     */
+    public static void writeStep(JsonWriter writer, Step step) throws IOException {
+        writer.beginObject();
+        writer.name(ID_KEY).value(step.id);
+        writeString(writer, SHORT_DESCRIPTION_KEY, step.shortDescription);
+        writeString(writer, DESCRIPTION_KEY, step.description);
+        writeString(writer, VIDEO_URL_KEY, step.videoURL);
+        writeString(writer, THUMBNAIL_URL_KEY, step.thumbnailURL);
+        writer.endObject();
+    }
+
+    @Override
+    public void write(JsonWriter writer) throws IOException {
+        writeStep(writer, this);
+    }
+
     @Override
     public void set(Object original) throws IllegalArgumentException {
         checkObject(original, Step.class);
@@ -195,7 +247,7 @@ public class Step extends AbstractBakeObject {
 
     @Override
     public ILoadable<Step> getLoader() {
-        return new Loader();
+        return LOADER;
     }
 
     public int getId() {
@@ -269,7 +321,7 @@ public class Step extends AbstractBakeObject {
     /**
      * Loader class for Steps
      */
-    public class Loader implements ILoadable<Step> {
+    public static class Loader implements ILoadable<Step> {
 
         @Override
         public Step read(JsonReader reader) throws IOException {
@@ -42,6 +42,15 @@ public abstract class AbstractReader<T, L extends ILoadable> {
         this.loader = loader;
     }
 
+    /**
+     * Constructor using the shared loader from the {@link LoadableRegistry}
+     * @param clazz     Class of object to read
+     */
+    @SuppressWarnings("unchecked")
+    public AbstractReader(Class<T> clazz) {
+        this((L) LoadableRegistry.getLoader(clazz));
+    }
+
     /**
      * Read an object list
      * @return  New object list
@@ -59,17 +68,7 @@ public abstract class AbstractReader<T, L extends ILoadable> {
 
         JsonReader reader = new JsonReader(ioReader);
         try {
-            switch (type) {
-                case LIST:
-                    result = loader.readList(reader);
-                    break;
-                case ARRAY:
-                    result = loader.readArray(reader);
-                    break;
-                case OBJECT:
-                    result = loader.read(reader);
-                    break;
-            }
+            result = LoadableRegistry.read(loader, reader, type);
         } catch (IOException e) {
             Timber.e("JSON read error", e);
         } finally {
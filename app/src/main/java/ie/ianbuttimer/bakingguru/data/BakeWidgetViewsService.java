@@ -21,21 +21,18 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
 import android.support.annotation.LayoutRes;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import ie.ianbuttimer.bakingguru.R;
-import ie.ianbuttimer.bakingguru.bake.Ingredient;
-import ie.ianbuttimer.bakingguru.bake.Recipe;
 import ie.ianbuttimer.bakingguru.data.adapter.IngredientsAdapterViewBinder;
 import ie.ianbuttimer.bakingguru.data.db.BakingContract;
-import ie.ianbuttimer.bakingguru.data.provider.RecipeCursorProcessor;
 import ie.ianbuttimer.bakingguru.utils.UriUtils;
 import timber.log.Timber;
 
+import static android.provider.BaseColumns._ID;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.IngredientEntry.COLUMN_INGREDIENT;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.IngredientEntry.COLUMN_MEASURE;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.IngredientEntry.COLUMN_QUANTITY;
@@ -57,9 +54,10 @@ public class BakeWidgetViewsService extends RemoteViewsService {
         @LayoutRes int layoutId = intent.getIntExtra(LAYOUT_EXTRA, R.layout.ingredient_list_item);
         int widgetId = intent.getIntExtra(WIDGET_EXTRA, 0);
         if (intent.hasExtra(ID_EXTRA)) {
-            uri = UriUtils.getRecpeWithIdUri(intent.getIntExtra(ID_EXTRA, 0));
+            uri = UriUtils.getRecipeWithIdAdditionalInfoUri(intent.getIntExtra(ID_EXTRA, 0),
+                    BakingContract.PATH_INGREDIENTS);
         } else {
-            uri = BakingContract.RecipeEntry.CONTENT_URI;
+            uri = BakingContract.IngredientEntry.CONTENT_URI;
         }
         return new BakeWidgetViewsFactory(this, uri, layoutId, widgetId);
     }
@@ -98,7 +96,7 @@ public class BakeWidgetViewsService extends RemoteViewsService {
     };
 
     private static final String[] sCursorColumns = new String[] {
-        COLUMN_QUANTITY, COLUMN_MEASURE, COLUMN_INGREDIENT
+        _ID, COLUMN_QUANTITY, COLUMN_MEASURE, COLUMN_INGREDIENT
     };
 
     /**
@@ -108,7 +106,7 @@ public class BakeWidgetViewsService extends RemoteViewsService {
 
         private Context mContext;
         private Uri mUri;
-        private MatrixCursor mCursor;
+        private Cursor mCursor;
         @LayoutRes private int mLayoutId;
         private int mWidgetId;
 
@@ -133,24 +131,8 @@ public class BakeWidgetViewsService extends RemoteViewsService {
             if (mCursor != null) {
                 mCursor.close();
             }
-            Cursor cursor = mContext.getContentResolver().query(mUri, null, null, null, null);
-            Recipe recipe = null;
-
-            if (cursor != null) {
-                recipe = RecipeCursorProcessor.processSingle(cursor);
-                cursor.close();
-            }
-
-            if (recipe != null) {
-                // create ingredients cursor
-                mCursor = new MatrixCursor(sCursorColumns, recipe.getIngredientCount());
-
-                for (Ingredient ingredient : recipe.getIngredients()) {
-                    mCursor.addRow(new Object[] {
-                        ingredient.getQuantity(), ingredient.getMeasure(), ingredient.getIngredient()
-                    });
-                }
-            }
+            // ingredients are read directly from their table, in recipe order
+            mCursor = mContext.getContentResolver().query(mUri, sCursorColumns, null, null, null);
         }
 
         @Override
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Reusable binary input buffer, for decoding varints and length prefixed UTF-8 strings
+ */
+@SuppressWarnings("unused")
+public final class ByteInput {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * Default constructor
+     */
+    public ByteInput() {
+        reset(null);
+    }
+
+    /**
+     * Constructor
+     * @param buffer    Data to read
+     */
+    public ByteInput(byte[] buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Reset this object to read the specified data
+     * @param buffer    Data to read
+     * @return  this object
+     */
+    public ByteInput reset(byte[] buffer) {
+        this.buffer = (buffer != null ? buffer : EMPTY);
+        this.position = 0;
+        return this;
+    }
+
+    /**
+     * Read a byte
+     * @return  unsigned byte value
+     * @throws IOException if there is no more data
+     */
+    public int readByte() throws IOException {
+        if (position >= buffer.length) {
+            throw new IOException("Unexpected end of data");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Read an unsigned varint
+     * @return  value
+     * @throws IOException if the data is malformed
+     */
+    public long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Read a zigzag encoded signed varint
+     * @return  value
+     * @throws IOException if the data is malformed
+     */
+    public int readSignedVarint() throws IOException {
+        long value = readVarint();
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    /**
+     * Read an element count, where each element occupies at least one byte
+     * @return  count
+     * @throws IOException if the data is malformed
+     */
+    public int readCount() throws IOException {
+        long value = readVarint();
+        if ((value < 0) || (value > (buffer.length - position))) {
+            throw new IOException("Invalid count " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read a varint length (+1, 0 for <code>null</code>) prefixed UTF-8 string
+     * @return  string
+     * @throws IOException if the data is malformed
+     */
+    public String readString() throws IOException {
+        long length = readVarint();
+        if (length == 0) {
+            return null;
+        }
+        --length;
+        // an unsigned varint with the top bit set is negative as a long
+        if ((length < 0) || (length > (buffer.length - position))) {
+            throw new IOException("Invalid string length " + length);
+        }
+        String value = new String(buffer, position, (int) length, UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Skip a varint length prefixed UTF-8 string
+     * @throws IOException if the data is malformed
+     */
+    public void skipString() throws IOException {
+        long length = readVarint();
+        if (length != 0) {
+            --length;
+            if ((length < 0) || (length > (buffer.length - position))) {
+                throw new IOException("Invalid string length " + length);
+            }
+            position += length;
+        }
+    }
+}
@@ -29,9 +29,10 @@ import android.os.ResultReceiver;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.util.Date;
-
 import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.db.DbDiagnostics;
+import ie.ianbuttimer.bakingguru.data.db.RecipeEvictor;
+import ie.ianbuttimer.bakingguru.data.provider.RecipeCache;
 import ie.ianbuttimer.bakingguru.utils.DbUtils;
 import ie.ianbuttimer.bakingguru.utils.PreferenceControl;
 import ie.ianbuttimer.bakingguru.utils.UriUtils;
@@ -41,13 +42,14 @@ import static android.app.Activity.RESULT_OK;
 import static android.provider.BaseColumns._ID;
 import static android.text.format.DateUtils.DAY_IN_MILLIS;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.ID_EQ_SELECTION;
-import static ie.ianbuttimer.bakingguru.data.db.BakingContract.TIMESTAMP_LTEQ_SELECTION;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.accessedLtEqBatchSelection;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.columnInSelection;
 import static ie.ianbuttimer.bakingguru.utils.DbUtils.DB_DELETE_ALL;
-import static ie.ianbuttimer.bakingguru.utils.Utils.getParcelableArrayFromBundle;
 
 /**
- * IntentService to handle database caching functionality
+ * IntentService to handle database caching functionality.<br>
+ * Bulk recipe writes are handled by the {@link RecipeCacheWriter} write-behind queue, rather than
+ * being passed to this service in an intent.
  */
 
 public class DbCacheIntentService extends IntentService {
@@ -59,8 +61,6 @@ public class DbCacheIntentService extends IntentService {
     private static final String RECIPE = "recipe";
     /** Insert a recipe action */
     public static final String INSERT_RECIPE = "insert_" + RECIPE;
-    /** Insert multiple recipes action */
-    public static final String BULK_INSERT_RECIPE = "bulk_insert_" + RECIPE;
     /** Insert or update a recipe action */
     public static final String INSERT_OR_UPDATE_RECIPE = "insert_or_update_" + RECIPE;
     /** Update a recipe action */
@@ -71,15 +71,20 @@ public class DbCacheIntentService extends IntentService {
     public static final String DELETE_ALL_RECIPES = "delete_all_" + RECIPE;
     /** Clear expired recipe cache action */
     public static final String PURGE_EXPIRED_RECIPES = PURGE_EXPIRED + "_" + RECIPE;
+    /** Record a recipe was opened action */
+    public static final String ACCESS_RECIPE = "access_" + RECIPE;
+    /** Evict least recently opened recipes over the byte budget action */
+    public static final String EVICT_RECIPES = "evict_" + RECIPE;
 
     /** Name for ContentValues in intent */
     public static final String CV_EXTRA = "cv_extra";
-    /** Name for ContentValues array in intent */
-    public static final String CV_ARRAY_EXTRA = "cv_array_extra";
 
     /** Name for result count in result bundle */
     public static final String RESULT_COUNT = "result_count";
 
+    /** Maximum number of rows deleted per transaction when purging */
+    private static final int PURGE_BATCH_SIZE = 200;
+
     public static final String RESULT_RECEIVER = "resultReceiver";
 
 
@@ -94,8 +99,8 @@ public class DbCacheIntentService extends IntentService {
         }
         int id = intent.getIntExtra(_ID, 0);
         ContentValues cv = intent.getParcelableExtra(CV_EXTRA);
-        Cursor cursor;
         int count = 0;
+        Bundle result = new Bundle();
         ResultReceiver resultReceiver;
 
         if (intent.hasExtra(RESULT_RECEIVER)) {
@@ -108,21 +113,10 @@ public class DbCacheIntentService extends IntentService {
         switch (action) {
             // recipe related actions
             case INSERT_OR_UPDATE_RECIPE:
-                cursor = dbGetById(action, id);
-                if (cursor != null) {
-                    // row exists so update
-                    dbUpdate(getWithIdUri(action, id), cv);
-                    break;
-                }
-                // else fall through to insert
+                // recipe inserts replace any existing row, so no need to query first
             case INSERT_RECIPE:
                 dbInsert(action, cv);
                 break;
-            case BULK_INSERT_RECIPE:
-                ContentValues[] cvArray = (ContentValues[]) getParcelableArrayFromBundle(
-                        intent.getExtras(), CV_ARRAY_EXTRA, ContentValues[].class);
-                count = dbBulkInsert(action, cvArray);
-                break;
             case UPDATE_RECIPE:
                 count = dbUpdate(getWithIdUri(action, id), cv);
                 break;
@@ -131,19 +125,33 @@ public class DbCacheIntentService extends IntentService {
                 break;
             case DELETE_ALL_RECIPES:
                 count = dbDeleteAll(action);
+                dbClearFeeds();
+                break;
+            case ACCESS_RECIPE:
+                count = dbAccess(id);
                 break;
             case PURGE_EXPIRED:
             case PURGE_EXPIRED_RECIPES:
-                purgeExpiredMovies();
+                if (purgeExpiredMovies() > 0) {
+                    dbClearFeeds();
+                }
+                // fall through, expired recipes are purged first so eviction only applies to current ones
+            case EVICT_RECIPES:
+                Bundle eviction = RecipeEvictor.request(getApplicationContext());
+                if (eviction != null) {
+                    count += eviction.getInt(RecipeEvictor.RESULT_EVICTED);
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown service action: " + action);
         }
 
+        Timber.d("Db " + action + ": " + DbDiagnostics.getSummary());
+        Timber.d("Recipe cache: " + RecipeCache.getSummary());
+
         if (resultReceiver != null) {
-            Bundle bundle = new Bundle();
-            bundle.putInt(RESULT_COUNT, count);
-            resultReceiver.send(RESULT_OK, bundle);
+            result.putInt(RESULT_COUNT, count);
+            resultReceiver.send(RESULT_OK, result);
         }
     }
 
@@ -189,21 +197,6 @@ public class DbCacheIntentService extends IntentService {
         return resultUri;
     }
 
-    /**
-     * Add multiple rows to the database
-     * @param action    Action to do insert for
-     * @param cv        Values to add
-     * @return  Number of inserted items
-     */
-    private int dbBulkInsert(@NonNull String action, ContentValues[] cv) {
-        int count = 0;
-        Uri uri = getBaseUri(action);
-        if ((uri != null) && (cv != null)) {
-            count = getContentResolver().bulkInsert(uri, cv);
-        }
-        return count;
-    }
-
     /**
      * Update an existing recipe in the database
      * @param uri   Uri to use for update
@@ -218,6 +211,19 @@ public class DbCacheIntentService extends IntentService {
         return count;
     }
 
+    /**
+     * Record the time a recipe was opened, without notifying observers as its content is unchanged
+     * @param id    Id of recipe
+     * @return  <code>1</code> if update successful, <code>0</code> otherwise
+     */
+    private int dbAccess(int id) {
+        Uri uri = UriUtils.getRecpeWithIdUri(id).buildUpon()
+                .appendQueryParameter(BakingContract.QUERY_PARAM_NOTIFY, "false").build();
+        ContentValues cv = new ContentValues();
+        cv.put(BakingContract.RecipeEntry.COLUMN_ACCESSED, DbUtils.getTimestamp());
+        return getContentResolver().update(uri, cv, ID_EQ_SELECTION, DbUtils.idArgArray(id));
+    }
+
     /**
      * Get a row from the database
      * @param action    Action to do get for
@@ -290,56 +296,41 @@ public class DbCacheIntentService extends IntentService {
     }
 
     /**
-     * Purge recipes which have expired from the db
+     * Clear the stored feed validators, so the next sync downloads the complete feed rather than
+     * getting a 304 response for recipes which are no longer cached
+     * @return  Number of deleted items
+     */
+    private int dbClearFeeds() {
+        return getContentResolver().delete(BakingContract.FeedEntry.CONTENT_URI, DB_DELETE_ALL, null);
+    }
+
+    /**
+     * Purge recipes which have not been opened within the cache length from the db
      * @return  Number of deleted items
      */
     private int purgeExpiredMovies() {
         ContentResolver resolver = getContentResolver();
         int days = PreferenceControl.getCacheLengthPreference(getApplicationContext());
-        long expiryMsec = new Date().getTime() - (days * DAY_IN_MILLIS);    // expiry date in msec
-        Date expiryDate = new Date(expiryMsec);
+        long expiryMsec = DbUtils.getTimestamp() - (days * DAY_IN_MILLIS);    // expiry date in msec
+        String selection = accessedLtEqBatchSelection(BakingContract.RecipeEntry.TABLE_NAME, PURGE_BATCH_SIZE);
+        String[] selectionArgs = new String[] {
+            String.valueOf(expiryMsec)
+        };
         int count = 0;
+        int deleted;
 
-        Cursor cursor = resolver.query(BakingContract.RecipeEntry.CONTENT_URI, new String[] {
-            _ID     // only need id
-        }, TIMESTAMP_LTEQ_SELECTION, new String[] {
-            DbUtils.getTimestamp(expiryDate)
-        }, null);
+        // delete in bounded batches, each in its own transaction so the write lock is released between them
+        do {
+            deleted = resolver.delete(BakingContract.RecipeEntry.CONTENT_URI, selection, selectionArgs);
+            count += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
 
-        if (cursor != null) {
-            String[] toPurge = getSelectionArgs(cursor, cursor.getColumnIndex(_ID));
-            if (toPurge != null) {
-                count = dbDeleteById(PURGE_EXPIRED_RECIPES, toPurge);
-
-                Timber.i("Purged " + count + " recipe(s) from db");
-            }
+        if (count > 0) {
+            Timber.i("Purged " + count + " recipe(s) from db");
         }
         return count;
     }
 
-    /**
-     * Make a selection args array, and closes cursor
-     * @param cursor    Cursor to generate selection args from
-     * @param colIdx    Index of cursor column
-     * @return  selection args array
-     */
-    private String[] getSelectionArgs(Cursor cursor, int colIdx) {
-        String[] argArray = null;
-        if (cursor != null) {
-            int count = cursor.getCount();
-            if (count > 0) {
-                argArray = new String[count];
-
-                while (cursor.moveToNext()) {
-                    --count;    // use count var to avoid creating new var
-                    argArray[count] = cursor.getString(colIdx);
-                }
-            }
-            cursor.close();
-        }
-        return argArray;
-    }
-
     /**
      * Get a launcher intent for this service
      * @param context   Current context
@@ -18,12 +18,25 @@
 package ie.ianbuttimer.bakingguru.data;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.support.annotation.NonNull;
 
+import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.util.List;
 
 import timber.log.Timber;
@@ -35,6 +48,9 @@ import timber.log.Timber;
 @SuppressWarnings("unused")
 public class FileReader<T, L extends ILoadable> extends AbstractReader<T, L> {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     private WeakReference<Context> context;
     private String path;        // path to file
 
@@ -50,6 +66,18 @@ public class FileReader<T, L extends ILoadable> extends AbstractReader<T, L> {
         this.path = path;
     }
 
+    /**
+     * Constructor using the shared loader from the {@link LoadableRegistry}
+     * @param context   The current context
+     * @param path      Path to file to read
+     * @param clazz     Class of object to read
+     */
+    public FileReader(Context context, String path, Class<T> clazz) {
+        super(clazz);
+        this.context = new WeakReference<>(context);
+        this.path = path;
+    }
+
     /**
      * Read an object list
      * @return  New object list
@@ -58,10 +86,14 @@ public class FileReader<T, L extends ILoadable> extends AbstractReader<T, L> {
         Object result = null;
 
         InputStream stream = null;
-        InputStreamReader in;
+        Reader in;
         try {
-            stream = context.get().getAssets().open(path);
-            in = new InputStreamReader(stream);
+            in = readMapped();
+            if (in == null) {
+                // asset is compressed so can't be mapped, fallback to stream
+                stream = context.get().getAssets().open(path);
+                in = new BufferedReader(new InputStreamReader(stream, UTF_8), BUFFER_SIZE);
+            }
 
             switch (type) {
                 case LIST:
@@ -84,6 +116,37 @@ public class FileReader<T, L extends ILoadable> extends AbstractReader<T, L> {
         return result;
     }
 
+    /**
+     * Read the file by memory mapping it and decoding directly from the mapped buffer
+     * @return  Reader decoding the file contents, or <code>null</code> if the file can't be mapped,
+     *          e.g. it is a compressed asset
+     * @throws IOException
+     */
+    private Reader readMapped() throws IOException {
+        Reader reader = null;
+        AssetFileDescriptor afd;
+        try {
+            afd = context.get().getAssets().openFd(path);
+        } catch (FileNotFoundException e) {
+            afd = null;     // compressed assets can't be opened as a file descriptor
+        }
+        if (afd != null) {
+            FileInputStream stream = null;
+            try {
+                stream = afd.createInputStream();
+                FileChannel channel = stream.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        afd.getStartOffset(), afd.getDeclaredLength());
+                // mapping remains valid after the channel is closed
+                reader = new MappedBufferReader(buffer, UTF_8);
+            } finally {
+                close(stream);
+                afd.close();
+            }
+        }
+        return reader;
+    }
+
     /**
      * Read an object list
      * @return  New object list
@@ -128,6 +191,63 @@ public class FileReader<T, L extends ILoadable> extends AbstractReader<T, L> {
         }
     }
 
+    /**
+     * Reader decoding a mapped buffer a chunk at a time, so the whole file is never held as chars
+     */
+    private static class MappedBufferReader extends Reader {
+
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder;
+        private final CharBuffer chars;     // decoded chars not yet read
+        private boolean decoded;            // all bytes decoded flag
+
+        MappedBufferReader(ByteBuffer bytes, Charset charset) {
+            this.bytes = bytes;
+            this.decoder = charset.newDecoder();
+            this.chars = CharBuffer.allocate(BUFFER_SIZE);
+            this.chars.flip();      // nothing decoded yet
+        }
+
+        @Override
+        public int read(@NonNull char[] chars, int offset, int length) throws IOException {
+            int count = -1;     // end of stream
+            if (length == 0) {
+                count = 0;
+            } else if (this.chars.hasRemaining() || fill()) {
+                count = Math.min(length, this.chars.remaining());
+                this.chars.get(chars, offset, count);
+            }
+            return count;
+        }
+
+        /**
+         * Decode the next chunk of bytes
+         * @return  <code>true</code> if chars are available
+         * @throws CharacterCodingException if the bytes are invalid
+         */
+        private boolean fill() throws CharacterCodingException {
+            chars.clear();
+            while ((chars.position() == 0) && !decoded) {
+                // the whole file is mapped, so every decode is given the end of the input
+                CoderResult result = decoder.decode(bytes, chars, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isUnderflow()) {
+                    decoder.flush(chars);
+                    decoded = true;
+                }
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // no op
+        }
+    }
+
     public String getPath() {
         return path;
     }
@@ -17,7 +17,7 @@
 
 package ie.ianbuttimer.bakingguru.data;
 
-import java.io.StringReader;
+import java.io.Reader;
 import java.util.List;
 
 
@@ -39,6 +39,16 @@ public class JsonStringReader<T, L extends ILoadable> extends AbstractReader<T,
         this.json = json;
     }
 
+    /**
+     * Constructor using the shared loader from the {@link LoadableRegistry}
+     * @param json      String to read
+     * @param clazz     Class of object to read
+     */
+    public JsonStringReader(String json, Class<T> clazz) {
+        super(clazz);
+        this.json = json;
+    }
+
     /**
      * Read an object list
      * @return  New object list
@@ -46,17 +56,23 @@ public class JsonStringReader<T, L extends ILoadable> extends AbstractReader<T,
     private Object read(ReadType type) {
         Object result = null;
 
-        StringReader stream = new StringReader(json);
-        switch (type) {
-            case LIST:
-                result = readReaderList(stream);
-                break;
-            case ARRAY:
-                result = readReaderArray(stream);
-                break;
-            case OBJECT:
-                result = readReaderObject(stream);
-                break;
+        ParseContext context = ParseContext.obtain();
+        Reader stream = context.obtainReader(json);
+        try {
+            switch (type) {
+                case LIST:
+                    result = readReaderList(stream);
+                    break;
+                case ARRAY:
+                    result = readReaderArray(stream);
+                    break;
+                case OBJECT:
+                    result = readReaderObject(stream);
+                    break;
+            }
+        } finally {
+            context.releaseReader(stream);
+            context.release();
         }
         return result;
     }
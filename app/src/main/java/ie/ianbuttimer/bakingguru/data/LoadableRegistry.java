@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ie.ianbuttimer.bakingguru.bake.Ingredient;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.Step;
+import timber.log.Timber;
+
+/**
+ * Registry of shared, stateless ILoadable instances keyed by the type of object they load.<br>
+ * Provides static read entry points so decoding does not require a throwaway object or loader.
+ */
+@SuppressWarnings("unused")
+public final class LoadableRegistry {
+
+    private static final Map<Class<?>, ILoadable<?>> sLoaders;
+
+    static {
+        Map<Class<?>, ILoadable<?>> loaders = new HashMap<>();
+        loaders.put(Recipe.class, Recipe.LOADER);
+        loaders.put(Step.class, Step.LOADER);
+        loaders.put(Ingredient.class, Ingredient.LOADER);
+        sLoaders = Collections.unmodifiableMap(loaders);
+    }
+
+    /**
+     * Private constructor
+     */
+    private LoadableRegistry() {
+        // can't instantiate class
+    }
+
+    /**
+     * Get the loader for the specified type of object
+     * @param clazz Class of object to load
+     * @param <T>   Type of object to load
+     * @return  Loader
+     * @throws IllegalArgumentException if there is no loader for the specified type
+     */
+    @SuppressWarnings("unchecked")
+    public static @NonNull <T> ILoadable<T> getLoader(@NonNull Class<T> clazz) {
+        ILoadable<T> loader = (ILoadable<T>) sLoaders.get(clazz);
+        if (loader == null) {
+            throw new IllegalArgumentException("No loader registered for " + clazz.getName());
+        }
+        return loader;
+    }
+
+    /**
+     * Read an object, object list or object array from a reader
+     * @param loader    Loader to use
+     * @param reader    Reader to read from
+     * @param type      Type of read to perform
+     * @return  new object, list or array
+     * @throws IOException
+     */
+    static Object read(@NonNull ILoadable<?> loader, @NonNull JsonReader reader, @NonNull AbstractReader.ReadType type) throws IOException {
+        Object result = null;
+        StringPool.begin();
+        try {
+            switch (type) {
+                case LIST:
+                    result = loader.readList(reader);
+                    break;
+                case ARRAY:
+                    result = loader.readArray(reader);
+                    break;
+                case OBJECT:
+                    result = loader.read(reader);
+                    break;
+            }
+        } finally {
+            StringPool.end();
+        }
+        return result;
+    }
+
+    /**
+     * Read an object, object list or object array from a JSON string
+     * @param loader    Loader to use
+     * @param json      JSON string to read
+     * @param type      Type of read to perform
+     * @return  new object, list or array, or <code>null</code> if error
+     */
+    private static Object read(@NonNull ILoadable<?> loader, @Nullable String json, @NonNull AbstractReader.ReadType type) {
+        Object result = null;
+        if ((json != null) && (type == AbstractReader.ReadType.LIST)) {
+            try {
+                // large lists are decoded in parallel
+                result = ParallelDecoder.readList(loader, json);
+            } catch (IOException e) {
+                Timber.e("JSON read error", e);
+            }
+        } else if (json != null) {
+            ParseContext context = ParseContext.obtain();
+            Reader strReader = context.obtainReader(json);
+            JsonReader jsonReader = new JsonReader(strReader);
+            try {
+                result = read(loader, jsonReader, type);
+            } catch (IOException e) {
+                Timber.e("JSON read error", e);
+            } finally {
+                try {
+                    jsonReader.close();
+                } catch (IOException e) {
+                    Timber.e("Reader close error", e);
+                }
+                context.releaseReader(strReader);
+                context.release();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read an object from a JSON string
+     * @param loader    Loader to use
+     * @param json      JSON string to read
+     * @param <T>       Type of object to return
+     * @return  new object or <code>null</code> if error
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nullable <T> T read(@NonNull ILoadable<T> loader, @Nullable String json) {
+        return (T) read(loader, json, AbstractReader.ReadType.OBJECT);
+    }
+
+    /**
+     * Read an object list from a JSON string
+     * @param loader    Loader to use
+     * @param json      JSON string to read
+     * @param <T>       Type of object to return
+     * @return  new object list or <code>null</code> if error
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nullable <T> List<T> readList(@NonNull ILoadable<T> loader, @Nullable String json) {
+        return (List<T>) read(loader, json, AbstractReader.ReadType.LIST);
+    }
+
+    /**
+     * Read an object array from a JSON string
+     * @param loader    Loader to use
+     * @param json      JSON string to read
+     * @param <T>       Type of object to return
+     * @return  new object array or <code>null</code> if error
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nullable <T> T[] readArray(@NonNull ILoadable<T> loader, @Nullable String json) {
+        return (T[]) read(loader, json, AbstractReader.ReadType.ARRAY);
+    }
+
+    /**
+     * Read an object from a JSON string
+     * @param clazz Class of object to read
+     * @param json  JSON string to read
+     * @param <T>   Type of object to return
+     * @return  new object or <code>null</code> if error
+     */
+    public static @Nullable <T> T read(@NonNull Class<T> clazz, @Nullable String json) {
+        return read(getLoader(clazz), json);
+    }
+
+    /**
+     * Read an object list from a JSON string
+     * @param clazz Class of object to read
+     * @param json  JSON string to read
+     * @param <T>   Type of object to return
+     * @return  new object list or <code>null</code> if error
+     */
+    public static @Nullable <T> List<T> readList(@NonNull Class<T> clazz, @Nullable String json) {
+        return readList(getLoader(clazz), json);
+    }
+
+    /**
+     * Read an object array from a JSON string
+     * @param clazz Class of object to read
+     * @param json  JSON string to read
+     * @param <T>   Type of object to return
+     * @return  new object array or <code>null</code> if error
+     */
+    public static @Nullable <T> T[] readArray(@NonNull Class<T> clazz, @Nullable String json) {
+        return readArray(getLoader(clazz), json);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class to decode large arrays of objects concurrently.<br>
+ * The elements are split into contiguous ranges which are decoded on a bounded pool of worker
+ * threads, and the results reassembled in their original order. Arrays smaller than
+ * {@link #PARALLEL_THRESHOLD} are decoded serially on the calling thread.
+ */
+@SuppressWarnings("unused")
+public final class ParallelDecoder {
+
+    /** Minimum number of elements for which parallel decoding is used */
+    public static final int PARALLEL_THRESHOLD = 128;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int KEEP_ALIVE_SECS = 30;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    /**
+     * Interface for decoding an individual element
+     * @param <T>   Type of element
+     */
+    public interface IElementDecoder<T> {
+        /**
+         * Decode an element
+         * @param index Index of element to decode
+         * @return  decoded element
+         * @throws IOException
+         */
+        T decode(int index) throws IOException;
+    }
+
+    /**
+     * Private constructor
+     */
+    private ParallelDecoder() {
+        // can't instantiate class
+    }
+
+    /**
+     * Check if parallel decoding will be used for the specified number of elements
+     * @param count Number of elements
+     * @return  <code>true</code> if elements will be decoded in parallel
+     */
+    public static boolean isParallel(int count) {
+        return ((PARALLELISM > 1) && (count >= PARALLEL_THRESHOLD));
+    }
+
+    /**
+     * Get the executor to decode on
+     * @return  executor
+     */
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(PARALLELISM, PARALLELISM,
+                    KEEP_ALIVE_SECS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger(1);
+
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ParallelDecoder #" + mCount.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            sExecutor.allowCoreThreadTimeOut(true);  // don't hold threads when idle
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Decode elements, in parallel if the number of elements is above the threshold
+     * @param count     Number of elements
+     * @param decoder   Element decoder
+     * @param <T>       Type of element
+     * @return  list of decoded elements, in index order
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> decode(int count, @NonNull final IElementDecoder<T> decoder) throws IOException {
+        final Object[] results = new Object[count];
+
+        if (!isParallel(count)) {
+            StringPool.begin();
+            try {
+                for (int i = 0; i < count; i++) {
+                    results[i] = decoder.decode(i);
+                }
+            } finally {
+                StringPool.end();
+            }
+        } else {
+            int chunkSize = (count + PARALLELISM - 1) / PARALLELISM;
+            List<Future<Void>> futures = new ArrayList<>(PARALLELISM);
+            ThreadPoolExecutor executor = getExecutor();
+
+            for (int start = 0; start < count; start += chunkSize) {
+                final int from = start;
+                final int to = Math.min(start + chunkSize, count);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        // each task writes a distinct range of the results
+                        StringPool.begin();
+                        try {
+                            for (int i = from; i < to; i++) {
+                                results[i] = decoder.decode(i);
+                            }
+                        } finally {
+                            StringPool.end();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            try {
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                cancel(futures);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Decode interrupted");
+            } catch (ExecutionException e) {
+                cancel(futures);
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return new ArrayList<>((List<T>) Arrays.asList(results));
+    }
+
+    /**
+     * Cancel outstanding decode tasks
+     * @param futures   Task futures
+     */
+    private static void cancel(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Read an object list from a JSON string containing a top-level array. The elements are
+     * decoded in parallel if the number of elements is above the threshold.
+     * @param loader    Loader to use
+     * @param json      JSON string to read
+     * @param <T>       Type of object to return
+     * @return  new object list
+     * @throws IOException
+     */
+    public static <T> List<T> readList(@NonNull final ILoadable<T> loader, @NonNull final String json) throws IOException {
+        List<T> list;
+        final int[] spans = splitArray(json);
+        if ((spans == null) || !isParallel(spans.length / 2)) {
+            ParseContext context = ParseContext.obtain();
+            Reader strReader = context.obtainReader(json);
+            JsonReader reader = new JsonReader(strReader);
+            try {
+                list = loader.readList(reader);
+            } finally {
+                reader.close();
+                context.releaseReader(strReader);
+                context.release();
+            }
+        } else {
+            list = decode(spans.length / 2, new IElementDecoder<T>() {
+                @Override
+                public T decode(int index) throws IOException {
+                    // read directly from the span, rather than a copy of it
+                    ParseContext context = ParseContext.obtain();
+                    Reader strReader = context.obtainReader(json, spans[index * 2], spans[(index * 2) + 1]);
+                    JsonReader reader = new JsonReader(strReader);
+                    try {
+                        return loader.read(reader);
+                    } finally {
+                        reader.close();
+                        context.releaseReader(strReader);
+                        context.release();
+                    }
+                }
+            });
+        }
+        return list;
+    }
+
+    /**
+     * Split a JSON top-level array into the spans of its object elements
+     * @param json  JSON string to split
+     * @return  array of start (inclusive) & end (exclusive) index pairs, or <code>null</code> if
+     *          the string is not a top-level array
+     */
+    private static int[] splitArray(String json) {
+        int length = json.length();
+        int index = 0;
+        while ((index < length) && Character.isWhitespace(json.charAt(index))) {
+            ++index;
+        }
+        if ((index == length) || (json.charAt(index) != '[')) {
+            return null;
+        }
+
+        int[] spans = new int[64];
+        int count = 0;
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        boolean escape = false;
+        for (; index < length; index++) {
+            char chr = json.charAt(index);
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (chr == '\\') {
+                    escape = true;
+                } else if (chr == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if ((depth == 1) && (start < 0) && (chr != ',') && (chr != ']') && !Character.isWhitespace(chr)) {
+                start = index;      // start of element
+            }
+            switch (chr) {
+                case '"':
+                    inString = true;
+                    break;
+                case '[':
+                case '{':
+                    ++depth;
+                    break;
+                case ']':
+                case '}':
+                    --depth;
+                    break;
+                default:
+                    break;
+            }
+            if (((depth == 1) && (chr == ',')) || (depth == 0)) {
+                if (start >= 0) {
+                    // end of element, non-object elements are skipped as in a serial read
+                    if (json.charAt(start) == '{') {
+                        if (count + 2 > spans.length) {
+                            spans = Arrays.copyOf(spans, spans.length * 2);
+                        }
+                        spans[count++] = start;
+                        spans[count++] = index;
+                    }
+                    start = -1;
+                }
+                if (depth == 0) {
+                    return Arrays.copyOf(spans, count);
+                }
+            }
+        }
+        return null;    // unterminated array
+    }
+}
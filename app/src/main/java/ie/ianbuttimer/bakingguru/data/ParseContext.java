@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import android.support.annotation.NonNull;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Thread-confined, reusable parse context.<br>
+ * Provides recycled readers, binary inputs and scratch lists so that decoding many objects
+ * generates close to no garbage beyond the decoded objects themselves. Usage:
+ * <pre>
+ *     ParseContext context = ParseContext.obtain();
+ *     try {
+ *         // decode using context resources
+ *     } finally {
+ *         context.release();
+ *     }
+ * </pre>
+ * Contexts may be obtained recursively on the same thread; resources that are already in use
+ * are substituted with new instances.
+ */
+@SuppressWarnings("unused")
+public final class ParseContext {
+
+    private static final int INITIAL_LIST_CAPACITY = 16;
+
+    private static final ThreadLocal<ParseContext> sContext = new ThreadLocal<ParseContext>() {
+        @Override
+        protected ParseContext initialValue() {
+            return new ParseContext();
+        }
+    };
+
+    private int mDepth;     // obtain nesting depth
+
+    private final ReusableStringReader mReader;
+    private boolean mReaderInUse;
+
+    private final ByteInput mByteInput;
+    private boolean mByteInputInUse;
+
+    private final HashMap<Class<?>, ArrayList<?>> mLists;
+
+    /**
+     * Private constructor
+     */
+    private ParseContext() {
+        mDepth = 0;
+        mReader = new ReusableStringReader();
+        mReaderInUse = false;
+        mByteInput = new ByteInput();
+        mByteInputInUse = false;
+        mLists = new HashMap<>();
+    }
+
+    /**
+     * Obtain the parse context for the current thread
+     * @return  parse context; {@link #release()} must be called when finished with it
+     */
+    public static ParseContext obtain() {
+        ParseContext context = sContext.get();
+        ++context.mDepth;
+        return context;
+    }
+
+    /**
+     * Release this parse context
+     */
+    public void release() {
+        if (mDepth > 0) {
+            --mDepth;
+            if (mDepth == 0) {
+                mReader.reset(null);
+                mReaderInUse = false;
+                mByteInput.reset(null);
+                mByteInputInUse = false;
+                for (ArrayList<?> list : mLists.values()) {
+                    list.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtain a reader for the specified sequence
+     * @param source    Sequence to read
+     * @return  reader; {@link #releaseReader(Reader)} should be called when finished with it
+     */
+    public Reader obtainReader(@NonNull CharSequence source) {
+        return obtainReader(source, 0, source.length());
+    }
+
+    /**
+     * Obtain a reader for a range of the specified sequence
+     * @param source    Sequence to read
+     * @param start     Start index (inclusive)
+     * @param end       End index (exclusive)
+     * @return  reader; {@link #releaseReader(Reader)} should be called when finished with it
+     */
+    public Reader obtainReader(@NonNull CharSequence source, int start, int end) {
+        ReusableStringReader reader;
+        if (mReaderInUse) {
+            reader = new ReusableStringReader();
+        } else {
+            reader = mReader;
+            mReaderInUse = true;
+        }
+        return reader.reset(source, start, end);
+    }
+
+    /**
+     * Release a reader obtained from this context
+     * @param reader    Reader to release
+     */
+    public void releaseReader(Reader reader) {
+        if (reader == mReader) {
+            mReader.reset(null);
+            mReaderInUse = false;
+        }
+    }
+
+    /**
+     * Obtain a binary input for the specified data
+     * @param data  Data to read
+     * @return  input; {@link #releaseByteInput(ByteInput)} should be called when finished with it
+     */
+    public ByteInput obtainByteInput(byte[] data) {
+        ByteInput input;
+        if (mByteInputInUse) {
+            input = new ByteInput();
+        } else {
+            input = mByteInput;
+            mByteInputInUse = true;
+        }
+        return input.reset(data);
+    }
+
+    /**
+     * Release a binary input obtained from this context
+     * @param input Input to release
+     */
+    public void releaseByteInput(ByteInput input) {
+        if (input == mByteInput) {
+            mByteInput.reset(null);
+            mByteInputInUse = false;
+        }
+    }
+
+    /**
+     * Obtain an empty scratch list. The list should be cleared when finished with, so it may be
+     * reused; typically after its contents have been copied to an exactly sized array.
+     * @param clazz Class of list elements
+     * @param <T>   Type of list elements
+     * @return  empty list
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ArrayList<T> obtainList(@NonNull Class<T> clazz) {
+        ArrayList<T> list = (ArrayList<T>) mLists.get(clazz);
+        if (list == null) {
+            list = new ArrayList<>(INITIAL_LIST_CAPACITY);
+            mLists.put(clazz, list);
+        } else if (!list.isEmpty()) {
+            list = new ArrayList<>(INITIAL_LIST_CAPACITY);   // already in use
+        }
+        return list;
+    }
+}
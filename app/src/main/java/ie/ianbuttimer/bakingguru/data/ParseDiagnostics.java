@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parse diagnostic counters, incremented whenever the lenient parser has to coerce or skip a value.
+ * As feeds may be parsed concurrently, use {@link #snapshot()} to report the values for a single feed.
+ */
+@SuppressWarnings("unused")
+public final class ParseDiagnostics {
+
+    private static final AtomicLong sCoerced = new AtomicLong();    // values converted from another type
+    private static final AtomicLong sNulls = new AtomicLong();      // null values replaced by defaults
+    private static final AtomicLong sInvalid = new AtomicLong();    // values that couldn't be converted
+    private static final AtomicLong sSkipped = new AtomicLong();    // values of unexpected type skipped
+
+    /**
+     * Private constructor
+     */
+    private ParseDiagnostics() {
+        // can't instantiate class
+    }
+
+    /** Record a value converted from another type */
+    public static void coerced() {
+        sCoerced.incrementAndGet();
+    }
+
+    /** Record a null value replaced by a default */
+    public static void nulled() {
+        sNulls.incrementAndGet();
+    }
+
+    /** Record a value that couldn't be converted and was replaced by a default */
+    public static void invalid() {
+        sInvalid.incrementAndGet();
+    }
+
+    /** Record a value of unexpected type that was skipped */
+    public static void skipped() {
+        sSkipped.incrementAndGet();
+    }
+
+    public static long getCoerced() {
+        return sCoerced.get();
+    }
+
+    public static long getNulls() {
+        return sNulls.get();
+    }
+
+    public static long getInvalid() {
+        return sInvalid.get();
+    }
+
+    public static long getSkipped() {
+        return sSkipped.get();
+    }
+
+    /**
+     * Get the total number of values that were not of the expected type
+     * @return  total count
+     */
+    public static long getTotal() {
+        return getCoerced() + getNulls() + getInvalid() + getSkipped();
+    }
+
+    /**
+     * Reset all counters
+     */
+    public static void reset() {
+        sCoerced.set(0);
+        sNulls.set(0);
+        sInvalid.set(0);
+        sSkipped.set(0);
+    }
+
+    /**
+     * Get a summary of the counters
+     * @return  summary string
+     */
+    public static String getSummary() {
+        return getSummary(getCoerced(), getNulls(), getInvalid(), getSkipped());
+    }
+
+    /**
+     * Get a summary of counter values
+     * @return  summary string
+     */
+    private static String getSummary(long coerced, long nulls, long invalid, long skipped) {
+        return String.format(Locale.US, "coerced=%d, nulls=%d, invalid=%d, skipped=%d",
+                coerced, nulls, invalid, skipped);
+    }
+
+    /**
+     * Take a snapshot of the counters, so the values recorded while parsing a single feed can be
+     * reported without resetting the counters other parsers are using
+     * @return  snapshot
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Snapshot of the counters
+     */
+    public static final class Snapshot {
+
+        private final long mCoerced;
+        private final long mNulls;
+        private final long mInvalid;
+        private final long mSkipped;
+
+        private Snapshot() {
+            mCoerced = getCoerced();
+            mNulls = getNulls();
+            mInvalid = getInvalid();
+            mSkipped = getSkipped();
+        }
+
+        /**
+         * Get the number of values recorded since the snapshot was taken
+         * @return  total count
+         */
+        public long getTotalSince() {
+            return getTotal() - (mCoerced + mNulls + mInvalid + mSkipped);
+        }
+
+        /**
+         * Get a summary of the values recorded since the snapshot was taken
+         * @return  summary string
+         */
+        public String getSummarySince() {
+            return getSummary(getCoerced() - mCoerced, getNulls() - mNulls,
+                    getInvalid() - mInvalid, getSkipped() - mSkipped);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.data.provider.RecipeContentValues;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+import timber.log.Timber;
+
+import static android.provider.BaseColumns._ID;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.columnInSelection;
+
+/**
+ * In-process write-behind queue for the recipe cache.<br>
+ * Recipes are queued without being parcelled, and repeated writes of the same recipe are coalesced
+ * so only the latest is written. The queue is drained on a background thread in bounded
+ * transactions, and only recipes whose content has changed are rewritten.
+ */
+@SuppressWarnings("unused")
+public final class RecipeCacheWriter {
+
+    /** Maximum number of recipes written per transaction */
+    public static final int MAX_BATCH_SIZE = 50;
+    /** Maximum number of ids in a selection, below SQLite's bound parameter limit */
+    private static final int MAX_SELECTION_IDS = 500;
+
+    private static final long KEEP_ALIVE_SECS = 30;
+
+    private static RecipeCacheWriter sInstance;
+
+    /**
+     * Interface for a listener notified when a complete recipe list has been written
+     */
+    public interface ISyncListener {
+        /**
+         * Called on the writer thread once the list has been written and recipes not in it deleted,
+         * or when it is superseded by a newer list before being written
+         * @param written   <code>true</code> if the list was written, <code>false</code> if superseded
+         */
+        void onSyncComplete(boolean written);
+    }
+
+    private final ContentResolver mResolver;
+    private final Executor mExecutor;
+
+    // guarded by this
+    private final LinkedHashMap<Integer, Recipe> mPending = new LinkedHashMap<>();  // queued recipes by id
+    private Set<Integer> mSyncIds;  // ids of the latest complete list, rows not in it are deleted
+    private ISyncListener mSyncListener;    // listener for the latest complete list
+    private boolean mScheduled;     // drain in progress
+
+    private final AtomicLong mQueued = new AtomicLong();      // recipes queued
+    private final AtomicLong mCoalesced = new AtomicLong();   // queued recipes replaced before being written
+    private final AtomicLong mWritten = new AtomicLong();     // recipes written as new or changed
+    private final AtomicLong mUnchanged = new AtomicLong();   // recipes not rewritten as unchanged
+    private final AtomicLong mDeleted = new AtomicLong();     // recipes deleted by syncs
+    private final AtomicLong mFailed = new AtomicLong();      // recipes requeued after a failed write
+    private final AtomicLong mCommits = new AtomicLong();     // transactions committed
+    private final AtomicLong mCommitNs = new AtomicLong();    // total commit time
+    private final AtomicLong mMaxCommitNs = new AtomicLong(); // longest commit time
+
+    /**
+     * Constructor
+     * @param context   The current context
+     */
+    private RecipeCacheWriter(@NonNull Context context) {
+        this(context.getApplicationContext().getContentResolver(), newExecutor());
+    }
+
+    /**
+     * Constructor
+     * @param resolver  Content resolver to write through
+     * @param executor  Executor to drain the queue on, which must run one task at a time
+     */
+    @VisibleForTesting
+    RecipeCacheWriter(@NonNull ContentResolver resolver, @NonNull Executor executor) {
+        mResolver = resolver;
+        mExecutor = executor;
+    }
+
+    /**
+     * Create the executor to drain the queue on
+     * @return  single thread executor
+     */
+    private static Executor newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);  // don't hold the thread when idle
+        return executor;
+    }
+
+    /**
+     * Get the writer instance
+     * @param context   The current context
+     * @return  writer
+     */
+    public static synchronized RecipeCacheWriter getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new RecipeCacheWriter(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Queue a complete list of recipes to be written; once written, any recipes not in the list
+     * are deleted
+     * @param recipes   Complete recipe list
+     */
+    public void sync(@Nullable Recipe[] recipes) {
+        sync(recipes, null);
+    }
+
+    /**
+     * Queue a complete list of recipes to be written; once written, any recipes not in the list
+     * are deleted and the listener is notified
+     * @param recipes   Complete recipe list
+     * @param listener  Listener to notify, or <code>null</code>
+     */
+    public void sync(@Nullable Recipe[] recipes, @Nullable ISyncListener listener) {
+        if (recipes != null) {
+            ISyncListener superseded;
+            synchronized (this) {
+                enqueue(recipes);
+                mSyncIds = new HashSet<>(mPending.size());
+                for (Recipe recipe : recipes) {
+                    mSyncIds.add(recipe.getId());
+                }
+                superseded = mSyncListener;
+                mSyncListener = listener;
+                schedule();
+            }
+            if (superseded != null) {
+                superseded.onSyncComplete(false);
+            }
+        }
+    }
+
+    /**
+     * Add recipes to the queue, replacing any queued versions of the same recipes
+     * @param recipes   Recipes to add
+     */
+    private void enqueue(@NonNull Recipe[] recipes) {
+        for (Recipe recipe : recipes) {
+            if (recipe != null) {
+                if (mPending.remove(recipe.getId()) != null) {
+                    mCoalesced.incrementAndGet();
+                }
+                mPending.put(recipe.getId(), recipe);   // re-added at the end of the queue
+                if (mSyncIds != null) {
+                    mSyncIds.add(recipe.getId());       // written after a pending sync list, so keep
+                }
+                mQueued.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Schedule the queue to be drained, if not already scheduled
+     */
+    private void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+    }
+
+    /**
+     * Write the queued recipes, a batch at a time. If a batch fails it is put back at the head of
+     * the queue and draining stops, the queue is retried when more recipes are queued.
+     */
+    private void drain() {
+        boolean idle = false;   // queue found empty & drain unscheduled
+        try {
+            boolean done = false;
+            while (!done) {
+                List<Recipe> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                Set<Integer> syncIds = null;
+                ISyncListener listener = null;
+                synchronized (this) {
+                    Iterator<Recipe> iterator = mPending.values().iterator();
+                    while (iterator.hasNext() && (batch.size() < MAX_BATCH_SIZE)) {
+                        batch.add(iterator.next());
+                        iterator.remove();
+                    }
+                    if (mPending.isEmpty()) {
+                        // complete list has been written, so can now remove what's not in it
+                        syncIds = mSyncIds;
+                        mSyncIds = null;
+                        listener = mSyncListener;
+                        mSyncListener = null;
+                    }
+                    if (batch.isEmpty() && (syncIds == null)) {
+                        mScheduled = false;
+                        idle = true;
+                        done = true;
+                    }
+                }
+                if (!done) {
+                    boolean written = false;
+                    try {
+                        written = (batch.isEmpty() || commit(batch));
+                        if (written && (syncIds != null)) {
+                            deleteAbsent(syncIds);
+                        }
+                    } catch (RuntimeException e) {
+                        // e.g. SQLiteFullException from the provider
+                        Timber.e("Unable to write recipes", e);
+                        written = false;
+                    }
+                    if (written) {
+                        if (listener != null) {
+                            listener.onSyncComplete(true);
+                        }
+                    } else {
+                        ISyncListener superseded = requeue(batch, syncIds, listener);
+                        if (superseded != null) {
+                            superseded.onSyncComplete(false);
+                        }
+                        done = true;
+                    }
+                }
+            }
+        } finally {
+            if (!idle) {
+                synchronized (this) {
+                    mScheduled = false;
+                }
+            }
+        }
+        Timber.d("Cache writer: " + getSummary());
+    }
+
+    /**
+     * Put a failed batch back at the head of the queue, behind any newer versions of its recipes
+     * which have been queued since
+     * @param batch     Recipes which were not written
+     * @param syncIds   Ids of the complete list which were not applied, or <code>null</code>
+     * @param listener  Listener for the complete list, or <code>null</code>
+     * @return  listener if superseded by a newer complete list, otherwise <code>null</code>
+     */
+    private synchronized ISyncListener requeue(@NonNull List<Recipe> batch, @Nullable Set<Integer> syncIds,
+                                               @Nullable ISyncListener listener) {
+        ISyncListener superseded = null;
+        LinkedHashMap<Integer, Recipe> pending = new LinkedHashMap<>();
+        for (Recipe recipe : batch) {
+            pending.put(recipe.getId(), recipe);
+        }
+        pending.putAll(mPending);   // newer versions replace the failed ones
+        mPending.clear();
+        mPending.putAll(pending);
+        if (syncIds != null) {
+            if (mSyncIds == null) {
+                mSyncIds = syncIds;
+                mSyncListener = listener;
+            } else {
+                superseded = listener;  // a newer complete list supersedes this one
+            }
+        }
+        mFailed.addAndGet(batch.size());
+        Timber.w("Requeued " + batch.size() + " recipe(s) after failed write");
+        return superseded;
+    }
+
+    /**
+     * Write a batch of recipes in a single transaction. Only new or changed recipes are written,
+     * unchanged recipes just have their timestamp refreshed without notifying observers.
+     * @param batch     Recipes to write
+     * @return  <code>true</code> if the batch was written
+     */
+    private boolean commit(@NonNull List<Recipe> batch) {
+        Uri uri = BakingContract.RecipeEntry.CONTENT_URI;
+        Map<String, Long> stored = getStoredHashes(batch);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(batch.size() + 1);
+        List<String> unchanged = new ArrayList<>();
+        RecipeContentValues.Builder builder = RecipeContentValues.builder();
+        for (Recipe recipe : batch) {
+            ContentValues values = builder.clear()
+                    .setId(recipe.getId())
+                    .setRecipe(recipe)
+                    .build();
+            String id = values.getAsString(_ID);
+            Long hash = values.getAsLong(BakingContract.RecipeEntry.COLUMN_HASH);
+            if ((hash != null) && hash.equals(stored.get(id))) {
+                unchanged.add(id);
+            } else {
+                operations.add(ContentProviderOperation.newInsert(uri).withValues(values).build());
+            }
+        }
+        if (!unchanged.isEmpty()) {
+            Uri silentUri = uri.buildUpon().appendQueryParameter(BakingContract.QUERY_PARAM_NOTIFY, "false").build();
+            operations.add(ContentProviderOperation.newUpdate(silentUri)
+                    .withValue(BakingContract.RecipeEntry.COLUMN_TIMESTAMP, DbUtils.getTimestamp())
+                    .withSelection(columnInSelection(_ID, unchanged.size()),
+                            unchanged.toArray(new String[unchanged.size()]))
+                    .build());
+        }
+
+        boolean written = false;
+        long start = System.nanoTime();
+        try {
+            // the provider applies a batch in a single transaction
+            mResolver.applyBatch(BakingContract.AUTHORITY, operations);
+            recordCommit(System.nanoTime() - start);
+            mWritten.addAndGet(batch.size() - unchanged.size());
+            mUnchanged.addAndGet(unchanged.size());
+            written = true;
+        } catch (RemoteException | OperationApplicationException e) {
+            Timber.e("Unable to write recipes", e);
+        }
+        return written;
+    }
+
+    /**
+     * Get the stored content hashes of a batch of recipes
+     * @param batch     Recipes to get hashes for
+     * @return  map of id to hash
+     */
+    private Map<String, Long> getStoredHashes(@NonNull List<Recipe> batch) {
+        Map<String, Long> stored = new HashMap<>();
+        String[] ids = new String[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = String.valueOf(batch.get(i).getId());
+        }
+        Cursor cursor = mResolver.query(BakingContract.RecipeEntry.CONTENT_URI, new String[] {
+            _ID, BakingContract.RecipeEntry.COLUMN_HASH
+        }, columnInSelection(_ID, ids.length), ids, null);
+        if (cursor != null) {
+            int idIndex = cursor.getColumnIndex(_ID);
+            int hashIndex = cursor.getColumnIndex(BakingContract.RecipeEntry.COLUMN_HASH);
+            while (cursor.moveToNext()) {
+                stored.put(cursor.getString(idIndex),
+                        (cursor.isNull(hashIndex) ? null : cursor.getLong(hashIndex)));
+            }
+            cursor.close();
+        }
+        return stored;
+    }
+
+    /**
+     * Delete the recipes not in a complete list, in bounded transactions
+     * @param syncIds   Ids of the complete list
+     */
+    private void deleteAbsent(@NonNull Set<Integer> syncIds) {
+        Uri uri = BakingContract.RecipeEntry.CONTENT_URI;
+        List<String> removed = new ArrayList<>();
+        Cursor cursor = mResolver.query(uri, new String[] { _ID }, null, null, null);
+        if (cursor != null) {
+            int idIndex = cursor.getColumnIndex(_ID);
+            while (cursor.moveToNext()) {
+                if (!syncIds.contains(cursor.getInt(idIndex))) {
+                    removed.add(cursor.getString(idIndex));
+                }
+            }
+            cursor.close();
+        }
+
+        for (int start = 0; start < removed.size(); start += MAX_SELECTION_IDS) {
+            List<String> ids = removed.subList(start, Math.min(start + MAX_SELECTION_IDS, removed.size()));
+            long startNs = System.nanoTime();
+            int count = mResolver.delete(uri, columnInSelection(_ID, ids.size()), ids.toArray(new String[ids.size()]));
+            recordCommit(System.nanoTime() - startNs);
+            mDeleted.addAndGet(count);
+        }
+    }
+
+    /**
+     * Record the time taken to commit a transaction
+     * @param elapsedNs Commit time
+     */
+    private void recordCommit(long elapsedNs) {
+        mCommits.incrementAndGet();
+        mCommitNs.addAndGet(elapsedNs);
+        long max;
+        do {
+            max = mMaxCommitNs.get();
+        } while ((elapsedNs > max) && !mMaxCommitNs.compareAndSet(max, elapsedNs));
+    }
+
+    /**
+     * Get the number of recipes waiting to be written
+     * @return  queue depth
+     */
+    public synchronized int getQueueDepth() {
+        return mPending.size();
+    }
+
+    public long getQueued() {
+        return mQueued.get();
+    }
+
+    public long getCoalesced() {
+        return mCoalesced.get();
+    }
+
+    public long getWritten() {
+        return mWritten.get();
+    }
+
+    public long getUnchanged() {
+        return mUnchanged.get();
+    }
+
+    public long getDeleted() {
+        return mDeleted.get();
+    }
+
+    public long getFailed() {
+        return mFailed.get();
+    }
+
+    public long getCommits() {
+        return mCommits.get();
+    }
+
+    /**
+     * Get the average commit latency
+     * @return  average latency in msec
+     */
+    public double getAverageCommitMs() {
+        long commits = getCommits();
+        return (commits > 0 ? (mCommitNs.get() / (double) commits) / 1000000.0 : 0);
+    }
+
+    /**
+     * Get the maximum commit latency
+     * @return  maximum latency in msec
+     */
+    public double getMaxCommitMs() {
+        return mMaxCommitNs.get() / 1000000.0;
+    }
+
+    /**
+     * Reset all counters
+     */
+    public void reset() {
+        mQueued.set(0);
+        mCoalesced.set(0);
+        mWritten.set(0);
+        mUnchanged.set(0);
+        mDeleted.set(0);
+        mFailed.set(0);
+        mCommits.set(0);
+        mCommitNs.set(0);
+        mMaxCommitNs.set(0);
+    }
+
+    /**
+     * Get a summary of the counters
+     * @return  summary string
+     */
+    public String getSummary() {
+        return String.format(Locale.US,
+                "depth=%d, queued=%d, coalesced=%d, written=%d, unchanged=%d, deleted=%d, failed=%d, " +
+                        "commits=%d, avg commit=%.1fms, max commit=%.1fms",
+                getQueueDepth(), getQueued(), getCoalesced(), getWritten(), getUnchanged(), getDeleted(),
+                getFailed(), getCommits(), getAverageCommitMs(), getMaxCommitMs());
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ie.ianbuttimer.bakingguru.R;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract;
+import ie.ianbuttimer.bakingguru.network.NetworkUtils;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+import ie.ianbuttimer.bakingguru.utils.PreferenceControl;
+import timber.log.Timber;
+
+/**
+ * Background sync of the recipe feed using conditional requests.<br>
+ * The ETag and Last-Modified validators of the last response are stored in the feeds table and
+ * sent with the next request, so an unchanged feed costs a 304 response with no body, no parsing
+ * and no recipe writes; only the cache timestamps are refreshed. The validators of a modified feed
+ * are only stored once its recipes have been written, so a failed write doesn't leave validators
+ * for content which isn't cached.
+ */
+@SuppressWarnings("unused")
+public final class RecipeFeedSync {
+
+    private static final String[] FEED_PROJECTION = new String[] {
+            BakingContract.FeedEntry.COLUMN_ETAG,
+            BakingContract.FeedEntry.COLUMN_LAST_MODIFIED
+    };
+
+    private static final AtomicLong sSyncs = new AtomicLong();        // syncs attempted
+    private static final AtomicLong sNotModified = new AtomicLong();  // syncs answered with 304
+    private static final AtomicLong sModified = new AtomicLong();     // syncs which downloaded the feed
+    private static final AtomicLong sFailed = new AtomicLong();       // syncs which failed
+
+    /**
+     * Private constructor
+     */
+    private RecipeFeedSync() {
+    }
+
+    /**
+     * Synchronously sync the recipe feed with the server. Must not be called on the main thread.
+     * @param context   The current context
+     * @return  <code>true</code> if the sync completed, <code>false</code> if it failed and should be retried
+     */
+    public static boolean sync(@NonNull Context context) {
+        if (!PreferenceControl.getCachePreference(context)) {
+            Timber.d("Recipe feed sync skipped, cache disabled");
+            return true;    // nothing to do, so don't retry
+        }
+
+        sSyncs.incrementAndGet();
+
+        final ContentResolver resolver = context.getContentResolver();
+        final String feedUrl = context.getString(R.string.json_network_resource);
+        String etag = null;
+        String lastModified = null;
+
+        Cursor cursor = resolver.query(BakingContract.FeedEntry.CONTENT_URI, FEED_PROJECTION,
+                BakingContract.FeedEntry.URL_EQ_SELECTION, new String[] { feedUrl }, null);
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                etag = cursor.getString(0);
+                lastModified = cursor.getString(1);
+            }
+            cursor.close();
+        }
+
+        boolean completed = false;
+        try {
+            final NetworkUtils.ConditionalResponse<List<Recipe>> response =
+                    NetworkUtils.processConditionalHttpResponseSync(new URL(feedUrl), etag, lastModified,
+                            new NetworkUtils.IResponseBodyProcessor<List<Recipe>>() {
+                                @Override
+                                public List<Recipe> process(Reader reader) throws IOException {
+                                    return Recipe.readRecipeList(new JsonReader(reader));
+                                }
+                            });
+
+            if (response.isNotModified()) {
+                sNotModified.incrementAndGet();
+                touchRecipes(resolver);
+                saveValidators(resolver, feedUrl, response.getEtag(), response.getLastModified());
+                Timber.d("Recipe feed not modified");
+            } else {
+                sModified.incrementAndGet();
+                List<Recipe> list = response.getResult();
+                if (list != null) {
+                    RecipeCacheWriter.getInstance(context).sync(list.toArray(new Recipe[list.size()]),
+                            new RecipeCacheWriter.ISyncListener() {
+                                @Override
+                                public void onSyncComplete(boolean written) {
+                                    if (written) {
+                                        saveValidators(resolver, feedUrl, response.getEtag(), response.getLastModified());
+                                    }
+                                }
+                            });
+                }
+                Timber.d("Recipe feed modified, " + (list == null ? 0 : list.size()) + " recipes");
+            }
+            completed = true;
+        } catch (IOException e) {
+            sFailed.incrementAndGet();
+            Timber.e("Recipe feed sync failed", e);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // unexpected json structure
+            sFailed.incrementAndGet();
+            Timber.e("Recipe feed sync failed, invalid response", e);
+        }
+        return completed;
+    }
+
+    /**
+     * Refresh the timestamps of all cached recipes, without notifying observers as the content is unchanged
+     * @param resolver  Content resolver
+     */
+    private static void touchRecipes(ContentResolver resolver) {
+        Uri silentUri = BakingContract.RecipeEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(BakingContract.QUERY_PARAM_NOTIFY, "false").build();
+        ContentValues values = new ContentValues();
+        values.put(BakingContract.RecipeEntry.COLUMN_TIMESTAMP, DbUtils.getTimestamp());
+        resolver.update(silentUri, values, null, null);
+    }
+
+    /**
+     * Save the validators for a feed
+     * @param resolver      Content resolver
+     * @param feedUrl       Url of feed
+     * @param etag          ETag validator, or <code>null</code>
+     * @param lastModified  Last-Modified validator, or <code>null</code>
+     */
+    private static void saveValidators(ContentResolver resolver, String feedUrl, String etag, String lastModified) {
+        ContentValues values = new ContentValues();
+        values.put(BakingContract.FeedEntry.COLUMN_URL, feedUrl);
+        values.put(BakingContract.FeedEntry.COLUMN_ETAG, etag);
+        values.put(BakingContract.FeedEntry.COLUMN_LAST_MODIFIED, lastModified);
+        values.put(BakingContract.FeedEntry.COLUMN_TIMESTAMP, DbUtils.getTimestamp());
+        resolver.insert(BakingContract.FeedEntry.CONTENT_URI, values);
+    }
+
+    public static long getSyncs() {
+        return sSyncs.get();
+    }
+
+    public static long getNotModified() {
+        return sNotModified.get();
+    }
+
+    public static long getModified() {
+        return sModified.get();
+    }
+
+    public static long getFailed() {
+        return sFailed.get();
+    }
+
+    /**
+     * Reset all counters
+     */
+    public static void reset() {
+        sSyncs.set(0);
+        sNotModified.set(0);
+        sModified.set(0);
+        sFailed.set(0);
+    }
+
+    /**
+     * Get a summary of the sync counters
+     * @return  Summary string
+     */
+    public static String getSummary() {
+        return String.format(Locale.US, "feed syncs %d: not modified %d, modified %d, failed %d",
+                getSyncs(), getNotModified(), getModified(), getFailed());
+    }
+}
@@ -79,7 +79,7 @@ public class RecipeLoader implements LoaderManager.LoaderCallbacks<Recipe[]> {
 
     @Override
     public Loader onCreateLoader(int i, Bundle bundle) {
-        FileLoader<Recipe, Recipe.Loader> loader = new FileLoader<>(new Recipe.Loader());
+        FileLoader<Recipe, Recipe.Loader> loader = new FileLoader<>(Recipe.LOADER);
         return loader.getLoader(context.get(), bundle);
     }
 
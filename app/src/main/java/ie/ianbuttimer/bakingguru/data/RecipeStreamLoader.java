@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.AsyncTaskLoader;
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import ie.ianbuttimer.bakingguru.R;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.exception.HttpException;
+import ie.ianbuttimer.bakingguru.network.HttpCacheDiagnostics;
+import ie.ianbuttimer.bakingguru.network.NetworkUtils;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
+import timber.log.Timber;
+
+import static ie.ianbuttimer.bakingguru.data.AbstractResultWrapper.INVALID_ERROR_CODE;
+
+/**
+ * Class to asynchronously download and decode a recipe list, streaming the response body straight
+ * into the JSON parser and delivering each recipe as soon as it has been decoded.<br>
+ * The result is a {@link ICallback.CallResultWrapper} with a bundle result containing the number
+ * of recipes decoded under {@link #STREAM_COUNT}, or an error result.
+ */
+
+public class RecipeStreamLoader extends AsyncTaskLoader<ICallback.CallResultWrapper>
+                                implements IItemCallback<Recipe> {
+
+    /** Key for the number of recipes decoded in the result bundle */
+    public static final String STREAM_COUNT = "stream_count";
+
+    private String mUrl;
+    private boolean mRevalidate;    // bypass the http cache flag
+    private WeakReference<IItemCallback<Recipe>> mCallback;
+
+    private ICallback.CallResultWrapper mRaw;   // raw results
+
+    /**
+     * Constructor
+     * @param context   Current context
+     * @param url       URL to request recipes from
+     * @param callback  Callback to receive recipes as they are decoded; called on the loader thread
+     */
+    public RecipeStreamLoader(Context context, @NonNull String url, @Nullable IItemCallback<Recipe> callback) {
+        this(context, url, callback, false);
+    }
+
+    /**
+     * Constructor
+     * @param context       Current context
+     * @param url           URL to request recipes from
+     * @param callback      Callback to receive recipes as they are decoded; called on the loader thread
+     * @param revalidate    <code>true</code> to get the list from the server rather than the http cache
+     */
+    public RecipeStreamLoader(Context context, @NonNull String url, @Nullable IItemCallback<Recipe> callback,
+                              boolean revalidate) {
+        super(context);
+        this.mUrl = url;
+        this.mRevalidate = revalidate;
+        setItemCallback(callback);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        /*
+         * If we already have cached results, just deliver them now. If we don't have any
+         * cached results, force a load.
+         */
+        if (mRaw != null) {
+            deliverResult(mRaw);
+        } else {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(ICallback.CallResultWrapper result) {
+        mRaw = result;
+        super.deliverResult(result);
+    }
+
+    @Override
+    public ICallback.CallResultWrapper loadInBackground() {
+        ICallback.CallResultWrapper result = null;
+        URL url = null;
+        try {
+            url = new URL(mUrl);
+        } catch (MalformedURLException e) {
+            Timber.e("Invalid url", e);
+        }
+
+        if (url != null) {
+            try {
+                ParseDiagnostics.Snapshot diagnostics = ParseDiagnostics.snapshot();
+                Integer count = NetworkUtils.processHttpResponseSync(url, new NetworkUtils.IResponseBodyProcessor<Integer>() {
+                    @Override
+                    public Integer process(Reader reader) throws IOException {
+                        return Recipe.readRecipeList(new JsonReader(reader), RecipeStreamLoader.this);
+                    }
+                }, mRevalidate);
+                if (diagnostics.getTotalSince() > 0) {
+                    Timber.w("Recipe feed parse diagnostics: %s", diagnostics.getSummarySince());
+                }
+                Uri uri = UriUtils.urlToUri(url);
+                if (uri != null) {
+                    Bundle bundle = new Bundle();
+                    bundle.putInt(STREAM_COUNT, (count != null ? count : 0));
+                    result = new ICallback.CallResultWrapper(uri, bundle);
+                }
+            } catch (HttpException e) {
+                result = new ICallback.CallResultWrapper(url, e.getCode(), getErrorMsg(e), e.getResponseMessage());
+                Timber.e(e);
+            } catch (IOException e) {
+                result = new ICallback.CallResultWrapper(url, INVALID_ERROR_CODE, getErrorMsg(e), e.getMessage());
+                Timber.e(e);
+            } catch (IllegalStateException e) {
+                // unexpected json structure
+                result = new ICallback.CallResultWrapper(url, INVALID_ERROR_CODE,
+                        getContext().getString(R.string.invalid_response), e.getMessage());
+                Timber.e(e);
+            }
+            Timber.d("Http cache: %s", HttpCacheDiagnostics.getSummary());
+        }
+        return result;
+    }
+
+    /**
+     * Forward a decoded recipe to the callback
+     * @param item  Decoded recipe
+     */
+    @Override
+    public void onItem(Recipe item) {
+        if (!isLoadInBackgroundCanceled()) {
+            IItemCallback<Recipe> callback = mCallback.get();
+            if (callback != null) {
+                callback.onItem(item);
+            }
+        }
+    }
+
+    /**
+     * Set the callback to receive recipes as they are decoded
+     * @param callback  Callback; called on the loader thread
+     */
+    public void setItemCallback(@Nullable IItemCallback<Recipe> callback) {
+        this.mCallback = new WeakReference<>(callback);
+    }
+
+    /**
+     * Get error message
+     * @param e     Exception to get message for
+     * @return  error string
+     */
+    private String getErrorMsg(IOException e) {
+        return getContext().getString(NetworkUtils.getErrorId(e));
+    }
+}
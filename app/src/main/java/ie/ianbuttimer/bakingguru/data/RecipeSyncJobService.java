@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.AsyncTask;
+import android.os.Build;
+
+import ie.ianbuttimer.bakingguru.data.db.RecipeEvictor;
+import timber.log.Timber;
+
+/**
+ * Job service to run the periodic recipe feed sync
+ * @see RecipeSyncScheduler
+ */
+@SuppressWarnings("unused")
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class RecipeSyncJobService extends JobService {
+
+    private AsyncTask<JobParameters, Void, Boolean> mTask;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // job callbacks run on the main thread, so sync in the background
+        mTask = new AsyncTask<JobParameters, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(JobParameters... jobParameters) {
+                boolean completed = RecipeFeedSync.sync(getApplicationContext());
+                // keep the store within budget while the device is idle
+                RecipeEvictor.request(getApplicationContext());
+                return completed;
+            }
+
+            @Override
+            protected void onPostExecute(Boolean completed) {
+                Timber.i(RecipeFeedSync.getSummary());
+                jobFinished(params, !completed);
+            }
+        };
+        mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, params);
+        return true;    // work ongoing
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // constraints no longer met, e.g. device no longer idle
+        if (mTask != null) {
+            mTask.cancel(true);
+        }
+        return true;    // retry later
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Scheduler for the periodic recipe feed sync.<br>
+ * The sync is deferred until the device is idle on an unmetered network with sufficient battery,
+ * so the radio is only woken when it is cheap to do so. Requires API 21; on earlier versions the
+ * feed is only requested when the recipe list is displayed.
+ */
+@SuppressWarnings("unused")
+public final class RecipeSyncScheduler {
+
+    /** Job id of the recipe feed sync */
+    public static final int SYNC_JOB_ID = 1001;
+    /** Interval between syncs */
+    public static final long SYNC_INTERVAL_MS = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * Private constructor
+     */
+    private RecipeSyncScheduler() {
+    }
+
+    /**
+     * Schedule the periodic recipe feed sync, if not already scheduled
+     * @param context   The current context
+     * @return  <code>true</code> if the sync is scheduled
+     */
+    public static boolean schedule(@NonNull Context context) {
+        boolean scheduled = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduled = scheduleJob(context);
+        }
+        return scheduled;
+    }
+
+    /**
+     * Cancel the periodic recipe feed sync
+     * @param context   The current context
+     */
+    public static void cancel(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            if (scheduler != null) {
+                scheduler.cancel(SYNC_JOB_ID);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean scheduleJob(@NonNull Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return false;
+        }
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == SYNC_JOB_ID) {
+                return true;    // rescheduling would reset the period
+            }
+        }
+
+        JobInfo.Builder builder = new JobInfo.Builder(SYNC_JOB_ID,
+                    new ComponentName(context, RecipeSyncJobService.class))
+                .setPeriodic(SYNC_INTERVAL_MS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresDeviceIdle(true)
+                .setPersisted(false);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setRequiresBatteryNotLow(true);
+        } else {
+            builder.setRequiresCharging(true);
+        }
+
+        boolean scheduled = (scheduler.schedule(builder.build()) == JobScheduler.RESULT_SUCCESS);
+        Timber.i("Recipe feed sync " + (scheduled ? "scheduled" : "not scheduled"));
+        return scheduled;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader for a range of a CharSequence, which may be reset to read a new sequence rather than
+ * allocating a new reader
+ */
+@SuppressWarnings("unused")
+public final class ReusableStringReader extends Reader {
+
+    private CharSequence source;
+    private int position;
+    private int end;
+
+    /**
+     * Default constructor
+     */
+    public ReusableStringReader() {
+        reset(null);
+    }
+
+    /**
+     * Reset this reader to read the specified sequence
+     * @param source    Sequence to read
+     * @return  this object
+     */
+    public ReusableStringReader reset(CharSequence source) {
+        return reset(source, 0, (source != null ? source.length() : 0));
+    }
+
+    /**
+     * Reset this reader to read a range of the specified sequence
+     * @param source    Sequence to read
+     * @param start     Start index (inclusive)
+     * @param end       End index (exclusive)
+     * @return  this object
+     */
+    public ReusableStringReader reset(CharSequence source, int start, int end) {
+        this.source = source;
+        this.position = start;
+        this.end = end;
+        return this;
+    }
+
+    @Override
+    public int read(@NonNull char[] chars, int offset, int length) throws IOException {
+        if (source == null) {
+            throw new IOException("Reader closed");
+        }
+        int count = -1;     // end of stream
+        if (position < end) {
+            count = Math.min(length, end - position);
+            if (source instanceof String) {
+                ((String) source).getChars(position, position + count, chars, offset);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    chars[offset + i] = source.charAt(position + i);
+                }
+            }
+            position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source = null;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parse-scoped, bounded string intern pool.<br>
+ * Frequently repeated values, such as ingredient measures and names, are mapped to a single
+ * canonical instance while a parse is in progress on the current thread. Known measures are
+ * always mapped to shared constants. Usage:
+ * <pre>
+ *     StringPool.begin();
+ *     try {
+ *         // parse, calling StringPool.intern() for repeated values
+ *     } finally {
+ *         StringPool.end();
+ *     }
+ * </pre>
+ * Scopes may be nested, the pool is cleared when the outermost scope ends.
+ */
+@SuppressWarnings("unused")
+public final class StringPool {
+
+    /** Maximum number of entries in a pool */
+    public static final int MAX_ENTRIES = 2048;
+
+    /** Known measures */
+    public static final String CUP = "CUP";
+    public static final String TABLESPOON = "TBLSP";
+    public static final String TEASPOON = "TSP";
+    public static final String KILOGRAM = "K";
+    public static final String GRAM = "G";
+    public static final String OUNCE = "OZ";
+    public static final String UNIT = "UNIT";
+
+    private static final Map<String, String> sConstants;
+
+    static {
+        Map<String, String> constants = new HashMap<>();
+        for (String measure : new String[] { "", CUP, TABLESPOON, TEASPOON, KILOGRAM, GRAM, OUNCE, UNIT }) {
+            constants.put(measure, measure);
+        }
+        sConstants = Collections.unmodifiableMap(constants);
+    }
+
+    private static final ThreadLocal<StringPool> sPool = new ThreadLocal<StringPool>() {
+        @Override
+        protected StringPool initialValue() {
+            return new StringPool();
+        }
+    };
+
+    private final HashMap<String, String> mEntries;
+    private int mDepth;     // scope nesting depth
+
+    /**
+     * Private constructor
+     */
+    private StringPool() {
+        mEntries = new HashMap<>();
+        mDepth = 0;
+    }
+
+    /**
+     * Begin an intern scope on the current thread
+     */
+    public static void begin() {
+        ++sPool.get().mDepth;
+    }
+
+    /**
+     * End an intern scope on the current thread
+     */
+    public static void end() {
+        StringPool pool = sPool.get();
+        if (pool.mDepth > 0) {
+            --pool.mDepth;
+            if (pool.mDepth == 0) {
+                pool.mEntries.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the canonical instance of a string
+     * @param value String to intern
+     * @return  Canonical instance, or <code>value</code> if there is no active scope or the pool is full
+     */
+    public static String intern(String value) {
+        String canonical = value;
+        if (value != null) {
+            canonical = sConstants.get(value);
+            if (canonical == null) {
+                canonical = sPool.get().internValue(value);
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Get the canonical instance of a string from this pool
+     * @param value String to intern
+     * @return  Canonical instance
+     */
+    private String internValue(String value) {
+        String canonical = value;
+        if (mDepth > 0) {
+            canonical = mEntries.get(value);
+            if (canonical == null) {
+                canonical = value;
+                if (mEntries.size() < MAX_ENTRIES) {
+                    mEntries.put(value, value);
+                }
+            }
+        }
+        return canonical;
+    }
+}
@@ -20,11 +20,14 @@ package ie.ianbuttimer.bakingguru.data.adapter;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.text.TextUtils;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import butterknife.BindView;
@@ -52,6 +55,44 @@ public class RecipeAdapter extends AbstractBakeRecycleViewAdapter<Recipe> {
     }
 
 
+    /**
+     * Merge a fresh recipe list into the current list in place, so only the recipes which have been
+     * added, removed or changed are rebound, and the scroll position is retained.
+     * Note: the adapter is notified of the changes
+     * @param fresh The fresh list
+     */
+    public void merge(@NonNull final List<Recipe> fresh) {
+        final List<Recipe> current = new ArrayList<>(mList);
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return current.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return fresh.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return current.get(oldItemPosition).getId() == fresh.get(newItemPosition).getId();
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                // only the summary info is displayed
+                Recipe oldRecipe = current.get(oldItemPosition);
+                Recipe newRecipe = fresh.get(newItemPosition);
+                return TextUtils.equals(oldRecipe.getName(), newRecipe.getName()) &&
+                        TextUtils.equals(oldRecipe.getImage(), newRecipe.getImage()) &&
+                        (oldRecipe.getServings() == newRecipe.getServings());
+            }
+        });
+        setList(fresh);
+        diff.dispatchUpdatesTo(this);
+    }
+
     @Override
     public AbstractBakeViewHolder<? extends AbstractBakeObject> getNewViewHolder(View view, IAdapterOnClickHandler<Recipe> clickHandler) {
         return new RecipeViewHolder(view, clickHandler);
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.adapter;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.utils.UriUtils;
+
+/**
+ * Paging data source for a RecyclerView of recipes from the database.<br>
+ * Pages are requested using keyset pagination, i.e. the id of the last recipe loaded, so the cost
+ * of loading a page is independent of its position. The next page is requested as the list is
+ * scrolled towards the last loaded item, or when a bound page doesn't fill the list.
+ */
+@SuppressWarnings("unused")
+public class RecipePagingSource extends RecyclerView.OnScrollListener {
+
+    /** Default number of recipes per page */
+    public static final int DEFAULT_PAGE_SIZE = 24;
+
+    private IPageRequester mRequester;
+    private RecyclerView mRecyclerView;     // list being paged
+    private int mPageSize;
+    private int mPrefetchDistance;  // number of items from the end of the list at which to request the next page
+    private int mLastId;            // id of the last recipe loaded
+    private boolean mLoading;       // page request in progress
+    private boolean mFirstPage;     // first page request in progress
+    private boolean mEndReached;    // all recipes loaded
+    private boolean mEnabled;       // paging enabled
+
+    /**
+     * Interface to request pages
+     */
+    public interface IPageRequester {
+        /**
+         * Request a page
+         * @param uri   Uri of the page
+         */
+        void requestPage(@NonNull Uri uri);
+    }
+
+    /**
+     * Constructor
+     * @param requester Page requester
+     * @param pageSize  Number of recipes per page
+     */
+    public RecipePagingSource(@NonNull IPageRequester requester, int pageSize) {
+        mRequester = requester;
+        mPageSize = pageSize;
+        mPrefetchDistance = Math.max(1, pageSize / 2);
+        reset();
+    }
+
+    /**
+     * Constructor
+     * @param requester Page requester
+     */
+    public RecipePagingSource(@NonNull IPageRequester requester) {
+        this(requester, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Attach to the list to page
+     * @param recyclerView  List view
+     */
+    public void attach(@NonNull RecyclerView recyclerView) {
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(this);
+        }
+        mRecyclerView = recyclerView;
+        mRecyclerView.addOnScrollListener(this);
+    }
+
+    /**
+     * Reset to the start of the list
+     */
+    public void reset() {
+        mLastId = 0;
+        mLoading = false;
+        mFirstPage = false;
+        mEndReached = false;
+    }
+
+    /**
+     * Request the first page, enabling paging
+     */
+    public void loadFirstPage() {
+        reset();
+        mEnabled = true;
+        mFirstPage = true;
+        request();
+    }
+
+    /**
+     * Request the next page, if paging is enabled and there are more recipes to load
+     * @return  <code>true</code> if a page was requested
+     */
+    public boolean loadNextPage() {
+        boolean requested = false;
+        if (mEnabled && !mLoading && !mEndReached) {
+            request();
+            requested = true;
+        }
+        return requested;
+    }
+
+    /**
+     * Request the page following the last loaded recipe
+     */
+    private void request() {
+        mLoading = true;
+        mRequester.requestPage(UriUtils.getRecipePageUri(mLastId, mPageSize));
+    }
+
+    /**
+     * Resume paging after an already loaded list, e.g. restored from saved instance state
+     * @param loaded    Loaded recipes
+     */
+    public void resume(@NonNull List<Recipe> loaded) {
+        reset();
+        mEnabled = true;
+        if (!loaded.isEmpty()) {
+            mLastId = loaded.get(loaded.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Process a loaded page
+     * @param page  Recipes in the page
+     * @return  Recipes in the page; results may be redelivered after a change, so recipes already
+     *          loaded should replace the loaded versions, see {@link #mergePage(List, List)}
+     */
+    public List<Recipe> onPageLoaded(@Nullable Recipe[] page) {
+        List<Recipe> list = new ArrayList<>();
+        int lastId = mLastId;
+        if (page != null) {
+            for (Recipe recipe : page) {
+                if (recipe == null) {
+                    continue;   // row couldn't be decoded
+                }
+                list.add(recipe);
+                if (recipe.getId() > mLastId) {
+                    mLastId = recipe.getId();
+                }
+            }
+        }
+        if (mLoading) {
+            // if nothing in the page could be decoded the next page can't be requested after it
+            mEndReached = ((page == null) || (page.length < mPageSize) || (mLastId == lastId));
+        }
+        mLoading = false;
+        mFirstPage = false;
+        return list;
+    }
+
+    /**
+     * Merge a page into the loaded list; recipes already loaded are replaced and new recipes appended
+     * @param loaded    Loaded recipes
+     * @param page      Recipes in the page
+     * @return  New merged list
+     */
+    public static List<Recipe> mergePage(@NonNull List<Recipe> loaded, @NonNull List<Recipe> page) {
+        SparseIntArray positions = new SparseIntArray(loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            Recipe recipe = loaded.get(i);
+            if (recipe != null) {
+                positions.put(recipe.getId(), i);
+            }
+        }
+        List<Recipe> merged = new ArrayList<>(loaded);
+        for (Recipe recipe : page) {
+            if (recipe == null) {
+                continue;
+            }
+            int position = positions.get(recipe.getId(), -1);
+            if (position >= 0) {
+                merged.set(position, recipe);
+            } else {
+                merged.add(recipe);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Check if the first page is being loaded
+     * @return  <code>true</code> if first page request in progress
+     */
+    public boolean isFirstPage() {
+        return mFirstPage;
+    }
+
+    public boolean isEndReached() {
+        return mEndReached;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enable/disable paging, e.g. disable when the list is not from the database
+     * @param enabled   Enabled flag
+     */
+    public void setEnabled(boolean enabled) {
+        this.mEnabled = enabled;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        super.onScrolled(recyclerView, dx, dy);
+
+        if (dy > 0) {
+            checkPrefetch(recyclerView);
+        }
+    }
+
+    /**
+     * Called when a page has been bound to the list; if the list doesn't fill the view there is
+     * nothing to scroll, so the next page is requested once the list has been laid out
+     */
+    public void onPageBound() {
+        if (mRecyclerView != null) {
+            mRecyclerView.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mRecyclerView != null) {
+                        checkPrefetch(mRecyclerView);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Request the next page if the last visible item is within the prefetch distance of the end
+     * @param recyclerView  List view
+     */
+    private void checkPrefetch(RecyclerView recyclerView) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {  // includes GridLayoutManager
+            int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            if (lastVisible >= layoutManager.getItemCount() - mPrefetchDistance) {
+                loadNextPage();
+            }
+        }
+    }
+}
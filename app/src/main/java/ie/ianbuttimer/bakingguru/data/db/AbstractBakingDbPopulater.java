@@ -18,11 +18,19 @@
 package ie.ianbuttimer.bakingguru.data.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabaseLockedException;
 import android.database.sqlite.SQLiteException;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import ie.ianbuttimer.bakingguru.bake.Recipe;
 import ie.ianbuttimer.bakingguru.data.provider.RecipeContentValues;
+import ie.ianbuttimer.bakingguru.utils.PreferenceControl;
 import timber.log.Timber;
 
 /**
@@ -31,6 +39,12 @@ import timber.log.Timber;
 
 public abstract class AbstractBakingDbPopulater extends BakingDbHelperCallbacksImpl {
 
+    /** Number of rows to insert per transaction */
+    protected static final int CHUNK_SIZE = 50;
+
+    /** Preference key for the background population not yet completed flag */
+    private static final String POPULATE_PENDING_KEY = "db_populate_pending";
+
     /**
      * Default constructor
      * @param context  The current context
@@ -39,24 +53,145 @@ public abstract class AbstractBakingDbPopulater extends BakingDbHelperCallbacksI
         super(context);
     }
 
+    /**
+     * Save recipes to the database, in chunked transactions
+     * @param db        Database to save to
+     * @param array     Recipes to save
+     */
     protected void saveToDb(SQLiteDatabase db, Recipe[] array) {
+        if (array != null) {
+            for (int start = 0; start < array.length; start += CHUNK_SIZE) {
+                saveToDb(db, array, start, Math.min(start + CHUNK_SIZE, array.length));
+            }
+        }
+    }
 
-        if ((array != null) && (array.length > 0)) {
-            db.beginTransaction();
+    /**
+     * Save a range of recipes, and their ingredients & steps, to the database in a single transaction
+     * @param db        Database to save to
+     * @param array     Recipes to save
+     * @param start     Index of first recipe to save (inclusive)
+     * @param end       Index of last recipe to save (exclusive)
+     * @return  number of recipes saved
+     */
+    protected int saveToDb(SQLiteDatabase db, Recipe[] array, int start, int end) {
+        int count = 0;
+        if ((array != null) && (start < end)) {
+            long startNs = System.nanoTime();
+            DbDiagnostics.beginTransaction(db);
             RecipeContentValues.Builder builder = RecipeContentValues.builder();
+            RecipeTableWriter writer = new RecipeTableWriter(db);
             try {
-                for (Recipe recipe : array) {
+                for (int i = start; i < end; i++) {
                     builder.clear()
-                            .setId(recipe.getId())
-                            .setJson(recipe.toJson());
-                    db.insertOrThrow(BakingContract.RecipeEntry.TABLE_NAME, null, builder.build());
+                            .setId(array[i].getId())
+                            .setRecipe(array[i]);
+                    writer.upsert(builder.build(), array[i]);
+                    ++count;
                 }
                 db.setTransactionSuccessful();
             } catch (SQLiteException e) {
+                if (e instanceof SQLiteDatabaseLockedException) {
+                    DbDiagnostics.busy();
+                }
                 Timber.e("Unable to insert row", e);
+                count = 0;
             } finally {
+                writer.close();
                 db.endTransaction();
             }
+            DbDiagnostics.recordBatch("populate", count, System.nanoTime() - startNs);
+        }
+        return count;
+    }
+
+    /**
+     * Save recipes to the database on a background thread, in chunked transactions so as not to
+     * block other database access for the duration. Observers of the recipes uri are notified as
+     * each chunk is committed.<br>
+     * The population is flagged as pending until every chunk has been saved, so if the process
+     * dies or a chunk fails, {@link #isPopulatePending()} is still set the next time the db is opened.
+     * @param db        Database to save to
+     * @param array     Recipes to save
+     * @param start     Index of first recipe to save
+     */
+    protected void saveToDbInBackground(final SQLiteDatabase db, final Recipe[] array, final int start) {
+        if ((array != null) && (start < array.length)) {
+            setPopulatePending(true);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    boolean complete = true;
+                    try {
+                        for (int chunk = start; complete && (chunk < array.length); chunk += CHUNK_SIZE) {
+                            int end = Math.min(chunk + CHUNK_SIZE, array.length);
+                            int saved = saveToDb(db, array, chunk, end);
+                            complete = (saved == (end - chunk));
+                            Context context = getContext();
+                            if ((saved > 0) && (context != null)) {
+                                context.getContentResolver().notifyChange(BakingContract.RecipeEntry.CONTENT_URI, null);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        // e.g. db closed
+                        Timber.e("Unable to populate db", e);
+                        complete = false;
+                    }
+                    if (complete) {
+                        setPopulatePending(false);
+                    } else {
+                        Timber.w("Db population incomplete, resumed when db next opened");
+                    }
+                }
+            }, "BakingDbPopulater");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * Get the recipes which have not been saved to the database
+     * @param db        Database to check
+     * @param array     Recipes to check
+     * @return  Recipes not in the database
+     */
+    protected Recipe[] getUnsaved(SQLiteDatabase db, Recipe[] array) {
+        Set<Integer> saved = new HashSet<>();
+        Cursor cursor = db.query(BakingContract.RecipeEntry.TABLE_NAME, new String[] { BakingContract.RecipeEntry._ID },
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                saved.add(cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        List<Recipe> unsaved = new ArrayList<>();
+        for (Recipe recipe : array) {
+            if (!saved.contains(recipe.getId())) {
+                unsaved.add(recipe);
+            }
+        }
+        return unsaved.toArray(new Recipe[unsaved.size()]);
+    }
+
+    /**
+     * Check if a background population was started but has not completed
+     * @return  <code>true</code> if population is pending
+     */
+    protected boolean isPopulatePending() {
+        Context context = getContext();
+        return (context != null) && PreferenceControl.getSharedBooleanPreference(context, POPULATE_PENDING_KEY, false);
+    }
+
+    /**
+     * Set the background population pending flag
+     * @param pending   <code>true</code> if population is pending
+     */
+    protected void setPopulatePending(boolean pending) {
+        Context context = getContext();
+        if (context != null) {
+            PreferenceControl.setSharedBooleanPreference(context, POPULATE_PENDING_KEY, pending);
         }
     }
 }
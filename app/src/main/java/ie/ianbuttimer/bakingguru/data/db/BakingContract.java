@@ -44,6 +44,27 @@ public class BakingContract {
     /** Ingredients path for content provider */
     public static final String PATH_INGREDIENTS = "ingredients";
 
+    /** Steps path for content provider */
+    public static final String PATH_STEPS = "steps";
+
+    /** Search path for content provider */
+    public static final String PATH_SEARCH = "search";
+
+    /** Feeds path for content provider */
+    public static final String PATH_FEEDS = "feeds";
+
+    /** Query parameter to suppress change notifications for a modification, e.g. timestamp refreshes */
+    public static final String QUERY_PARAM_NOTIFY = "notify";
+
+    /** Query parameter for the maximum number of rows to return */
+    public static final String QUERY_PARAM_LIMIT = "limit";
+
+    /**
+     * Query parameter for keyset pagination; only rows with an id greater than the parameter are
+     * returned, in id order. Use with {@link #QUERY_PARAM_LIMIT} to specify the page size.
+     */
+    public static final String QUERY_PARAM_AFTER_ID = "after_id";
+
     /** Individual item path for content provider */
     public static final String PATH_WITH_ID = "/#";
 
@@ -62,17 +83,22 @@ public class BakingContract {
         /** Recipes Uri for content provider */
         public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_RECIPES).build();
 
-        /** Recipe ingredients Uri for content provider */
-        public static final Uri INGREDIENTS_CONTENT_URI = CONTENT_URI.buildUpon().appendPath(PATH_INGREDIENTS).build();
+        /** Recipe search Uri for content provider, see {@link SearchEntry} */
+        public static final Uri SEARCH_CONTENT_URI = CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).build();
 
         // Recipe table and column names
         public static final String TABLE_NAME = "recipes";
 
-        public static final String COLUMN_JSON = "json";    // json representation of object
-        public static final String COLUMN_TIMESTAMP = "timestamp";       // timestamp of server response
+        public static final String COLUMN_DATA = "data";    // binary representation of object, see RecipeCodec
+        public static final String COLUMN_JSON = "json";    // json representation of object, database version 1 only
+        public static final String COLUMN_TIMESTAMP = "timestamp";       // timestamp of server response, msec since epoch
+        public static final String COLUMN_HASH = "hash";                 // content hash of data, see RecipeCodec#hash
+        public static final String COLUMN_ACCESSED = "accessed";         // time recipe last opened, msec since epoch
+        public static final String COLUMN_SIZE = "size";                 // size of data in bytes
 
         // call methods
         public static final String REQUEST_URL = "request_url";    // request url method
+        public static final String EVICT = "evict";                // evict recipes over byte budget method, see RecipeEvictor
     }
 
     /**
@@ -86,13 +112,97 @@ public class BakingContract {
         // Ingredients table and column names
         public static final String TABLE_NAME = "ingredients";
 
+        public static final String COLUMN_RECIPE_ID = "recipe_id";       // id of parent recipe
+        public static final String COLUMN_INDEX = "item_index";          // position in recipe
         public static final String COLUMN_QUANTITY = "quantity";
         public static final String COLUMN_MEASURE = "measure";
         public static final String COLUMN_INGREDIENT = "ingredient";
+
+        /** Default sort order, i.e. recipe order */
+        public static final String DEFAULT_SORT_ORDER = COLUMN_RECIPE_ID + "," + COLUMN_INDEX;
     }
 
+    /**
+     * Class to define the steps table
+     */
+    public static final class StepEntry implements BaseColumns {
+
+        /** Steps Uri for content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_STEPS).build();
+
+        // Steps table and column names
+        public static final String TABLE_NAME = "steps";
+
+        public static final String COLUMN_RECIPE_ID = "recipe_id";       // id of parent recipe
+        public static final String COLUMN_INDEX = "item_index";          // position in recipe
+        public static final String COLUMN_STEP_ID = "step_id";
+        public static final String COLUMN_SHORT_DESCRIPTION = "short_description";
+        public static final String COLUMN_DESCRIPTION = "description";
+        public static final String COLUMN_VIDEO_URL = "video_url";
+        public static final String COLUMN_THUMBNAIL_URL = "thumbnail_url";
+
+        /** Default sort order, i.e. recipe order */
+        public static final String DEFAULT_SORT_ORDER = COLUMN_RECIPE_ID + "," + COLUMN_INDEX;
+    }
+
+    /**
+     * Class to define the recipe full-text search table.<br>
+     * The table is keyed by recipe id (docid) and is queried via {@link RecipeEntry#SEARCH_CONTENT_URI}
+     * with the search terms, and optionally the page limit & offset, as query parameters. Results
+     * contain the recipe row columns plus {@link #COLUMN_SNIPPET}, best matches first.
+     */
+    public static final class SearchEntry {
+
+        // Search table and column names
+        public static final String TABLE_NAME = "recipes_fts";
+
+        public static final String COLUMN_DOCID = "docid";
+        public static final String COLUMN_NAME = "name";                 // recipe name
+        public static final String COLUMN_INGREDIENTS = "ingredients";   // ingredient names
+        public static final String COLUMN_STEPS = "steps";               // step descriptions
+
+        // result columns
+        public static final String COLUMN_SNIPPET = "snippet";          // extract of matching text
+
+        // query parameters
+        public static final String QUERY_PARAM_QUERY = "q";
+        public static final String QUERY_PARAM_LIMIT = BakingContract.QUERY_PARAM_LIMIT;
+        public static final String QUERY_PARAM_OFFSET = "offset";
+
+        /** Default number of results per page */
+        public static final int DEFAULT_LIMIT = 25;
+    }
+
+    /**
+     * Class to define the feeds table, which holds the cache validators of the server feeds so they
+     * may be requested conditionally
+     */
+    public static final class FeedEntry implements BaseColumns {
+
+        /** Feeds Uri for content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_FEEDS).build();
+
+        // Feeds table and column names
+        public static final String TABLE_NAME = "feeds";
+
+        public static final String COLUMN_URL = "url";                      // url of feed
+        public static final String COLUMN_ETAG = "etag";                    // ETag of last response
+        public static final String COLUMN_LAST_MODIFIED = "last_modified";  // Last-Modified of last response
+        public static final String COLUMN_TIMESTAMP = "timestamp";          // time feed was last validated, msec since epoch
+
+        /** String for a selection by url */
+        public static final String URL_EQ_SELECTION = columnEqSelection(COLUMN_URL);
+    }
+
+    /** SQL expression for the current timestamp, msec since epoch */
+    public static final String SQL_NOW_TIMESTAMP = "(CAST(strftime('%s','now') AS INTEGER) * 1000)";
+
     /** String for a selection by id */
     public static final String ID_EQ_SELECTION = columnEqSelection(_ID);
+    /** String for a selection by id greater than */
+    public static final String ID_GT_SELECTION = _ID + ">?";
+    /** String for a selection by parent recipe id */
+    public static final String RECIPE_ID_EQ_SELECTION = columnEqSelection(IngredientEntry.COLUMN_RECIPE_ID);
     /** String for a selection by greater than or equal to timestamp */
     public static final String TIMESTAMP_GTEQ_SELECTION = columnGtEqSelection(COLUMN_TIMESTAMP);
     /** String for a selection by less than or equal to timestamp */
@@ -117,6 +227,28 @@ public class BakingContract {
                 TextUtils.join(",", Collections.nCopies(count, "?")));
     }
 
+    /**
+     * Make a selection of a batch of rows with a timestamp less than or equal to the selection argument
+     * @param table     Table name
+     * @param limit     Maximum number of rows to select
+     * @return  Selection string
+     */
+    public static String timestampLtEqBatchSelection(String table, int limit) {
+        return _ID + " IN (SELECT " + _ID + " FROM " + table + " WHERE " + TIMESTAMP_LTEQ_SELECTION +
+                " LIMIT " + limit + ")";
+    }
+
+    /**
+     * Make a selection of a batch of rows last accessed at or before the selection argument
+     * @param table     Table name
+     * @param limit     Maximum number of rows to select
+     * @return  Selection string
+     */
+    public static String accessedLtEqBatchSelection(String table, int limit) {
+        return _ID + " IN (SELECT " + _ID + " FROM " + table + " WHERE " +
+                columnLtEqSelection(RecipeEntry.COLUMN_ACCESSED) + " LIMIT " + limit + ")";
+    }
+
     /**
      * Make a column greater than or equal to selection argument
      * @param column    Column name
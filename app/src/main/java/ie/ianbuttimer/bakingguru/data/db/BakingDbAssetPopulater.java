@@ -30,6 +30,8 @@ import ie.ianbuttimer.bakingguru.data.FileReader;
 
 public class BakingDbAssetPopulater extends AbstractBakingDbPopulater {
 
+    private Recipe[] mPending;  // recipes still to be saved once db is open
+
     /**
      * Default constructor
      * @param context  The current context
@@ -42,9 +44,48 @@ public class BakingDbAssetPopulater extends AbstractBakingDbPopulater {
     public void onCreate(SQLiteDatabase db) {
 
         // Load initial db content from apk
+        Recipe[] array = readAsset();
+
+        if (array != null) {
+            // save the first chunk immediately so the first query has content, the rest is saved
+            // in the background once the db creation transaction has been committed
+            saveToDb(db, array, 0, Math.min(CHUNK_SIZE, array.length));
+            if (array.length > CHUNK_SIZE) {
+                mPending = array;
+            }
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        if (mPending != null) {
+            saveToDbInBackground(db, mPending, CHUNK_SIZE);
+            mPending = null;
+        } else if (isPopulatePending()) {
+            // previous population didn't complete, so save the recipes it missed
+            Recipe[] array = readAsset();
+            if (array != null) {
+                array = getUnsaved(db, array);
+            }
+            if ((array != null) && (array.length > 0)) {
+                saveToDbInBackground(db, array, 0);
+            } else {
+                setPopulatePending(false);
+            }
+        }
+    }
+
+    /**
+     * Read the initial db content from the apk
+     * @return  recipes or <code>null</code>
+     */
+    private Recipe[] readAsset() {
+        Recipe[] array = null;
         Context context = getContext();
-        FileReader<Recipe, Recipe.Loader> reader = new FileReader<>(context, context.getString(R.string.json_asset_file), new Recipe.Loader());
-        Recipe[] array = reader.readArray();
-        saveToDb(db, array);
+        if (context != null) {
+            FileReader<Recipe, Recipe.Loader> reader = new FileReader<>(context, context.getString(R.string.json_asset_file), Recipe.class);
+            array = reader.readArray();
+        }
+        return array;
     }
 }
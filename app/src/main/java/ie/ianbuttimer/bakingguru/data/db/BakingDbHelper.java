@@ -17,10 +17,21 @@
 
 package ie.ianbuttimer.bakingguru.data.db;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.RecipeCodec;
+import ie.ianbuttimer.bakingguru.data.LoadableRegistry;
+import ie.ianbuttimer.bakingguru.data.provider.RecipeContentValues;
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+import timber.log.Timber;
 
 
 /**
@@ -33,9 +44,90 @@ public class BakingDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "bakingDb.db";
 
     // The database version
-    private static final int VERSION = 1;
+    public static final int VERSION = 8;
+
+    // Database versions
+    public static final int VERSION_JSON = 1;          // recipes stored as json text
+    public static final int VERSION_BINARY = 2;        // recipes stored as binary blobs, see RecipeCodec
+    public static final int VERSION_NORMALISED = 3;    // ingredients & steps tables added
+    public static final int VERSION_SEARCH = 4;        // full-text search table added
+    public static final int VERSION_HASH = 5;          // recipe content hash column added
+    public static final int VERSION_EPOCH = 6;         // timestamps stored as msec since epoch & indexed
+    public static final int VERSION_FEED = 7;          // feed cache validators table added
+    public static final int VERSION_LRU = 8;           // recipe last access time & size columns added
+
+    private static final String TIMESTAMP_INDEX = BakingContract.RecipeEntry.TABLE_NAME + "_timestamp_idx";
+    private static final String ACCESSED_INDEX = BakingContract.RecipeEntry.TABLE_NAME + "_accessed_idx";
+
+    /**
+     * Time the primary connection will wait for a lock held by another connection before failing.
+     * Only the primary (writer) connection is configured, pooled reader connections keep the
+     * framework's default timeout; in write-ahead logging mode readers don't wait on the writer.
+     */
+    public static final int BUSY_TIMEOUT_MS = 5000;
 
     private Callbacks mCallback;
+    private int mVersion;
+    @Nullable private volatile PrebuiltDbInstaller mInstaller;
+
+    /** Incremental schema migrations, one step per version */
+    private final DbMigration[] mMigrations = new DbMigration[] {
+        new DbMigration(VERSION_JSON) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                migrateJsonToBinary(sqLiteDatabase);
+            }
+        },
+        new DbMigration(VERSION_BINARY, true) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                createChildTables(sqLiteDatabase);
+            }
+        },
+        new DbMigration(VERSION_NORMALISED, true) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                createSearchTable(sqLiteDatabase);
+            }
+        },
+        new DbMigration(VERSION_SEARCH) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                addHashColumn(sqLiteDatabase);
+            }
+        },
+        new DbMigration(VERSION_HASH) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                convertTimestamps(sqLiteDatabase);
+            }
+        },
+        new DbMigration(VERSION_EPOCH) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                createFeedTable(sqLiteDatabase);
+            }
+        },
+        new DbMigration(VERSION_FEED) {
+            @Override
+            public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+                addLruColumns(sqLiteDatabase);
+            }
+        },
+    };
+
+    /** Repopulate the derived tables, once all migration steps have been applied */
+    private final DbMigration mRebuild = new DbMigration(VERSION) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException {
+            RecipeTableWriter.rewriteChildren(sqLiteDatabase, null, null);
+        }
+
+        @Override
+        public String getDescription() {
+            return "derived tables";
+        }
+    };
 
 
     /**
@@ -52,14 +144,62 @@ public class BakingDbHelper extends SQLiteOpenHelper {
      * @param callback  Callback implementation
      */
     public BakingDbHelper(Context context, @Nullable Callbacks callback) {
-        super(context, DATABASE_NAME, null, VERSION);
+        this(context, DATABASE_NAME, VERSION, callback);
+    }
+
+    /**
+     * Constructor
+     * @param context   The current context
+     * @param name      Name of database file
+     * @param version   Version to open the database as, may be an earlier version for testing migrations
+     * @param callback  Callback implementation
+     */
+    @VisibleForTesting
+    public BakingDbHelper(Context context, String name, int version, @Nullable Callbacks callback) {
+        super(context, name, null, version);
         mCallback = callback;
+        mVersion = version;
+        // allow readers to proceed in parallel with the writer, using the framework's reader connection pool
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Set the installer to put a prebuilt database in place before the database is first opened
+     * @param installer Installer to use, or <code>null</code> to always create the database
+     */
+    public void setInstaller(@Nullable PrebuiltDbInstaller installer) {
+        this.mInstaller = installer;
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        installPrebuilt();
+        return super.getWritableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        installPrebuilt();
+        return super.getReadableDatabase();
+    }
+
+    /**
+     * Install the prebuilt database if required, only the first call does any work
+     */
+    private void installPrebuilt() {
+        if (mInstaller != null) {
+            mInstaller.install(getDatabaseName());
+            mInstaller = null;
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
 
         createTables(sqLiteDatabase);
+        createChildTables(sqLiteDatabase);
+        createSearchTable(sqLiteDatabase);
+        createFeedTable(sqLiteDatabase);
 
         if (mCallback != null) {
             mCallback.onCreate(sqLiteDatabase);
@@ -67,7 +207,7 @@ public class BakingDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Create the db tables
+     * Create the recipes table and its timestamp & last access indices
      * @param sqLiteDatabase    Db reference
      */
     private void createTables(SQLiteDatabase sqLiteDatabase) {
@@ -76,25 +216,319 @@ public class BakingDbHelper extends SQLiteOpenHelper {
             "CREATE TABLE " + BakingContract.RecipeEntry.TABLE_NAME + " (" +
                 /* use recipe id as the primary key */
                 BakingContract.RecipeEntry._ID              + " INTEGER, " +
-                BakingContract.RecipeEntry.COLUMN_JSON      + " STRING NOT NULL, " +
-                BakingContract.RecipeEntry.COLUMN_TIMESTAMP + " TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                BakingContract.RecipeEntry.COLUMN_DATA      + " BLOB NOT NULL, " +
+                BakingContract.RecipeEntry.COLUMN_HASH      + " INTEGER, " +
+                BakingContract.RecipeEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL DEFAULT " +
+                                                                BakingContract.SQL_NOW_TIMESTAMP + ", " +
+                BakingContract.RecipeEntry.COLUMN_ACCESSED  + " INTEGER NOT NULL DEFAULT " +
+                                                                BakingContract.SQL_NOW_TIMESTAMP + ", " +
+                BakingContract.RecipeEntry.COLUMN_SIZE      + " INTEGER NOT NULL DEFAULT 0, " +
                 "PRIMARY KEY (" + BakingContract.RecipeEntry._ID + ") ON CONFLICT REPLACE" +
             ");";
 
+        /* expiry purges are range deletes on the timestamp */
+        final String SQL_CREATE_TIMESTAMP_INDEX =
+            "CREATE INDEX " + TIMESTAMP_INDEX + " ON " + BakingContract.RecipeEntry.TABLE_NAME + " (" +
+                BakingContract.RecipeEntry.COLUMN_TIMESTAMP + ");";
+
         sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_TIMESTAMP_INDEX);
+        createAccessedIndex(sqLiteDatabase);
+    }
+
+    /**
+     * Create the recipes last access index, if it doesn't exist
+     * @param sqLiteDatabase    Db reference
+     */
+    private void createAccessedIndex(SQLiteDatabase sqLiteDatabase) {
+        /* evictions & idle purges scan recipes in last access order */
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + ACCESSED_INDEX + " ON " +
+                BakingContract.RecipeEntry.TABLE_NAME + " (" + BakingContract.RecipeEntry.COLUMN_ACCESSED + ");");
+    }
+
+    /**
+     * Create the ingredients & steps tables, their indices and the trigger to remove them when
+     * their recipe is deleted, see {@link #createChildTrigger(SQLiteDatabase)}
+     * @param sqLiteDatabase    Db reference
+     */
+    private void createChildTables(SQLiteDatabase sqLiteDatabase) {
+
+        final String SQL_CREATE_INGREDIENT_TABLE =
+            "CREATE TABLE " + BakingContract.IngredientEntry.TABLE_NAME + " (" +
+                BakingContract.IngredientEntry._ID               + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                BakingContract.IngredientEntry.COLUMN_RECIPE_ID  + " INTEGER NOT NULL, " +
+                BakingContract.IngredientEntry.COLUMN_INDEX      + " INTEGER NOT NULL, " +
+                BakingContract.IngredientEntry.COLUMN_QUANTITY   + " REAL, " +
+                BakingContract.IngredientEntry.COLUMN_MEASURE    + " TEXT, " +
+                BakingContract.IngredientEntry.COLUMN_INGREDIENT + " TEXT" +
+            ");";
+
+        final String SQL_CREATE_STEP_TABLE =
+            "CREATE TABLE " + BakingContract.StepEntry.TABLE_NAME + " (" +
+                BakingContract.StepEntry._ID                      + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                BakingContract.StepEntry.COLUMN_RECIPE_ID         + " INTEGER NOT NULL, " +
+                BakingContract.StepEntry.COLUMN_INDEX             + " INTEGER NOT NULL, " +
+                BakingContract.StepEntry.COLUMN_STEP_ID           + " INTEGER, " +
+                BakingContract.StepEntry.COLUMN_SHORT_DESCRIPTION + " TEXT, " +
+                BakingContract.StepEntry.COLUMN_DESCRIPTION       + " TEXT, " +
+                BakingContract.StepEntry.COLUMN_VIDEO_URL         + " TEXT, " +
+                BakingContract.StepEntry.COLUMN_THUMBNAIL_URL     + " TEXT" +
+            ");";
+
+        /* child rows are always read by recipe in recipe order */
+        final String SQL_CREATE_INGREDIENT_INDEX =
+            "CREATE INDEX " + BakingContract.IngredientEntry.TABLE_NAME + "_recipe_idx ON " +
+                BakingContract.IngredientEntry.TABLE_NAME + " (" +
+                BakingContract.IngredientEntry.COLUMN_RECIPE_ID + ", " +
+                BakingContract.IngredientEntry.COLUMN_INDEX + ");";
+
+        final String SQL_CREATE_STEP_INDEX =
+            "CREATE INDEX " + BakingContract.StepEntry.TABLE_NAME + "_recipe_idx ON " +
+                BakingContract.StepEntry.TABLE_NAME + " (" +
+                BakingContract.StepEntry.COLUMN_RECIPE_ID + ", " +
+                BakingContract.StepEntry.COLUMN_INDEX + ");";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_INGREDIENT_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_STEP_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_INGREDIENT_INDEX);
+        sqLiteDatabase.execSQL(SQL_CREATE_STEP_INDEX);
+        createChildTrigger(sqLiteDatabase);
+    }
+
+    /**
+     * Create the trigger to remove ingredients & steps when their recipe is deleted
+     * @param sqLiteDatabase    Db reference
+     */
+    private void createChildTrigger(SQLiteDatabase sqLiteDatabase) {
+
+        /* remove child rows along with the recipe, whatever the delete selection */
+        final String SQL_CREATE_DELETE_TRIGGER =
+            "CREATE TRIGGER " + BakingContract.RecipeEntry.TABLE_NAME + "_delete AFTER DELETE ON " +
+                BakingContract.RecipeEntry.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + BakingContract.IngredientEntry.TABLE_NAME + " WHERE " +
+                    BakingContract.IngredientEntry.COLUMN_RECIPE_ID + "=old." + BakingContract.RecipeEntry._ID + "; " +
+                "DELETE FROM " + BakingContract.StepEntry.TABLE_NAME + " WHERE " +
+                    BakingContract.StepEntry.COLUMN_RECIPE_ID + "=old." + BakingContract.RecipeEntry._ID + "; " +
+            "END;";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_DELETE_TRIGGER);
+    }
+
+    /**
+     * Create the full-text search table and the trigger to remove entries when their recipe is
+     * deleted, see {@link #createSearchTrigger(SQLiteDatabase)}
+     * @param sqLiteDatabase    Db reference
+     */
+    private void createSearchTable(SQLiteDatabase sqLiteDatabase) {
+
+        /* docid is the recipe id */
+        final String SQL_CREATE_SEARCH_TABLE =
+            "CREATE VIRTUAL TABLE " + BakingContract.SearchEntry.TABLE_NAME + " USING fts4(" +
+                BakingContract.SearchEntry.COLUMN_NAME + ", " +
+                BakingContract.SearchEntry.COLUMN_INGREDIENTS + ", " +
+                BakingContract.SearchEntry.COLUMN_STEPS +
+            ");";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_SEARCH_TABLE);
+        createSearchTrigger(sqLiteDatabase);
+    }
+
+    /**
+     * Create the trigger to remove search entries when their recipe is deleted
+     * @param sqLiteDatabase    Db reference
+     */
+    private void createSearchTrigger(SQLiteDatabase sqLiteDatabase) {
+
+        final String SQL_CREATE_DELETE_TRIGGER =
+            "CREATE TRIGGER " + BakingContract.SearchEntry.TABLE_NAME + "_delete AFTER DELETE ON " +
+                BakingContract.RecipeEntry.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + BakingContract.SearchEntry.TABLE_NAME + " WHERE " +
+                    BakingContract.SearchEntry.COLUMN_DOCID + "=old." + BakingContract.RecipeEntry._ID + "; " +
+            "END;";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_DELETE_TRIGGER);
+    }
+
+    /**
+     * Create the feeds table
+     * @param sqLiteDatabase    Db reference
+     */
+    private void createFeedTable(SQLiteDatabase sqLiteDatabase) {
+
+        final String SQL_CREATE_FEED_TABLE =
+            "CREATE TABLE " + BakingContract.FeedEntry.TABLE_NAME + " (" +
+                BakingContract.FeedEntry._ID                  + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                BakingContract.FeedEntry.COLUMN_URL           + " TEXT NOT NULL UNIQUE ON CONFLICT REPLACE, " +
+                BakingContract.FeedEntry.COLUMN_ETAG          + " TEXT, " +
+                BakingContract.FeedEntry.COLUMN_LAST_MODIFIED + " TEXT, " +
+                BakingContract.FeedEntry.COLUMN_TIMESTAMP     + " INTEGER NOT NULL DEFAULT " +
+                                                                    BakingContract.SQL_NOW_TIMESTAMP +
+            ");";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_FEED_TABLE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // recreate db
-        dropTables(sqLiteDatabase);
-        onCreate(sqLiteDatabase);
+        if (DbMigration.hasPath(mMigrations, oldVersion, newVersion)) {
+            // if a step fails the whole upgrade is rolled back, and the db is recreated in onOpen()
+            DbMigration.migrate(sqLiteDatabase, mMigrations, oldVersion, newVersion, mRebuild);
+        } else {
+            // no way to migrate, recreate db
+            recreate(sqLiteDatabase);
+        }
 
         if (mCallback != null) {
             mCallback.onUpgrade(sqLiteDatabase, oldVersion, newVersion);
         }
     }
 
+    /**
+     * Migrate the recipes table from json text to binary blobs
+     * @param sqLiteDatabase    Db reference
+     */
+    private void migrateJsonToBinary(SQLiteDatabase sqLiteDatabase) {
+        final String LEGACY_TABLE = BakingContract.RecipeEntry.TABLE_NAME + "_json";
+
+        sqLiteDatabase.execSQL("ALTER TABLE " + BakingContract.RecipeEntry.TABLE_NAME +
+                " RENAME TO " + LEGACY_TABLE + ";");
+        createTables(sqLiteDatabase);
+
+        Cursor cursor = sqLiteDatabase.query(LEGACY_TABLE, new String[] {
+                BakingContract.RecipeEntry._ID,
+                BakingContract.RecipeEntry.COLUMN_JSON,
+                BakingContract.RecipeEntry.COLUMN_TIMESTAMP
+            }, null, null, null, null, null);
+        try {
+            int idIndex = cursor.getColumnIndex(BakingContract.RecipeEntry._ID);
+            int jsonIndex = cursor.getColumnIndex(BakingContract.RecipeEntry.COLUMN_JSON);
+            int timestampIndex = cursor.getColumnIndex(BakingContract.RecipeEntry.COLUMN_TIMESTAMP);
+            RecipeContentValues.Builder builder = RecipeContentValues.builder();
+            while (cursor.moveToNext()) {
+                Recipe recipe = LoadableRegistry.read(Recipe.LOADER, cursor.getString(jsonIndex));
+                if (recipe != null) {
+                    builder.clear()
+                            .setId(cursor.getInt(idIndex))
+                            .setRecipe(recipe)
+                            .setTimestamp(DbUtils.timestampToDate(cursor.getString(timestampIndex)));
+                    sqLiteDatabase.insertOrThrow(BakingContract.RecipeEntry.TABLE_NAME, null, builder.build());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        sqLiteDatabase.execSQL("DROP TABLE " + LEGACY_TABLE + ";");
+    }
+
+    /**
+     * Add the content hash column to the recipes table and set it for the existing recipes
+     * @param sqLiteDatabase    Db reference
+     */
+    private void addHashColumn(SQLiteDatabase sqLiteDatabase) {
+        if (!hasColumn(sqLiteDatabase, BakingContract.RecipeEntry.TABLE_NAME, BakingContract.RecipeEntry.COLUMN_HASH)) {
+            // recipes table may have been created with the current schema by an earlier migration
+            sqLiteDatabase.execSQL("ALTER TABLE " + BakingContract.RecipeEntry.TABLE_NAME +
+                    " ADD COLUMN " + BakingContract.RecipeEntry.COLUMN_HASH + " INTEGER;");
+        }
+
+        Cursor cursor = sqLiteDatabase.query(BakingContract.RecipeEntry.TABLE_NAME, new String[] {
+                BakingContract.RecipeEntry._ID,
+                BakingContract.RecipeEntry.COLUMN_DATA
+            }, null, null, null, null, null);
+        try {
+            int idIndex = cursor.getColumnIndex(BakingContract.RecipeEntry._ID);
+            int dataIndex = cursor.getColumnIndex(BakingContract.RecipeEntry.COLUMN_DATA);
+            ContentValues cv = new ContentValues();
+            while (cursor.moveToNext()) {
+                cv.put(BakingContract.RecipeEntry.COLUMN_HASH, RecipeCodec.hash(cursor.getBlob(dataIndex)));
+                sqLiteDatabase.update(BakingContract.RecipeEntry.TABLE_NAME, cv,
+                        BakingContract.ID_EQ_SELECTION, new String[] { cursor.getString(idIndex) });
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Rebuild the recipes table with integer timestamps, converting the existing text timestamps
+     * @param sqLiteDatabase    Db reference
+     */
+    private void convertTimestamps(SQLiteDatabase sqLiteDatabase) {
+        final String LEGACY_TABLE = BakingContract.RecipeEntry.TABLE_NAME + "_text_ts";
+        final String TIMESTAMP = BakingContract.RecipeEntry.COLUMN_TIMESTAMP;
+
+        // the index & triggers move with the renamed table, so drop its index before recreating
+        sqLiteDatabase.execSQL("DROP INDEX IF EXISTS " + TIMESTAMP_INDEX + ";");
+        sqLiteDatabase.execSQL("ALTER TABLE " + BakingContract.RecipeEntry.TABLE_NAME +
+                " RENAME TO " + LEGACY_TABLE + ";");
+        createTables(sqLiteDatabase);
+
+        /* text timestamps were written in device local time (DbUtils' legacy format), so the 'utc' modifier
+            converts them to UTC before taking the epoch; rows migrated from json already have integer timestamps */
+        sqLiteDatabase.execSQL("INSERT INTO " + BakingContract.RecipeEntry.TABLE_NAME + " (" +
+                BakingContract.RecipeEntry._ID + ", " +
+                BakingContract.RecipeEntry.COLUMN_DATA + ", " +
+                BakingContract.RecipeEntry.COLUMN_HASH + ", " +
+                TIMESTAMP +
+            ") SELECT " +
+                BakingContract.RecipeEntry._ID + ", " +
+                BakingContract.RecipeEntry.COLUMN_DATA + ", " +
+                BakingContract.RecipeEntry.COLUMN_HASH + ", " +
+                "COALESCE(CASE WHEN typeof(" + TIMESTAMP + ")='integer' THEN " + TIMESTAMP +
+                    " ELSE CAST(strftime('%s', " + TIMESTAMP + ", 'utc') AS INTEGER) * 1000 END, " +
+                    BakingContract.SQL_NOW_TIMESTAMP + ")" +
+            " FROM " + LEGACY_TABLE + ";");
+
+        sqLiteDatabase.execSQL("DROP TABLE " + LEGACY_TABLE + ";");
+        createChildTrigger(sqLiteDatabase);
+        createSearchTrigger(sqLiteDatabase);
+    }
+
+    /**
+     * Add the last access time & size columns to the recipes table, and set them for the existing recipes
+     * @param sqLiteDatabase    Db reference
+     */
+    private void addLruColumns(SQLiteDatabase sqLiteDatabase) {
+        // recipes table may have been created with the current schema by an earlier migration, and
+        // a column added by ALTER TABLE can't have a non-constant default, so existing rows are set below
+        if (!hasColumn(sqLiteDatabase, BakingContract.RecipeEntry.TABLE_NAME, BakingContract.RecipeEntry.COLUMN_ACCESSED)) {
+            sqLiteDatabase.execSQL("ALTER TABLE " + BakingContract.RecipeEntry.TABLE_NAME +
+                    " ADD COLUMN " + BakingContract.RecipeEntry.COLUMN_ACCESSED + " INTEGER NOT NULL DEFAULT 0;");
+        }
+        if (!hasColumn(sqLiteDatabase, BakingContract.RecipeEntry.TABLE_NAME, BakingContract.RecipeEntry.COLUMN_SIZE)) {
+            sqLiteDatabase.execSQL("ALTER TABLE " + BakingContract.RecipeEntry.TABLE_NAME +
+                    " ADD COLUMN " + BakingContract.RecipeEntry.COLUMN_SIZE + " INTEGER NOT NULL DEFAULT 0;");
+        }
+
+        /* not accessed since the last server response, as far as is known */
+        sqLiteDatabase.execSQL("UPDATE " + BakingContract.RecipeEntry.TABLE_NAME + " SET " +
+                BakingContract.RecipeEntry.COLUMN_ACCESSED + "=" + BakingContract.RecipeEntry.COLUMN_TIMESTAMP + ", " +
+                BakingContract.RecipeEntry.COLUMN_SIZE + "=length(" + BakingContract.RecipeEntry.COLUMN_DATA + ");");
+
+        createAccessedIndex(sqLiteDatabase);
+    }
+
+    /**
+     * Check if a table has a column
+     * @param sqLiteDatabase    Db reference
+     * @param table             Table name
+     * @param column            Column name
+     * @return  <code>true</code> if column exists
+     */
+    private boolean hasColumn(SQLiteDatabase sqLiteDatabase, String table, String column) {
+        boolean exists = false;
+        Cursor cursor = sqLiteDatabase.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (!exists && cursor.moveToNext()) {
+                exists = column.equals(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return exists;
+    }
+
     /**
      * Drop all the tables in the db
      * @param sqLiteDatabase    Db reference
@@ -105,11 +539,19 @@ public class BakingDbHelper extends SQLiteOpenHelper {
         }
     }
 
-    @Override
-    public void onDowngrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // recreate db
+    /**
+     * Drop all the tables in the db and create them again
+     * @param sqLiteDatabase    Db reference
+     */
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
         dropTables(sqLiteDatabase);
         onCreate(sqLiteDatabase);
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // a newer schema is unknown to this version, so recreate db
+        recreate(sqLiteDatabase);
 
         if (mCallback != null) {
             mCallback.onDowngrade(sqLiteDatabase, oldVersion, newVersion);
@@ -122,7 +564,11 @@ public class BakingDbHelper extends SQLiteOpenHelper {
      */
     public String[] getTableNames() {
         return new String []{
-            BakingContract.RecipeEntry.TABLE_NAME
+            BakingContract.RecipeEntry.TABLE_NAME,
+            BakingContract.IngredientEntry.TABLE_NAME,
+            BakingContract.StepEntry.TABLE_NAME,
+            BakingContract.SearchEntry.TABLE_NAME,
+            BakingContract.FeedEntry.TABLE_NAME
         };
     }
 
@@ -130,15 +576,55 @@ public class BakingDbHelper extends SQLiteOpenHelper {
     public void onConfigure(SQLiteDatabase sqLiteDatabase) {
         super.onConfigure(sqLiteDatabase);
 
+        // pragmas which return a result need to be run as queries; applies to the primary connection
+        // only, see BUSY_TIMEOUT_MS. The framework already sets synchronous=NORMAL in WAL mode
+        runPragma(sqLiteDatabase, "busy_timeout=" + BUSY_TIMEOUT_MS);
+        if (!sqLiteDatabase.isReadOnly() && (sqLiteDatabase.getVersion() == 0)) {
+            // new db, so converting is cheap; existing dbs are converted by the eviction job
+            RecipeEvictor.enableIncrementalVacuum(sqLiteDatabase);
+        }
+
         if (mCallback != null) {
             mCallback.onConfigure(sqLiteDatabase);
         }
     }
 
+    /**
+     * Run a pragma statement
+     * @param sqLiteDatabase    Db reference
+     * @param pragma            Pragma to run, excluding the PRAGMA keyword
+     */
+    private void runPragma(SQLiteDatabase sqLiteDatabase, String pragma) {
+        Cursor cursor = null;
+        try {
+            cursor = sqLiteDatabase.rawQuery("PRAGMA " + pragma, null);
+            cursor.moveToFirst();
+        } catch (SQLException e) {
+            Timber.e("Unable to set pragma " + pragma, e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
     @Override
     public void onOpen(SQLiteDatabase sqLiteDatabase) {
         super.onOpen(sqLiteDatabase);
 
+        if (!sqLiteDatabase.isReadOnly() && (sqLiteDatabase.getVersion() != mVersion)) {
+            // a migration step failed & the upgrade was rolled back, so fall back to recreating the db
+            Timber.w("Upgrade from version " + sqLiteDatabase.getVersion() + " failed, recreating db");
+            sqLiteDatabase.beginTransaction();
+            try {
+                recreate(sqLiteDatabase);
+                sqLiteDatabase.setVersion(mVersion);
+                sqLiteDatabase.setTransactionSuccessful();
+            } finally {
+                sqLiteDatabase.endTransaction();
+            }
+        }
+
         if (mCallback != null) {
             mCallback.onOpen(sqLiteDatabase);
         }
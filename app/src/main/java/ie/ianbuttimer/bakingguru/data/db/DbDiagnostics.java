@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabaseLockedException;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+/**
+ * Database concurrency diagnostic counters, recording the time spent waiting for connections and
+ * locks. Shared by the provider and populater write paths, and logged by the db cache service after
+ * each action.
+ */
+@SuppressWarnings("unused")
+public final class DbDiagnostics {
+
+    /** Wait above which a read or write is considered to have been contended */
+    public static final long CONTENTION_THRESHOLD_MS = 5;
+
+    private static final long CONTENTION_THRESHOLD_NS = TimeUnit.MILLISECONDS.toNanos(CONTENTION_THRESHOLD_MS);
+
+    private static final AtomicLong sReads = new AtomicLong();          // number of queries
+    private static final AtomicLong sReadWaitNs = new AtomicLong();     // time to acquire a reader connection & prepare
+    private static final AtomicLong sWrites = new AtomicLong();         // number of write transactions
+    private static final AtomicLong sWriteWaitNs = new AtomicLong();    // time to acquire the write lock
+    private static final AtomicLong sContended = new AtomicLong();      // reads/writes exceeding the contention threshold
+    private static final AtomicLong sBusy = new AtomicLong();           // operations which failed as the db was locked
+    private static final AtomicLong sBatchRows = new AtomicLong();      // rows written by batch operations
+    private static final AtomicLong sBatchNs = new AtomicLong();        // time spent in batch operations
+
+    /**
+     * Private constructor
+     */
+    private DbDiagnostics() {
+        // can't instantiate class
+    }
+
+    /**
+     * Begin a write transaction, recording the time taken to acquire the write lock.<br>
+     * Transactions are begun in IMMEDIATE mode, so in write-ahead logging mode readers are not blocked.
+     * As the write lock is taken here, this is where a locked database is detected for every write
+     * path, and is counted as {@link #busy()}.
+     * @param db    Database to begin transaction on
+     * @throws SQLiteDatabaseLockedException if the write lock couldn't be acquired within the busy timeout
+     */
+    public static void beginTransaction(SQLiteDatabase db) {
+        long start = System.nanoTime();
+        try {
+            db.beginTransactionNonExclusive();
+        } catch (SQLiteDatabaseLockedException e) {
+            busy();
+            throw e;
+        }
+        record(sWrites, sWriteWaitNs, System.nanoTime() - start);
+    }
+
+    /**
+     * Mark the start of a read
+     * @return  start time to pass to {@link #endRead(long)}
+     */
+    public static long startRead() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Mark the end of a read
+     * @param start     Start time returned by {@link #startRead()}
+     */
+    public static void endRead(long start) {
+        record(sReads, sReadWaitNs, System.nanoTime() - start);
+    }
+
+    /**
+     * Record an operation which failed as the database was locked
+     */
+    public static void busy() {
+        sBusy.incrementAndGet();
+    }
+
+    /**
+     * Record a batch write, logging its throughput
+     * @param operation Name of operation
+     * @param rows      Number of rows written
+     * @param elapsed   Time taken in nanoseconds
+     */
+    public static void recordBatch(String operation, int rows, long elapsed) {
+        sBatchRows.addAndGet(rows);
+        sBatchNs.addAndGet(elapsed);
+        Timber.d(String.format(Locale.US, "%s: %d rows in %dms, %d rows/s", operation, rows,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), rowsPerSecond(rows, elapsed)));
+    }
+
+    /**
+     * Calculate a write rate
+     * @param rows      Number of rows written
+     * @param elapsed   Time taken in nanoseconds
+     * @return  rows per second
+     */
+    private static long rowsPerSecond(long rows, long elapsed) {
+        long rate = 0;
+        if (elapsed > 0) {
+            rate = (rows * TimeUnit.SECONDS.toNanos(1)) / elapsed;
+        }
+        return rate;
+    }
+
+    /**
+     * Record an operation
+     * @param count     Operation counter
+     * @param waitNs    Wait time counter
+     * @param elapsed   Wait time in nanoseconds
+     */
+    private static void record(AtomicLong count, AtomicLong waitNs, long elapsed) {
+        count.incrementAndGet();
+        waitNs.addAndGet(elapsed);
+        if (elapsed > CONTENTION_THRESHOLD_NS) {
+            sContended.incrementAndGet();
+        }
+    }
+
+    public static long getReads() {
+        return sReads.get();
+    }
+
+    public static long getReadWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(sReadWaitNs.get());
+    }
+
+    public static long getWrites() {
+        return sWrites.get();
+    }
+
+    public static long getWriteWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(sWriteWaitNs.get());
+    }
+
+    public static long getContended() {
+        return sContended.get();
+    }
+
+    public static long getBusy() {
+        return sBusy.get();
+    }
+
+    public static long getBatchRows() {
+        return sBatchRows.get();
+    }
+
+    /**
+     * Get the overall batch write rate
+     * @return  rows per second
+     */
+    public static long getBatchRowsPerSecond() {
+        return rowsPerSecond(sBatchRows.get(), sBatchNs.get());
+    }
+
+    /**
+     * Reset all counters
+     */
+    public static void reset() {
+        sReads.set(0);
+        sReadWaitNs.set(0);
+        sWrites.set(0);
+        sWriteWaitNs.set(0);
+        sContended.set(0);
+        sBusy.set(0);
+        sBatchRows.set(0);
+        sBatchNs.set(0);
+    }
+
+    /**
+     * Get a summary of the counters
+     * @return  summary string
+     */
+    public static String getSummary() {
+        return String.format(Locale.US,
+                "reads=%d (wait %dms), writes=%d (wait %dms), contended=%d, busy=%d, batch rows=%d (%d rows/s)",
+                getReads(), getReadWaitMs(), getWrites(), getWriteWaitMs(), getContended(), getBusy(),
+                getBatchRows(), getBatchRowsPerSecond());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import timber.log.Timber;
+
+/**
+ * A database schema migration step, from one version to the next.<br>
+ * Steps are run in order by {@link #migrate(SQLiteDatabase, DbMigration[], int, int, DbMigration)},
+ * each in its own transaction, so the existing data is carried forward rather than the database being
+ * recreated.
+ */
+@SuppressWarnings("unused")
+public abstract class DbMigration {
+
+    private final int mFromVersion;
+    private final boolean mRebuild;
+
+    /**
+     * Constructor
+     * @param fromVersion   Version this step migrates from
+     * @param rebuild       Derived tables need to be repopulated from the recipes after this step
+     */
+    public DbMigration(int fromVersion, boolean rebuild) {
+        mFromVersion = fromVersion;
+        mRebuild = rebuild;
+    }
+
+    /**
+     * Constructor
+     * @param fromVersion   Version this step migrates from
+     */
+    public DbMigration(int fromVersion) {
+        this(fromVersion, false);
+    }
+
+    /**
+     * Apply this step
+     * @param sqLiteDatabase    Db reference
+     * @throws SQLException if the step fails
+     */
+    public abstract void migrate(SQLiteDatabase sqLiteDatabase) throws SQLException;
+
+    public int getFromVersion() {
+        return mFromVersion;
+    }
+
+    public int getToVersion() {
+        return mFromVersion + 1;
+    }
+
+    /**
+     * Get a description of this step for logging
+     * @return  description
+     */
+    public String getDescription() {
+        return "version " + mFromVersion + " to " + getToVersion();
+    }
+
+    /**
+     * Check if the derived tables need to be repopulated after this step
+     * @return  <code>true</code> if repopulation required
+     */
+    public boolean isRebuildRequired() {
+        return mRebuild;
+    }
+
+    /**
+     * Find the step from a version
+     * @param migrations    Available steps
+     * @param version       Version to migrate from
+     * @return  Step or <code>null</code> if none available
+     */
+    private static DbMigration find(@NonNull DbMigration[] migrations, int version) {
+        DbMigration step = null;
+        for (int i = 0; (step == null) && (i < migrations.length); ++i) {
+            if (migrations[i].getFromVersion() == version) {
+                step = migrations[i];
+            }
+        }
+        return step;
+    }
+
+    /**
+     * Check if there is a sequence of steps between two versions
+     * @param migrations    Available steps
+     * @param fromVersion   Version to migrate from
+     * @param toVersion     Version to migrate to
+     * @return  <code>true</code> if a migration path is available
+     */
+    public static boolean hasPath(@NonNull DbMigration[] migrations, int fromVersion, int toVersion) {
+        int version = fromVersion;
+        while ((version < toVersion) && (find(migrations, version) != null)) {
+            ++version;
+        }
+        return (version == toVersion);
+    }
+
+    /**
+     * Run the sequence of steps between two versions, each in its own transaction.<br>
+     * <b>Note:</b> when called from {@link android.database.sqlite.SQLiteOpenHelper#onUpgrade(SQLiteDatabase, int, int)}
+     * the step transactions are nested in the upgrade transaction, so a failed step results in the
+     * whole upgrade being rolled back.
+     * @param sqLiteDatabase    Db reference
+     * @param migrations        Available steps
+     * @param fromVersion       Version to migrate from
+     * @param toVersion         Version to migrate to
+     * @param rebuild           Step to repopulate the derived tables, run once after all other steps if required
+     * @return  version migrated to
+     */
+    public static int migrate(@NonNull SQLiteDatabase sqLiteDatabase, @NonNull DbMigration[] migrations,
+                              int fromVersion, int toVersion, @NonNull DbMigration rebuild) {
+        int version = fromVersion;
+        boolean rebuildRequired = false;
+        boolean failed = false;
+        while (!failed && (version < toVersion)) {
+            DbMigration step = find(migrations, version);
+            if ((step != null) && step.run(sqLiteDatabase)) {
+                rebuildRequired |= step.isRebuildRequired();
+                version = step.getToVersion();
+            } else {
+                failed = true;
+            }
+        }
+        if (!failed && rebuildRequired && !rebuild.run(sqLiteDatabase)) {
+            version = fromVersion;
+        }
+        return version;
+    }
+
+    /**
+     * Run this step in a transaction
+     * @param sqLiteDatabase    Db reference
+     * @return  <code>true</code> if successful
+     */
+    private boolean run(SQLiteDatabase sqLiteDatabase) {
+        boolean success = false;
+        long start = System.nanoTime();
+        sqLiteDatabase.beginTransaction();
+        try {
+            migrate(sqLiteDatabase);
+            sqLiteDatabase.setTransactionSuccessful();
+            success = true;
+        } catch (SQLException e) {
+            Timber.e("Unable to migrate " + getDescription(), e);
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+        if (success) {
+            Timber.i("Migrated " + getDescription() + " in " +
+                    ((System.nanoTime() - start) / 1000000) + "ms");
+        }
+        return success;
+    }
+}
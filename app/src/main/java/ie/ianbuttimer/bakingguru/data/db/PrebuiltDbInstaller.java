@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.channels.FileChannel;
+
+import ie.ianbuttimer.bakingguru.utils.DbUtils;
+import timber.log.Timber;
+
+/**
+ * Class to install a prebuilt database from the apk assets, before the database is first opened.<br>
+ * The asset is generated at build time by the <code>generatePrebuiltDb</code> gradle task. If it is
+ * not available the database is created as normal, and may be populated by a
+ * {@link BakingDbHelper.Callbacks} implementation.
+ */
+@SuppressWarnings("unused")
+public class PrebuiltDbInstaller {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private WeakReference<Context> mContext;
+    private String mAsset;      // asset path of the prebuilt db
+    private boolean mChecked;   // install has been attempted
+
+    /**
+     * Constructor
+     * @param context   The current context
+     * @param asset     Asset path of the prebuilt db
+     */
+    public PrebuiltDbInstaller(@NonNull Context context, @NonNull String asset) {
+        mContext = new WeakReference<>(context);
+        mAsset = asset;
+        mChecked = false;
+    }
+
+    /**
+     * Install the prebuilt database, if the database does not already exist
+     * @param name  Name of database file
+     * @return  <code>true</code> if the prebuilt database was installed
+     */
+    public synchronized boolean install(@NonNull String name) {
+        boolean installed = false;
+        Context context = mContext.get();
+        if (!mChecked && (context != null)) {
+            mChecked = true;
+
+            File dbFile = context.getDatabasePath(name);
+            if (!dbFile.exists()) {
+                long start = System.nanoTime();
+                installed = copyAsset(context, dbFile);
+                if (installed) {
+                    installed = touchTimestamps(dbFile);
+                }
+                if (installed) {
+                    Timber.i("Installed prebuilt db in " + ((System.nanoTime() - start) / 1000000) + "ms");
+                } else {
+                    context.deleteDatabase(name);   // leave it to be created as normal
+                }
+            }
+        }
+        return installed;
+    }
+
+    /**
+     * Copy the prebuilt database asset to the database path, via a temporary file so a partial copy
+     * is never opened
+     * @param context   The current context
+     * @param dbFile    Database file
+     * @return  <code>true</code> if copied
+     */
+    private boolean copyAsset(Context context, File dbFile) {
+        boolean copied = false;
+        File dir = dbFile.getParentFile();
+        File tmpFile = new File(dir, dbFile.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+            out = new FileOutputStream(tmpFile);
+            if (!copyMapped(context, out)) {
+                // asset is compressed so can't be opened as a file descriptor, fallback to stream
+                copyStream(context, out);
+            }
+            out.getFD().sync();
+            close(out);
+            out = null;
+
+            // remove any stale write-ahead log from a previous install
+            new File(dir, dbFile.getName() + "-wal").delete();
+            new File(dir, dbFile.getName() + "-shm").delete();
+            copied = tmpFile.renameTo(dbFile);
+        } catch (FileNotFoundException e) {
+            Timber.i("Prebuilt db unavailable: " + mAsset);
+        } catch (IOException e) {
+            Timber.e("Unable to install prebuilt db", e);
+        } finally {
+            close(out);
+            if (!copied) {
+                tmpFile.delete();
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Copy the asset using a channel transfer from its file descriptor
+     * @param context   The current context
+     * @param out       Stream to copy to
+     * @return  <code>true</code> if copied, or <code>false</code> if the asset can't be opened as a
+     *          file descriptor, e.g. it is a compressed asset
+     * @throws IOException
+     */
+    private boolean copyMapped(Context context, FileOutputStream out) throws IOException {
+        boolean copied = false;
+        AssetFileDescriptor afd;
+        try {
+            afd = context.getAssets().openFd(mAsset);
+        } catch (FileNotFoundException e) {
+            afd = null;     // compressed assets can't be opened as a file descriptor
+        }
+        if (afd != null) {
+            FileInputStream stream = null;
+            try {
+                stream = afd.createInputStream();
+                FileChannel in = stream.getChannel();
+                FileChannel channel = out.getChannel();
+                long length = afd.getDeclaredLength();
+                long position = 0;
+                while (position < length) {
+                    long transferred = in.transferTo(afd.getStartOffset() + position, length - position, channel);
+                    if (transferred <= 0) {
+                        // asset shorter than declared, or the channel can't be read
+                        throw new IOException("Prebuilt db copy stalled at " + position + " of " + length + " bytes");
+                    }
+                    position += transferred;
+                }
+                copied = true;
+            } finally {
+                close(stream);
+                afd.close();
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Copy the asset using a buffered stream copy
+     * @param context   The current context
+     * @param out       Stream to copy to
+     * @throws IOException
+     */
+    private void copyStream(Context context, OutputStream out) throws IOException {
+        InputStream in = null;
+        try {
+            in = context.getAssets().open(mAsset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Set the saved and accessed timestamps of the prebuilt recipes to now, so they are not immediately
+     * purged as expired or evicted as least recently opened
+     * @param dbFile    Database file
+     * @return  <code>true</code> if successful
+     */
+    static boolean touchTimestamps(File dbFile) {
+        boolean touched = false;
+        SQLiteDatabase db = null;
+        try {
+            db = SQLiteDatabase.openDatabase(dbFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            long now = DbUtils.getTimestamp();
+            ContentValues cv = new ContentValues();
+            cv.put(BakingContract.RecipeEntry.COLUMN_TIMESTAMP, now);
+            cv.put(BakingContract.RecipeEntry.COLUMN_ACCESSED, now);
+            db.update(BakingContract.RecipeEntry.TABLE_NAME, cv, null, null);
+            touched = true;
+        } catch (SQLException e) {
+            Timber.e("Unable to update prebuilt db", e);
+        } finally {
+            if (db != null) {
+                db.close();
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Close a closeable
+     * @param closeable Object to close
+     */
+    private void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Timber.e("Unable to close", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ie.ianbuttimer.bakingguru.R;
+import timber.log.Timber;
+
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.columnInSelection;
+
+/**
+ * Size-based eviction for the recipe store.<br>
+ * When the total encoded size of the recipes exceeds the byte budget, the least recently accessed
+ * recipes are deleted until it is within budget, and the freed pages are returned to the file
+ * system with an incremental vacuum. A db created before incremental vacuum mode was used is
+ * converted by its first eviction, so the full vacuum this needs runs in the background job rather
+ * than when the db is opened. Eviction is run in the content provider, see
+ * {@link BakingContract.RecipeEntry#EVICT}, and the counters are cumulative until {@link #reset()}.
+ */
+@SuppressWarnings("unused")
+public final class RecipeEvictor {
+
+    /** Name for the db size, in bytes, in the result bundle */
+    public static final String RESULT_DB_SIZE = "db_size";
+    /** Name for the number of recipes evicted in the result bundle */
+    public static final String RESULT_EVICTED = "evicted";
+    /** Name for the number of bytes evicted in the result bundle */
+    public static final String RESULT_EVICTED_BYTES = "evicted_bytes";
+    /** Name for the eviction time, in msec, in the result bundle */
+    public static final String RESULT_ELAPSED_MS = "elapsed_ms";
+
+    /** Maximum number of rows deleted per transaction */
+    private static final int EVICT_BATCH_SIZE = 200;
+    /** Maximum number of free pages returned to the file system per eviction */
+    private static final int VACUUM_PAGES = 512;
+    /** Value of the auto_vacuum pragma for incremental vacuum mode */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String SQL_TOTAL_SIZE = "SELECT TOTAL(" + BakingContract.RecipeEntry.COLUMN_SIZE +
+            ") FROM " + BakingContract.RecipeEntry.TABLE_NAME;
+
+    private static final AtomicLong sRuns = new AtomicLong();         // evictions run
+    private static final AtomicLong sEvicted = new AtomicLong();      // recipes evicted
+    private static final AtomicLong sEvictedBytes = new AtomicLong(); // bytes of recipe data evicted
+    private static final AtomicLong sVacuumed = new AtomicLong();     // pages returned to the file system
+    private static final AtomicLong sTotalNs = new AtomicLong();      // total eviction time
+    private static final AtomicLong sMaxNs = new AtomicLong();        // longest eviction time
+    private static final AtomicLong sDbSize = new AtomicLong();       // db size after the last eviction
+
+    /**
+     * Private constructor
+     */
+    private RecipeEvictor() {
+        // can't instantiate class
+    }
+
+    /**
+     * Get the recipe store byte budget
+     * @param context   The current context
+     * @return  budget in bytes
+     */
+    public static long getBudget(@NonNull Context context) {
+        return context.getResources().getInteger(R.integer.recipe_store_budget_kb) * 1024L;
+    }
+
+    /**
+     * Request an eviction from the content provider. Must not be called on the main thread.
+     * @param context   The current context
+     * @return  Result bundle, or <code>null</code> if the request failed
+     */
+    @Nullable
+    public static Bundle request(@NonNull Context context) {
+        Bundle result = context.getContentResolver().call(BakingContract.RecipeEntry.CONTENT_URI,
+                BakingContract.RecipeEntry.EVICT, String.valueOf(getBudget(context)), null);
+        Timber.d("Recipe eviction: " + getSummary());
+        return result;
+    }
+
+    /**
+     * Evict the least recently accessed recipes until the recipes are within the byte budget, then
+     * vacuum the freed pages
+     * @param db            Database to evict from
+     * @param budgetBytes   Byte budget for recipe data
+     * @return  Result bundle
+     */
+    public static Bundle evict(@NonNull SQLiteDatabase db, long budgetBytes) {
+        long start = System.nanoTime();
+        int evicted = 0;
+        long evictedBytes = 0;
+
+        enableIncrementalVacuum(db);
+
+        long total = (long) DatabaseUtils.doubleForQuery(db, SQL_TOTAL_SIZE, null);
+        if (total > budgetBytes) {
+            // select the least recently accessed recipes which take the total over budget
+            List<String> ids = new ArrayList<>();
+            long selectedBytes = 0;
+            Cursor cursor = db.query(BakingContract.RecipeEntry.TABLE_NAME, new String[] {
+                    BakingContract.RecipeEntry._ID,
+                    BakingContract.RecipeEntry.COLUMN_SIZE
+                }, null, null, null, null, BakingContract.RecipeEntry.COLUMN_ACCESSED);
+            try {
+                while ((total - selectedBytes > budgetBytes) && cursor.moveToNext()) {
+                    ids.add(cursor.getString(0));
+                    selectedBytes += cursor.getLong(1);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            /* delete in bounded batches, each in its own transaction so the write lock is released between them.
+               the candidates may have been rewritten or deleted since they were selected, so the total and
+               the size of each batch are read again in the transaction which deletes it */
+            boolean withinBudget = false;
+            for (int i = 0; (i < ids.size()) && !withinBudget; i += EVICT_BATCH_SIZE) {
+                List<String> batch = ids.subList(i, Math.min(i + EVICT_BATCH_SIZE, ids.size()));
+                String selection = columnInSelection(BakingContract.RecipeEntry._ID, batch.size());
+                String[] selectionArgs = batch.toArray(new String[batch.size()]);
+                DbDiagnostics.beginTransaction(db);
+                try {
+                    total = (long) DatabaseUtils.doubleForQuery(db, SQL_TOTAL_SIZE, null);
+                    withinBudget = (total <= budgetBytes);
+                    if (!withinBudget) {
+                        long batchBytes = (long) DatabaseUtils.doubleForQuery(db,
+                                "SELECT TOTAL(" + BakingContract.RecipeEntry.COLUMN_SIZE + ") FROM " +
+                                        BakingContract.RecipeEntry.TABLE_NAME + " WHERE " + selection, selectionArgs);
+                        evicted += db.delete(BakingContract.RecipeEntry.TABLE_NAME, selection, selectionArgs);
+                        evictedBytes += batchBytes;
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        }
+
+        long vacuumed = vacuum(db);
+        long dbSize = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) *
+                DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        long elapsed = System.nanoTime() - start;
+
+        record(evicted, evictedBytes, vacuumed, dbSize, elapsed);
+        if (evicted > 0) {
+            Timber.i("Evicted " + evicted + " recipe(s), " + evictedBytes + " bytes, from db");
+        }
+
+        Bundle result = new Bundle();
+        result.putLong(RESULT_DB_SIZE, dbSize);
+        result.putInt(RESULT_EVICTED, evicted);
+        result.putLong(RESULT_EVICTED_BYTES, evictedBytes);
+        result.putLong(RESULT_ELAPSED_MS, elapsed / 1000000);
+        return result;
+    }
+
+    /**
+     * Put the db in incremental vacuum mode, if not already, so the space freed by evictions can be
+     * returned to the file system a few pages at a time.<br>
+     * The android_metadata table already exists when the db is opened, so changing the mode requires
+     * a one-off full vacuum, which can't run in a transaction.
+     * @param db    Database to convert
+     * @return  <code>true</code> if the db is in incremental vacuum mode
+     */
+    public static boolean enableIncrementalVacuum(@NonNull SQLiteDatabase db) {
+        boolean enabled = false;
+        try {
+            enabled = (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) == AUTO_VACUUM_INCREMENTAL);
+            if (!enabled) {
+                long start = System.nanoTime();
+                // setting the pragma returns no result, so can be run as a statement
+                db.execSQL("PRAGMA auto_vacuum=INCREMENTAL");
+                db.execSQL("VACUUM");
+                enabled = true;
+                Timber.i("Enabled incremental vacuum in " + ((System.nanoTime() - start) / 1000000) + "ms");
+            }
+        } catch (SQLException e) {
+            Timber.e("Unable to enable incremental vacuum", e);
+        }
+        return enabled;
+    }
+
+    /**
+     * Return a bounded number of free pages to the file system
+     * @param db    Database to vacuum
+     * @return  number of pages freed
+     */
+    private static long vacuum(SQLiteDatabase db) {
+        long freed = 0;
+        try {
+            long before = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+            if (before > 0) {
+                // pragma is stepped by the query, one page per step
+                Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_PAGES + ")", null);
+                try {
+                    cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+                freed = before - DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+            }
+        } catch (SQLException e) {
+            Timber.e("Unable to vacuum db", e);
+        }
+        return freed;
+    }
+
+    /**
+     * Record an eviction
+     * @param evicted       Number of recipes evicted
+     * @param evictedBytes  Bytes of recipe data evicted
+     * @param vacuumed      Number of pages vacuumed
+     * @param dbSize        Db size after eviction
+     * @param elapsedNs     Eviction time
+     */
+    private static void record(int evicted, long evictedBytes, long vacuumed, long dbSize, long elapsedNs) {
+        sRuns.incrementAndGet();
+        sEvicted.addAndGet(evicted);
+        sEvictedBytes.addAndGet(evictedBytes);
+        sVacuumed.addAndGet(vacuumed);
+        sTotalNs.addAndGet(elapsedNs);
+        sDbSize.set(dbSize);
+        long max;
+        do {
+            max = sMaxNs.get();
+        } while ((elapsedNs > max) && !sMaxNs.compareAndSet(max, elapsedNs));
+    }
+
+    public static long getRuns() {
+        return sRuns.get();
+    }
+
+    public static long getEvicted() {
+        return sEvicted.get();
+    }
+
+    public static long getEvictedBytes() {
+        return sEvictedBytes.get();
+    }
+
+    public static long getVacuumed() {
+        return sVacuumed.get();
+    }
+
+    public static long getDbSize() {
+        return sDbSize.get();
+    }
+
+    /**
+     * Get the average eviction time
+     * @return  average time in msec
+     */
+    public static double getAverageMs() {
+        long runs = getRuns();
+        return (runs == 0 ? 0 : (sTotalNs.get() / 1e6) / runs);
+    }
+
+    /**
+     * Get the longest eviction time
+     * @return  longest time in msec
+     */
+    public static double getMaxMs() {
+        return sMaxNs.get() / 1e6;
+    }
+
+    /**
+     * Reset all counters
+     */
+    public static void reset() {
+        sRuns.set(0);
+        sEvicted.set(0);
+        sEvictedBytes.set(0);
+        sVacuumed.set(0);
+        sTotalNs.set(0);
+        sMaxNs.set(0);
+        sDbSize.set(0);
+    }
+
+    /**
+     * Get a summary of the counters
+     * @return  summary string
+     */
+    public static String getSummary() {
+        return String.format(Locale.US,
+                "db size=%d bytes, runs=%d, evicted=%d (%d bytes), vacuumed pages=%d, avg=%.1fms, max=%.1fms",
+                getDbSize(), getRuns(), getEvicted(), getEvictedBytes(), getVacuumed(), getAverageMs(), getMaxMs());
+    }
+}
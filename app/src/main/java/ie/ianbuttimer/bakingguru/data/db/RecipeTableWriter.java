@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import ie.ianbuttimer.bakingguru.bake.Ingredient;
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.RecipeCodec;
+import ie.ianbuttimer.bakingguru.bake.Step;
+import timber.log.Timber;
+
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RECIPE_ID_EQ_SELECTION;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.columnEqSelection;
+
+/**
+ * Class to write recipe rows along with their normalised ingredient & step rows and search index
+ * entry.<br>
+ * Each statement is compiled once, on first use, and reused for all subsequent rows, so a single
+ * writer should be used for a batch of recipes and then closed.<br>
+ * Methods do not manage transactions, callers are expected to wrap calls in a transaction so the
+ * recipe and its child rows are committed together.
+ */
+@SuppressWarnings("unused")
+public class RecipeTableWriter implements Closeable {
+
+    private static final String DOCID_EQ_SELECTION = columnEqSelection(BakingContract.SearchEntry.COLUMN_DOCID);
+
+    /* the recipes table replaces on a primary key conflict, so an insert is an upsert;
+       the last access time of an existing row is kept so a refresh doesn't make it recently used */
+    private static final String SQL_UPSERT_RECIPE =
+        "INSERT OR REPLACE INTO " + BakingContract.RecipeEntry.TABLE_NAME + " (" +
+            BakingContract.RecipeEntry._ID + ", " +
+            BakingContract.RecipeEntry.COLUMN_DATA + ", " +
+            BakingContract.RecipeEntry.COLUMN_HASH + ", " +
+            BakingContract.RecipeEntry.COLUMN_TIMESTAMP + ", " +
+            BakingContract.RecipeEntry.COLUMN_SIZE + ", " +
+            BakingContract.RecipeEntry.COLUMN_ACCESSED +
+        ") VALUES (?1, ?2, ?3, COALESCE(?4, " + BakingContract.SQL_NOW_TIMESTAMP + "), length(?2), " +
+            "COALESCE((SELECT " + BakingContract.RecipeEntry.COLUMN_ACCESSED +
+                " FROM " + BakingContract.RecipeEntry.TABLE_NAME +
+                " WHERE " + BakingContract.RecipeEntry._ID + "=?1), " + BakingContract.SQL_NOW_TIMESTAMP + "))";
+
+    private static final String SQL_INSERT_INGREDIENT =
+        "INSERT INTO " + BakingContract.IngredientEntry.TABLE_NAME + " (" +
+            BakingContract.IngredientEntry.COLUMN_RECIPE_ID + ", " +
+            BakingContract.IngredientEntry.COLUMN_INDEX + ", " +
+            BakingContract.IngredientEntry.COLUMN_QUANTITY + ", " +
+            BakingContract.IngredientEntry.COLUMN_MEASURE + ", " +
+            BakingContract.IngredientEntry.COLUMN_INGREDIENT +
+        ") VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_STEP =
+        "INSERT INTO " + BakingContract.StepEntry.TABLE_NAME + " (" +
+            BakingContract.StepEntry.COLUMN_RECIPE_ID + ", " +
+            BakingContract.StepEntry.COLUMN_INDEX + ", " +
+            BakingContract.StepEntry.COLUMN_STEP_ID + ", " +
+            BakingContract.StepEntry.COLUMN_SHORT_DESCRIPTION + ", " +
+            BakingContract.StepEntry.COLUMN_DESCRIPTION + ", " +
+            BakingContract.StepEntry.COLUMN_VIDEO_URL + ", " +
+            BakingContract.StepEntry.COLUMN_THUMBNAIL_URL +
+        ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_SEARCH =
+        "INSERT INTO " + BakingContract.SearchEntry.TABLE_NAME + " (" +
+            BakingContract.SearchEntry.COLUMN_DOCID + ", " +
+            BakingContract.SearchEntry.COLUMN_NAME + ", " +
+            BakingContract.SearchEntry.COLUMN_INGREDIENTS + ", " +
+            BakingContract.SearchEntry.COLUMN_STEPS +
+        ") VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_DELETE_INGREDIENTS =
+        "DELETE FROM " + BakingContract.IngredientEntry.TABLE_NAME + " WHERE " + RECIPE_ID_EQ_SELECTION;
+    private static final String SQL_DELETE_STEPS =
+        "DELETE FROM " + BakingContract.StepEntry.TABLE_NAME + " WHERE " + RECIPE_ID_EQ_SELECTION;
+    private static final String SQL_DELETE_SEARCH =
+        "DELETE FROM " + BakingContract.SearchEntry.TABLE_NAME + " WHERE " + DOCID_EQ_SELECTION;
+
+    private SQLiteDatabase mDb;
+    private SQLiteStatement mUpsertRecipe;
+    private SQLiteStatement mInsertIngredient;
+    private SQLiteStatement mInsertStep;
+    private SQLiteStatement mInsertSearch;
+    private SQLiteStatement mDeleteIngredients;
+    private SQLiteStatement mDeleteSteps;
+    private SQLiteStatement mDeleteSearch;
+
+    /**
+     * Constructor
+     * @param db    Database to write to
+     */
+    public RecipeTableWriter(@NonNull SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Insert or replace a recipe row and its ingredient & step rows
+     * @param values    Recipe row values
+     * @param recipe    Recipe represented by <code>values</code>, or <code>null</code> to decode it from
+     *                  the values' binary data
+     * @return  the row id of the recipe
+     */
+    public long upsert(@NonNull ContentValues values, @Nullable Recipe recipe) {
+        byte[] data = values.getAsByteArray(BakingContract.RecipeEntry.COLUMN_DATA);
+        if (data == null) {
+            // same as insertOrThrow, data is a not null column
+            throw new SQLException("No recipe data");
+        }
+        if (mUpsertRecipe == null) {
+            mUpsertRecipe = mDb.compileStatement(SQL_UPSERT_RECIPE);
+        }
+        mUpsertRecipe.clearBindings();
+        Long id = values.getAsLong(BakingContract.RecipeEntry._ID);
+        if (id != null) {
+            mUpsertRecipe.bindLong(1, id);
+        }
+        mUpsertRecipe.bindBlob(2, data);
+        Long hash = values.getAsLong(BakingContract.RecipeEntry.COLUMN_HASH);
+        mUpsertRecipe.bindLong(3, (hash != null ? hash : RecipeCodec.hash(data)));
+        Long timestamp = values.getAsLong(BakingContract.RecipeEntry.COLUMN_TIMESTAMP);
+        if (timestamp != null) {
+            mUpsertRecipe.bindLong(4, timestamp);
+        }
+
+        long rowId = mUpsertRecipe.executeInsert();
+
+        if (recipe == null) {
+            recipe = decode(data);
+        }
+        writeChildren(rowId, recipe);
+        return rowId;
+    }
+
+    /**
+     * Replace the ingredient & step rows, and search index entry, for a recipe
+     * @param recipeId  Id of recipe
+     * @param recipe    Recipe to get rows from, or <code>null</code> to just delete existing rows
+     */
+    public void writeChildren(long recipeId, @Nullable Recipe recipe) {
+        deleteChildren(recipeId);
+
+        if (recipe != null) {
+            Ingredient[] ingredients = recipe.getIngredients();
+            if (ingredients != null) {
+                if (mInsertIngredient == null) {
+                    mInsertIngredient = mDb.compileStatement(SQL_INSERT_INGREDIENT);
+                }
+                for (int i = 0; i < ingredients.length; i++) {
+                    mInsertIngredient.clearBindings();
+                    mInsertIngredient.bindLong(1, recipeId);
+                    mInsertIngredient.bindLong(2, i);
+                    mInsertIngredient.bindDouble(3, ingredients[i].getQuantity());
+                    bindString(mInsertIngredient, 4, ingredients[i].getMeasure());
+                    bindString(mInsertIngredient, 5, ingredients[i].getIngredient());
+                    mInsertIngredient.executeInsert();
+                }
+            }
+            Step[] steps = recipe.getSteps();
+            if (steps != null) {
+                if (mInsertStep == null) {
+                    mInsertStep = mDb.compileStatement(SQL_INSERT_STEP);
+                }
+                for (int i = 0; i < steps.length; i++) {
+                    mInsertStep.clearBindings();
+                    mInsertStep.bindLong(1, recipeId);
+                    mInsertStep.bindLong(2, i);
+                    mInsertStep.bindLong(3, steps[i].getId());
+                    bindString(mInsertStep, 4, steps[i].getShortDescription());
+                    bindString(mInsertStep, 5, steps[i].getDescription());
+                    bindString(mInsertStep, 6, steps[i].getVideoURL());
+                    bindString(mInsertStep, 7, steps[i].getThumbnailURL());
+                    mInsertStep.executeInsert();
+                }
+            }
+            writeSearchIndex(recipeId, recipe);
+        }
+    }
+
+    /**
+     * Write the search index entry for a recipe
+     * @param recipeId  Id of recipe
+     * @param recipe    Recipe to index
+     */
+    private void writeSearchIndex(long recipeId, Recipe recipe) {
+        StringBuilder ingredients = new StringBuilder();
+        if (recipe.getIngredients() != null) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                appendLine(ingredients, ingredient.getIngredient());
+            }
+        }
+        StringBuilder steps = new StringBuilder();
+        if (recipe.getSteps() != null) {
+            for (Step step : recipe.getSteps()) {
+                appendLine(steps, step.getShortDescription());
+                appendLine(steps, step.getDescription());
+            }
+        }
+        if (mInsertSearch == null) {
+            mInsertSearch = mDb.compileStatement(SQL_INSERT_SEARCH);
+        }
+        mInsertSearch.clearBindings();
+        mInsertSearch.bindLong(1, recipeId);
+        bindString(mInsertSearch, 2, recipe.getName());
+        mInsertSearch.bindString(3, ingredients.toString());
+        mInsertSearch.bindString(4, steps.toString());
+        mInsertSearch.executeInsert();
+    }
+
+    /**
+     * Delete the ingredient & step rows, and search index entry, for a recipe
+     * @param recipeId  Id of recipe
+     */
+    public void deleteChildren(long recipeId) {
+        if (mDeleteIngredients == null) {
+            mDeleteIngredients = mDb.compileStatement(SQL_DELETE_INGREDIENTS);
+            mDeleteSteps = mDb.compileStatement(SQL_DELETE_STEPS);
+            mDeleteSearch = mDb.compileStatement(SQL_DELETE_SEARCH);
+        }
+        for (SQLiteStatement statement : new SQLiteStatement[] {
+                mDeleteIngredients, mDeleteSteps, mDeleteSearch
+        }) {
+            statement.bindLong(1, recipeId);
+            statement.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * Release the compiled statements
+     */
+    @Override
+    public void close() {
+        for (SQLiteStatement statement : new SQLiteStatement[] {
+                mUpsertRecipe, mInsertIngredient, mInsertStep, mInsertSearch,
+                mDeleteIngredients, mDeleteSteps, mDeleteSearch
+        }) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+        mUpsertRecipe = null;
+        mInsertIngredient = null;
+        mInsertStep = null;
+        mInsertSearch = null;
+        mDeleteIngredients = null;
+        mDeleteSteps = null;
+        mDeleteSearch = null;
+    }
+
+    /**
+     * Insert or replace a single recipe row and its ingredient & step rows
+     * @param db        Database to insert into
+     * @param values    Recipe row values
+     * @param recipe    Recipe represented by <code>values</code>, or <code>null</code> to decode it from
+     *                  the values' binary data
+     * @return  the row id of the recipe
+     */
+    public static long insertRecipe(@NonNull SQLiteDatabase db, @NonNull ContentValues values, @Nullable Recipe recipe) {
+        RecipeTableWriter writer = new RecipeTableWriter(db);
+        try {
+            return writer.upsert(values, recipe);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Insert or replace a single recipe row and its ingredient & step rows
+     * @param db        Database to insert into
+     * @param values    Recipe row values
+     * @return  the row id of the recipe
+     */
+    public static long insertRecipe(@NonNull SQLiteDatabase db, @NonNull ContentValues values) {
+        return insertRecipe(db, values, null);
+    }
+
+    /**
+     * Rewrite the ingredient & step rows, and search index entries, for the recipes matching a
+     * selection from their binary data
+     * @param db            Database to write to
+     * @param selection     Recipe selection, or <code>null</code> for all recipes
+     * @param selectionArgs Selection arguments
+     * @return  number of recipes processed
+     */
+    public static int rewriteChildren(@NonNull SQLiteDatabase db, @Nullable String selection, @Nullable String[] selectionArgs) {
+        int count = 0;
+        Cursor cursor = db.query(BakingContract.RecipeEntry.TABLE_NAME, new String[] {
+                    BakingContract.RecipeEntry._ID,
+                    BakingContract.RecipeEntry.COLUMN_DATA
+                }, selection, selectionArgs, null, null, null);
+        if (cursor != null) {
+            RecipeTableWriter writer = new RecipeTableWriter(db);
+            try {
+                int idIndex = cursor.getColumnIndex(BakingContract.RecipeEntry._ID);
+                int dataIndex = cursor.getColumnIndex(BakingContract.RecipeEntry.COLUMN_DATA);
+                while (cursor.moveToNext()) {
+                    writer.writeChildren(cursor.getLong(idIndex), decode(cursor.getBlob(dataIndex)));
+                    ++count;
+                }
+            } finally {
+                writer.close();
+                cursor.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Bind a string, or null, to a statement
+     * @param statement Statement to bind to
+     * @param index     1-based index of parameter
+     * @param value     Value to bind
+     */
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Append a line of text to a builder
+     * @param builder   Builder to append to
+     * @param text      Text to append, ignored if empty
+     */
+    private static void appendLine(StringBuilder builder, String text) {
+        if (!TextUtils.isEmpty(text)) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(text);
+        }
+    }
+
+    /**
+     * Decode a recipe from its binary data
+     * @param data  Binary data
+     * @return  Recipe or <code>null</code> if unable to decode
+     */
+    private static Recipe decode(byte[] data) {
+        Recipe recipe = null;
+        if (data != null) {
+            try {
+                recipe = RecipeCodec.decode(data);
+            } catch (IOException e) {
+                Timber.e("Unable to decode recipe", e);
+            }
+        }
+        return recipe;
+    }
+}
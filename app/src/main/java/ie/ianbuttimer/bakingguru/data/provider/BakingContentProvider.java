@@ -18,17 +18,25 @@
 package ie.ianbuttimer.bakingguru.data.provider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabaseLockedException;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 
 import org.parceler.Parcels;
@@ -36,14 +44,24 @@ import org.parceler.Parcels;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import ie.ianbuttimer.bakingguru.R;
+import ie.ianbuttimer.bakingguru.bake.RecipeCodec;
 import ie.ianbuttimer.bakingguru.data.AbstractResultWrapper;
 import ie.ianbuttimer.bakingguru.data.ICallback;
 import ie.ianbuttimer.bakingguru.data.db.AbstractBakingDbPopulater;
 import ie.ianbuttimer.bakingguru.data.db.BakingContract;
 import ie.ianbuttimer.bakingguru.data.db.BakingDbAssetPopulater;
+import ie.ianbuttimer.bakingguru.data.db.BakingContract.SearchEntry;
 import ie.ianbuttimer.bakingguru.data.db.BakingDbHelper;
+import ie.ianbuttimer.bakingguru.data.db.DbDiagnostics;
+import ie.ianbuttimer.bakingguru.data.db.PrebuiltDbInstaller;
+import ie.ianbuttimer.bakingguru.data.db.RecipeEvictor;
+import ie.ianbuttimer.bakingguru.data.db.RecipeTableWriter;
 import ie.ianbuttimer.bakingguru.exception.HttpException;
 import ie.ianbuttimer.bakingguru.utils.ErrorTuple;
 import ie.ianbuttimer.bakingguru.network.NetworkUtils;
@@ -57,8 +75,18 @@ import static ie.ianbuttimer.bakingguru.data.ICallback.CONTENT_PROVIDER_RESULT_T
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.AUTHORITY;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.BASE_CONTENT_URI;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.ID_EQ_SELECTION;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.ID_GT_SELECTION;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.PATH_FEEDS;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.PATH_INGREDIENTS;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.PATH_RECIPES;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.PATH_SEARCH;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.PATH_STEPS;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.PATH_WITH_ID;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.QUERY_PARAM_AFTER_ID;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.QUERY_PARAM_LIMIT;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.QUERY_PARAM_NOTIFY;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RECIPE_ID_EQ_SELECTION;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.EVICT;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.REQUEST_URL;
 
 /**
@@ -71,6 +99,54 @@ public class BakingContentProvider extends ContentProvider {
     public static final int RECIPE_MATCH = 100;
     /** Individual Recipe match constant */
     public static final int RECIPE_WITH_ID_MATCH = RECIPE_MATCH + 1;
+    /** Individual Recipe ingredients match constant */
+    public static final int RECIPE_INGREDIENTS_MATCH = RECIPE_MATCH + 2;
+    /** Individual Recipe steps match constant */
+    public static final int RECIPE_STEPS_MATCH = RECIPE_MATCH + 3;
+    /** Recipe search match constant */
+    public static final int RECIPE_SEARCH_MATCH = RECIPE_MATCH + 4;
+    /** Ingredient match constant */
+    public static final int INGREDIENT_MATCH = 200;
+    /** Individual Ingredient match constant */
+    public static final int INGREDIENT_WITH_ID_MATCH = INGREDIENT_MATCH + 1;
+    /** Step match constant */
+    public static final int STEP_MATCH = 300;
+    /** Individual Step match constant */
+    public static final int STEP_WITH_ID_MATCH = STEP_MATCH + 1;
+    /** Match id for the feeds table */
+    public static final int FEED_MATCH = 400;
+
+    /** Index of the recipe id in a recipe ingredients/steps uri path */
+    private static final int RECIPE_ID_SEGMENT = 1;
+
+    /** Recipe search result columns */
+    private static final String[] SEARCH_COLUMNS = new String[] {
+        BakingContract.RecipeEntry._ID,
+        BakingContract.RecipeEntry.COLUMN_DATA,
+        BakingContract.RecipeEntry.COLUMN_TIMESTAMP,
+        SearchEntry.COLUMN_SNIPPET
+    };
+
+    private static final String SEARCH_OFFSETS = "match_offsets";
+
+    /** Recipe search query, ranked by recipe name match and then by number of matching terms */
+    private static final String SEARCH_SQL =
+        "SELECT r." + BakingContract.RecipeEntry._ID + ", " +
+                "r." + BakingContract.RecipeEntry.COLUMN_DATA + ", " +
+                "r." + BakingContract.RecipeEntry.COLUMN_TIMESTAMP + ", " +
+                "s." + SearchEntry.COLUMN_SNIPPET +
+        " FROM (SELECT " + SearchEntry.COLUMN_DOCID + ", " +
+                "snippet(" + SearchEntry.TABLE_NAME + ", '<b>', '</b>', '\u2026', -1, 10) AS " + SearchEntry.COLUMN_SNIPPET + ", " +
+                "offsets(" + SearchEntry.TABLE_NAME + ") AS " + SEARCH_OFFSETS +
+            " FROM " + SearchEntry.TABLE_NAME +
+            " WHERE " + SearchEntry.TABLE_NAME + " MATCH ?) s" +
+        " JOIN " + BakingContract.RecipeEntry.TABLE_NAME + " r" +
+            " ON r." + BakingContract.RecipeEntry._ID + "=s." + SearchEntry.COLUMN_DOCID +
+        /* offsets are reported in column order, 4 values per match, so name (column 0) matches
+           start with '0 ' and the length of the list increases with the number of matches */
+        " ORDER BY (substr(s." + SEARCH_OFFSETS + ", 1, 2)='0 ') DESC, " +
+            "length(s." + SEARCH_OFFSETS + ") DESC, " +
+            "r." + BakingContract.RecipeEntry._ID;
 
     /** Movie content provider Uri matcher */
     public static final UriMatcher sUriMatcher = buildUriMatcher();
@@ -84,6 +160,14 @@ public class BakingContentProvider extends ContentProvider {
 
         matcher.addURI(AUTHORITY, PATH_RECIPES, RECIPE_MATCH);
         matcher.addURI(AUTHORITY, PATH_RECIPES + PATH_WITH_ID, RECIPE_WITH_ID_MATCH);
+        matcher.addURI(AUTHORITY, PATH_RECIPES + "/" + PATH_SEARCH, RECIPE_SEARCH_MATCH);
+        matcher.addURI(AUTHORITY, PATH_RECIPES + PATH_WITH_ID + "/" + PATH_INGREDIENTS, RECIPE_INGREDIENTS_MATCH);
+        matcher.addURI(AUTHORITY, PATH_RECIPES + PATH_WITH_ID + "/" + PATH_STEPS, RECIPE_STEPS_MATCH);
+        matcher.addURI(AUTHORITY, PATH_INGREDIENTS, INGREDIENT_MATCH);
+        matcher.addURI(AUTHORITY, PATH_INGREDIENTS + PATH_WITH_ID, INGREDIENT_WITH_ID_MATCH);
+        matcher.addURI(AUTHORITY, PATH_STEPS, STEP_MATCH);
+        matcher.addURI(AUTHORITY, PATH_STEPS + PATH_WITH_ID, STEP_WITH_ID_MATCH);
+        matcher.addURI(AUTHORITY, PATH_FEEDS, FEED_MATCH);
 
         return matcher;
     }
@@ -91,6 +175,9 @@ public class BakingContentProvider extends ContentProvider {
 
     private BakingDbHelper dbHelper; // database helper
 
+    /** Uris changed by the batch being applied on the current thread */
+    private final ThreadLocal<Set<Uri>> batchNotifications = new ThreadLocal<>();
+
 
     @Override
     public boolean onCreate() {
@@ -102,34 +189,84 @@ public class BakingContentProvider extends ContentProvider {
             populate = Utils.getManifestMetaDataBoolean(context, context.getString(R.string.prepopulate_db_key), false);
         }
         if (populate) {
+            // json asset populater is the fallback if there is no prebuilt db asset
             populater = new BakingDbAssetPopulater(context);
         }
 
         dbHelper = new BakingDbHelper(context, populater);
+        if (populate) {
+            // copy the prebuilt db into place when it is first opened, i.e. not on the main thread
+            dbHelper.setInstaller(new PrebuiltDbInstaller(context, context.getString(R.string.db_asset_file)));
+        }
         return true;
     }
 
+    /**
+     * Set the database helper, e.g. to use a test database rather than the app database
+     * @param helper    Database helper to use
+     */
+    @VisibleForTesting
+    void setDbHelper(@NonNull BakingDbHelper helper) {
+        dbHelper = helper;
+    }
+
     @Nullable
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder) {
         final SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor;
+        Cursor cursor = null;
+        long start = DbDiagnostics.startRead();
 
         int match = sUriMatcher.match(uri);
         switch (match) {
             case RECIPE_WITH_ID_MATCH:
+            case INGREDIENT_WITH_ID_MATCH:
+            case STEP_WITH_ID_MATCH:
                 // ignore selection & selectionArgs arguments as have id in uri
                 selection = ID_EQ_SELECTION;
                 selectionArgs = UriUtils.getIdSelectionArgFromWithIdUri(uri);
                 // fall through
             case RECIPE_MATCH:
-                // process query
+                if (uri.getQueryParameter(QUERY_PARAM_AFTER_ID) != null) {
+                    // keyset page, next rows in id order
+                    String afterId = String.valueOf(getIntQueryParameter(uri, QUERY_PARAM_AFTER_ID, 0));
+                    selection = TextUtils.isEmpty(selection) ?
+                            ID_GT_SELECTION : "(" + selection + ") AND " + ID_GT_SELECTION;
+                    selectionArgs = appendArg(selectionArgs, afterId);
+                    sortOrder = BakingContract.RecipeEntry._ID;
+                }
+                break;
+            case RECIPE_INGREDIENTS_MATCH:
+            case RECIPE_STEPS_MATCH:
+                // ignore selection & selectionArgs arguments as have recipe id in uri
+                selection = RECIPE_ID_EQ_SELECTION;
+                selectionArgs = new String[] { uri.getPathSegments().get(RECIPE_ID_SEGMENT) };
+                // fall through
+            case INGREDIENT_MATCH:
+            case STEP_MATCH:
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = getDefaultSortOrder(match);
+                }
+                break;
+            case RECIPE_SEARCH_MATCH:
+                // ignore projection, selection, selectionArgs & sortOrder arguments as have search in uri
+                cursor = searchRecipes(db, uri);
+                break;
+            case FEED_MATCH:
                 break;
             default:
                 throwUnsupportedException(uri, "query");
         }
 
-        cursor = db.query(getTable(match), projection, selection, selectionArgs, null, null, sortOrder);
+        if (match != RECIPE_SEARCH_MATCH) {
+            String limit = null;
+            int maxRows = getIntQueryParameter(uri, QUERY_PARAM_LIMIT, 0);
+            if (maxRows > 0) {
+                limit = String.valueOf(maxRows);
+            }
+            cursor = db.query(getTable(match), projection, selection, selectionArgs, null, null, sortOrder, limit);
+        }
+        DbDiagnostics.endRead(start);
 
         // Set a notification URI on the Cursor
         Context context = getContext();
@@ -150,9 +287,39 @@ public class BakingContentProvider extends ContentProvider {
         switch (match) {
             case RECIPE_MATCH:
             case RECIPE_WITH_ID_MATCH:
-                long id = db.insert(getTable(match), null, contentValues);
-                if (id > 0) {
-                    resultUri = ContentUris.withAppendedId(uri, id);
+                if (contentValues != null) {
+                    long id = -1;
+                    DbDiagnostics.beginTransaction(db);
+                    try {
+                        id = RecipeTableWriter.insertRecipe(db, contentValues);
+                        db.setTransactionSuccessful();
+                    } catch (SQLException e) {
+                        if (e instanceof SQLiteDatabaseLockedException) {
+                            DbDiagnostics.busy();
+                        }
+                        Timber.e("Unable to insert recipe", e);
+                    } finally {
+                        db.endTransaction();
+                    }
+                    if (id > 0) {
+                        resultUri = ContentUris.withAppendedId(uri, id);
+                    }
+                }
+                break;
+            case FEED_MATCH:
+                if (contentValues != null) {
+                    // url is unique, so an insert replaces the existing row for the feed
+                    long id;
+                    DbDiagnostics.beginTransaction(db);
+                    try {
+                        id = db.insert(getTable(match), null, contentValues);
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    if (id > 0) {
+                        resultUri = ContentUris.withAppendedId(uri, id);
+                    }
                 }
                 break;
             default:
@@ -176,7 +343,22 @@ public class BakingContentProvider extends ContentProvider {
         switch (match) {
             case RECIPE_MATCH:
             case RECIPE_WITH_ID_MATCH:
-                count = db.delete(getTable(match), selection, selectionArgs);
+                DbDiagnostics.beginTransaction(db);
+                try {
+                    count = db.delete(getTable(match), selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                break;
+            case FEED_MATCH:
+                DbDiagnostics.beginTransaction(db);
+                try {
+                    count = db.delete(getTable(match), selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 break;
             default:
                 throwUnsupportedException(uri, "delete");
@@ -199,7 +381,36 @@ public class BakingContentProvider extends ContentProvider {
         switch (match) {
             case RECIPE_MATCH:
             case RECIPE_WITH_ID_MATCH:
-                count = db.update(getTable(match), contentValues, selection, selectionArgs);
+                if (contentValues != null) {
+                    byte[] data = contentValues.getAsByteArray(BakingContract.RecipeEntry.COLUMN_DATA);
+                    if (data != null) {
+                        if (!contentValues.containsKey(BakingContract.RecipeEntry.COLUMN_HASH)) {
+                            contentValues.put(BakingContract.RecipeEntry.COLUMN_HASH, RecipeCodec.hash(data));
+                        }
+                        contentValues.put(BakingContract.RecipeEntry.COLUMN_SIZE, data.length);
+                    }
+                }
+                DbDiagnostics.beginTransaction(db);
+                try {
+                    count = db.update(getTable(match), contentValues, selection, selectionArgs);
+                    if ((count > 0) && (contentValues != null) &&
+                            contentValues.containsKey(BakingContract.RecipeEntry.COLUMN_DATA)) {
+                        // recipe content changed so update ingredients & steps to match
+                        RecipeTableWriter.rewriteChildren(db, selection, selectionArgs);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                break;
+            case FEED_MATCH:
+                DbDiagnostics.beginTransaction(db);
+                try {
+                    count = db.update(getTable(match), contentValues, selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 break;
             default:
                 throwUnsupportedException(uri, "update");
@@ -218,7 +429,8 @@ public class BakingContentProvider extends ContentProvider {
         final SQLiteDatabase db = dbHelper.getWritableDatabase();
         long[] ids = null;
         int inserted = 0;
-        db.beginTransaction();
+        long start = System.nanoTime();
+        DbDiagnostics.beginTransaction(db);
         try {
             int match = sUriMatcher.match(uri);
             switch (match) {
@@ -239,17 +451,174 @@ public class BakingContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
+        DbDiagnostics.recordBatch("bulkInsert", inserted, System.nanoTime() - start);
         return inserted;
     }
 
+    /**
+     * Apply a batch of operations in a single transaction, so either all or none of the operations
+     * are applied. Change notifications are deferred until the transaction has been committed.
+     * @param operations    Operations to apply
+     * @return  Results of the operations
+     * @throws OperationApplicationException if any operation fails
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+                                                    throws OperationApplicationException {
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        Set<Uri> notifications = new HashSet<>();
+        long start = System.nanoTime();
+        DbDiagnostics.beginTransaction(db);
+        batchNotifications.set(notifications);
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            batchNotifications.remove();
+            db.endTransaction();
+        }
+        DbDiagnostics.recordBatch("applyBatch", operations.size(), System.nanoTime() - start);
+
+        for (Uri uri : notifications) {
+            notifyChange(uri, null);
+        }
+        return results;
+    }
+
+    /**
+     * Search the recipes full-text index.<br>
+     * Results are ranked with recipe name matches first, followed by the number of matching terms,
+     * and are paged according to the limit & offset query parameters of the uri.
+     * @param db    Database to search
+     * @param uri   Search uri
+     * @return  Cursor of matching recipe rows with a snippet column
+     * @see BakingContract.SearchEntry
+     */
+    private Cursor searchRecipes(SQLiteDatabase db, Uri uri) {
+        Cursor cursor;
+        String terms = toMatchQuery(uri.getQueryParameter(SearchEntry.QUERY_PARAM_QUERY));
+        if (TextUtils.isEmpty(terms)) {
+            cursor = new MatrixCursor(SEARCH_COLUMNS, 0);
+        } else {
+            int limit = getIntQueryParameter(uri, SearchEntry.QUERY_PARAM_LIMIT, SearchEntry.DEFAULT_LIMIT);
+            int offset = getIntQueryParameter(uri, SearchEntry.QUERY_PARAM_OFFSET, 0);
+
+            cursor = db.rawQuery(SEARCH_SQL + " LIMIT " + limit + " OFFSET " + offset, new String[] { terms });
+        }
+        return cursor;
+    }
+
+    /**
+     * Convert user entered text to a full-text search query, with each word treated as a prefix and
+     * all words required to match
+     * @param text  Text to convert
+     * @return  Match query or empty string if no searchable words
+     */
+    private static String toMatchQuery(String text) {
+        StringBuilder sb = new StringBuilder();
+        if (!TextUtils.isEmpty(text)) {
+            // drop any fts syntax characters so user input can't produce an invalid query
+            for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+                if (!TextUtils.isEmpty(word)) {
+                    if (sb.length() > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(word).append('*');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append an argument to a selection arguments array
+     * @param selectionArgs Array to append to, may be <code>null</code>
+     * @param arg           Argument to append
+     * @return  new array
+     */
+    private static String[] appendArg(@Nullable String[] selectionArgs, String arg) {
+        String[] args;
+        if (selectionArgs == null) {
+            args = new String[] { arg };
+        } else {
+            args = Arrays.copyOf(selectionArgs, selectionArgs.length + 1);
+            args[selectionArgs.length] = arg;
+        }
+        return args;
+    }
+
+    /**
+     * Get a non-negative integer query parameter from a uri
+     * @param uri           Uri to get parameter from
+     * @param key           Parameter key
+     * @param defaultValue  Value to return if parameter is not present or invalid
+     * @return  parameter value
+     */
+    private static int getIntQueryParameter(Uri uri, String key, int defaultValue) {
+        int value = defaultValue;
+        String param = uri.getQueryParameter(key);
+        if (!TextUtils.isEmpty(param)) {
+            try {
+                value = Integer.parseInt(param);
+                if (value < 0) {
+                    value = defaultValue;
+                }
+            } catch (NumberFormatException e) {
+                Timber.e("Invalid query parameter " + key, e);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Insert or replace rows in a table, reusing compiled statements for all the rows
+     * @param db        Database to insert into
+     * @param table     Table to insert into
+     * @param values    Row values
+     * @return  Array of row ids
+     */
     private long[] insertValues(SQLiteDatabase db, String table, ContentValues[] values) {
         long[] ids = new long[values.length];
-        for (int i = 0; i < values.length; i++) {
-            ids[i] = db.insertOrThrow(table, null, values[i]);
+        if (BakingContract.RecipeEntry.TABLE_NAME.equals(table)) {
+            RecipeTableWriter writer = new RecipeTableWriter(db);
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    ids[i] = writer.upsert(values[i], null);
+                }
+            } finally {
+                writer.close();
+            }
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                ids[i] = db.insertOrThrow(table, null, values[i]);
+            }
         }
         return ids;
     }
 
+    /**
+     * Get the byte budget for an eviction
+     * @param arg   Budget argument passed to {@link #call(String, String, Bundle)}
+     * @return  budget in bytes; the configured budget if the argument is missing or invalid
+     */
+    private long getEvictionBudget(@Nullable String arg) {
+        long budget = -1;
+        if (!TextUtils.isEmpty(arg)) {
+            try {
+                budget = Long.parseLong(arg);
+            } catch (NumberFormatException e) {
+                Timber.w("Invalid eviction budget: " + arg);
+            }
+        }
+        if (budget < 0) {
+            Context context = getContext();
+            budget = (context != null ? RecipeEvictor.getBudget(context) : Long.MAX_VALUE); // no budget, no eviction
+        }
+        return budget;
+    }
+
     @Nullable
     @Override
     public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
@@ -264,6 +633,14 @@ public class BakingContentProvider extends ContentProvider {
                     Timber.e("Invalid url", e);
                 }
                 break;
+            case EVICT:     // evict least recently accessed recipes over the byte budget
+                bundle = RecipeEvictor.evict(dbHelper.getWritableDatabase(), getEvictionBudget(arg));
+                if (bundle.getInt(RecipeEvictor.RESULT_EVICTED) > 0) {
+                    // cached recipes no longer match the feed, so the next sync must download it
+                    delete(BakingContract.FeedEntry.CONTENT_URI, null, null);
+                    notifyChange(BakingContract.RecipeEntry.CONTENT_URI, null);
+                }
+                break;
             default:
                 throwUnsupportedException(null, method);
         }
@@ -298,9 +675,17 @@ public class BakingContentProvider extends ContentProvider {
 
         switch (match) {
             case RECIPE_MATCH:
+            case RECIPE_INGREDIENTS_MATCH:
+            case RECIPE_STEPS_MATCH:
+            case RECIPE_SEARCH_MATCH:
+            case INGREDIENT_MATCH:
+            case STEP_MATCH:
+            case FEED_MATCH:
                 type = "vnd.android.cursor.dir" + type;
                 break;
             case RECIPE_WITH_ID_MATCH:
+            case INGREDIENT_WITH_ID_MATCH:
+            case STEP_WITH_ID_MATCH:
                 type = "vnd.android.cursor.item" + type;
                 break;
             default:
@@ -321,12 +706,51 @@ public class BakingContentProvider extends ContentProvider {
             case RECIPE_WITH_ID_MATCH:
                 table = BakingContract.RecipeEntry.TABLE_NAME;
                 break;
+            case RECIPE_INGREDIENTS_MATCH:
+            case INGREDIENT_MATCH:
+            case INGREDIENT_WITH_ID_MATCH:
+                table = BakingContract.IngredientEntry.TABLE_NAME;
+                break;
+            case RECIPE_STEPS_MATCH:
+            case STEP_MATCH:
+            case STEP_WITH_ID_MATCH:
+                table = BakingContract.StepEntry.TABLE_NAME;
+                break;
+            case RECIPE_SEARCH_MATCH:
+                table = SearchEntry.TABLE_NAME;
+                break;
+            case FEED_MATCH:
+                table = BakingContract.FeedEntry.TABLE_NAME;
+                break;
             default:
                 throw new UnsupportedOperationException("No table for unknown match: " + match);
         }
         return table;
     }
 
+    /**
+     * Get the default sort order corresponding to the specified match id
+     * @param match     Match id
+     * @return  Sort order or <code>null</code> if no default
+     */
+    private String getDefaultSortOrder(int match) {
+        String sortOrder;
+        switch (match) {
+            case RECIPE_INGREDIENTS_MATCH:
+            case INGREDIENT_MATCH:
+                sortOrder = BakingContract.IngredientEntry.DEFAULT_SORT_ORDER;
+                break;
+            case RECIPE_STEPS_MATCH:
+            case STEP_MATCH:
+                sortOrder = BakingContract.StepEntry.DEFAULT_SORT_ORDER;
+                break;
+            default:
+                sortOrder = null;
+                break;
+        }
+        return sortOrder;
+    }
+
     /**
      * Get the Content Uri corresponding to the specified match id
      * @param match     Match id
@@ -337,8 +761,22 @@ public class BakingContentProvider extends ContentProvider {
         switch (match) {
             case RECIPE_MATCH:
             case RECIPE_WITH_ID_MATCH:
+            case RECIPE_SEARCH_MATCH:
                 uri = BakingContract.RecipeEntry.CONTENT_URI;
                 break;
+            case RECIPE_INGREDIENTS_MATCH:
+            case INGREDIENT_MATCH:
+            case INGREDIENT_WITH_ID_MATCH:
+                uri = BakingContract.IngredientEntry.CONTENT_URI;
+                break;
+            case RECIPE_STEPS_MATCH:
+            case STEP_MATCH:
+            case STEP_WITH_ID_MATCH:
+                uri = BakingContract.StepEntry.CONTENT_URI;
+                break;
+            case FEED_MATCH:
+                uri = BakingContract.FeedEntry.CONTENT_URI;
+                break;
             default:
                 throw new UnsupportedOperationException("No uri for unknown match: " + match);
         }
@@ -386,9 +824,22 @@ public class BakingContentProvider extends ContentProvider {
      * @param observer  The observer that originated the change
      */
     private void notifyChange(@NonNull Uri uri, ContentObserver observer) {
+        Set<Uri> pending = batchNotifications.get();
         Context context = getContext();
-        if (context != null) {
-            context.getContentResolver().notifyChange(uri, observer);
+        if ("false".equals(uri.getQueryParameter(QUERY_PARAM_NOTIFY))) {
+            Timber.d("Notification suppressed for " + uri);
+        } else if (pending != null) {
+            // applying a batch, notify once it has been committed
+            pending.add(uri);
+        } else if (context != null) {
+            ContentResolver resolver = context.getContentResolver();
+            resolver.notifyChange(uri, observer);
+            int match = sUriMatcher.match(uri);
+            if ((match == RECIPE_MATCH) || (match == RECIPE_WITH_ID_MATCH)) {
+                // ingredients & steps are derived from recipes, so they change too
+                resolver.notifyChange(BakingContract.IngredientEntry.CONTENT_URI, observer);
+                resolver.notifyChange(BakingContract.StepEntry.CONTENT_URI, observer);
+            }
         }
     }
 
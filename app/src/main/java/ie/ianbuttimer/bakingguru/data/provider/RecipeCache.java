@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ie.ianbuttimer.bakingguru.data.provider;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ie.ianbuttimer.bakingguru.bake.Recipe;
+import timber.log.Timber;
+
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.CONTENT_URI;
+
+/**
+ * Process-wide, size-bounded LRU cache of decoded recipes, keyed by recipe id and row version
+ * (the content hash of the recipe data).<br>
+ * Entries are invalidated by a ContentObserver on the recipes uri, and are also checked against
+ * the row version whenever a cursor is available. Cached objects are shared, so must be treated as
+ * read-only.
+ */
+@SuppressWarnings("unused")
+public final class RecipeCache {
+
+    /** Maximum number of recipes to cache */
+    public static final int MAX_ENTRIES = 32;
+
+    private static final AtomicLong sHits = new AtomicLong();           // requests satisfied from the cache
+    private static final AtomicLong sMisses = new AtomicLong();         // requests not in the cache
+    private static final AtomicLong sEvictions = new AtomicLong();      // entries evicted to make space
+    private static final AtomicLong sInvalidations = new AtomicLong();  // entries removed due to a change
+
+    private static final LruCache<Integer, Entry> sCache = new LruCache<Integer, Entry>(MAX_ENTRIES) {
+        @Override
+        protected void entryRemoved(boolean evicted, Integer key, Entry oldValue, Entry newValue) {
+            if (evicted) {
+                sEvictions.incrementAndGet();
+            }
+        }
+    };
+
+    private static ContentObserver sObserver;
+
+    /**
+     * Cache entry
+     */
+    private static class Entry {
+        final long version;     // row version
+        final Recipe recipe;    // decoded recipe
+        final boolean summary;  // recipe only contains summary info
+
+        Entry(long version, Recipe recipe, boolean summary) {
+            this.version = version;
+            this.recipe = recipe;
+            this.summary = summary;
+        }
+
+        /**
+         * Check if this entry satisfies a request
+         * @param version   Required row version
+         * @param summary   Summary info is sufficient flag
+         * @return  <code>true</code> if entry can be used
+         */
+        boolean satisfies(long version, boolean summary) {
+            return (this.version == version) && (summary || !this.summary);
+        }
+    }
+
+    /**
+     * Private constructor
+     */
+    private RecipeCache() {
+        // can't instantiate class
+    }
+
+    /**
+     * Register the observer which invalidates the cache when recipes change
+     * @param context   Current context
+     */
+    public static synchronized void register(@NonNull Context context) {
+        if (sObserver == null) {
+            sObserver = new ContentObserver(null) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    invalidateAll();
+                }
+
+                @Override
+                public void onChange(boolean selfChange, Uri uri) {
+                    if (uri == null) {
+                        invalidateAll();
+                    } else {
+                        invalidate(uri);
+                    }
+                }
+            };
+            context.getContentResolver().registerContentObserver(CONTENT_URI, true, sObserver);
+        }
+    }
+
+    /**
+     * Unregister the observer which invalidates the cache, and clear the cache
+     * @param context   Current context
+     */
+    public static synchronized void unregister(@NonNull Context context) {
+        if (sObserver != null) {
+            context.getContentResolver().unregisterContentObserver(sObserver);
+            sObserver = null;
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Get a recipe from the cache
+     * @param id        Id of recipe
+     * @param version   Row version of recipe
+     * @param summary   Summary info is sufficient flag
+     * @return  Recipe object or <code>null</code> if not in the cache
+     */
+    public static @Nullable Recipe get(int id, long version, boolean summary) {
+        Recipe recipe = null;
+        Entry entry = sCache.get(id);
+        if ((entry != null) && entry.satisfies(version, summary)) {
+            recipe = entry.recipe;
+            sHits.incrementAndGet();
+        } else {
+            sMisses.incrementAndGet();
+        }
+        return recipe;
+    }
+
+    /**
+     * Add a recipe to the cache
+     * @param version   Row version of recipe
+     * @param recipe    Recipe to add
+     * @param summary   Recipe only contains summary info flag
+     */
+    public static void put(long version, @Nullable Recipe recipe, boolean summary) {
+        if (recipe != null) {
+            Entry entry = sCache.get(recipe.getId());
+            // don't replace a full recipe with a summary of the same version
+            if ((entry == null) || !summary || !entry.satisfies(version, false)) {
+                sCache.put(recipe.getId(), new Entry(version, recipe, summary));
+            }
+        }
+    }
+
+    /**
+     * Invalidate the cache entries affected by a change notification
+     * @param uri   Uri of the change
+     */
+    private static void invalidate(@NonNull Uri uri) {
+        List<String> base = CONTENT_URI.getPathSegments();
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() == base.size()) {
+            invalidateAll();    // whole table
+        } else if ((segments.size() > base.size()) && TextUtils.isDigitsOnly(segments.get(base.size()))) {
+            try {
+                invalidate(Integer.parseInt(segments.get(base.size())));
+            } catch (NumberFormatException e) {
+                invalidateAll();
+            }
+        }
+        // else search or derived table uri, recipes not affected
+    }
+
+    /**
+     * Invalidate a cache entry
+     * @param id    Id of recipe
+     */
+    public static void invalidate(int id) {
+        if (sCache.remove(id) != null) {
+            sInvalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Invalidate all cache entries
+     */
+    public static void invalidateAll() {
+        // not evictAll(), as that would be counted as evictions
+        Set<Integer> keys = sCache.snapshot().keySet();
+        for (Integer id : keys) {
+            invalidate(id);
+        }
+        if (!keys.isEmpty()) {
+            Timber.d("Recipe cache cleared");
+        }
+    }
+
+    public static long getHits() {
+        return sHits.get();
+    }
+
+    public static long getMisses() {
+        return sMisses.get();
+    }
+
+    public static long getEvictions() {
+        return sEvictions.get();
+    }
+
+    public static long getInvalidations() {
+        return sInvalidations.get();
+    }
+
+    public static int getSize() {
+        return sCache.size();
+    }
+
+    /**
+     * Reset all counters
+     */
+    public static void reset() {
+        sHits.set(0);
+        sMisses.set(0);
+        sEvictions.set(0);
+        sInvalidations.set(0);
+    }
+
+    /**
+     * Get a summary of the counters
+     * @return  summary string
+     */
+    public static String getSummary() {
+        return String.format(Locale.US, "size=%d, hits=%d, misses=%d, evictions=%d, invalidations=%d",
+                getSize(), getHits(), getMisses(), getEvictions(), getInvalidations());
+    }
+}
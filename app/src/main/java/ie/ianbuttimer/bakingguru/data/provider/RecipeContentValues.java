@@ -19,14 +19,15 @@ package ie.ianbuttimer.bakingguru.data.provider;
 
 import android.content.ContentValues;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 
 import java.util.Date;
 
 import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.RecipeCodec;
 import ie.ianbuttimer.bakingguru.utils.DbUtils;
 
-import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_JSON;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_DATA;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_HASH;
 import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_TIMESTAMP;
 
 /**
@@ -54,13 +55,26 @@ public class RecipeContentValues extends DbContentValues {
         }
 
         /**
-         * Set the JSON string
-         * @param json  Json string to set
+         * Set the binary data
+         * @param data  Binary data to set
          * @return  Builder to facilitate chaining
          */
-        public Builder setJson(String json) {
-            if (!TextUtils.isEmpty(json)) {
-                cv.put(COLUMN_JSON, json);
+        public Builder setData(byte[] data) {
+            if ((data != null) && (data.length > 0)) {
+                cv.put(COLUMN_DATA, data);
+                cv.put(COLUMN_HASH, RecipeCodec.hash(data));
+            }
+            return this;
+        }
+
+        /**
+         * Set the binary data from a recipe
+         * @param recipe    Recipe to set
+         * @return  Builder to facilitate chaining
+         */
+        public Builder setRecipe(Recipe recipe) {
+            if (recipe != null) {
+                setData(RecipeCodec.encode(recipe));
             }
             return this;
         }
@@ -112,7 +126,7 @@ public class RecipeContentValues extends DbContentValues {
                     .setTimestamp();
 
             for (int i = 0; i < length; i++) {
-                builder.setJson(recipes[i].toJson())
+                builder.setRecipe(recipes[i])
                         .setId(recipes[i].getId());
                 cvArray[i] = builder.build();
             }
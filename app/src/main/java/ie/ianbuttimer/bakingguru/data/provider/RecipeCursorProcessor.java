@@ -20,14 +20,22 @@ package ie.ianbuttimer.bakingguru.data.provider;
 import android.database.Cursor;
 import android.support.annotation.Nullable;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
 
 import ie.ianbuttimer.bakingguru.bake.Recipe;
+import ie.ianbuttimer.bakingguru.bake.RecipeCodec;
+import ie.ianbuttimer.bakingguru.data.ParallelDecoder;
+import timber.log.Timber;
 
-import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_JSON;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_DATA;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry.COLUMN_HASH;
+import static ie.ianbuttimer.bakingguru.data.db.BakingContract.RecipeEntry._ID;
 
 /**
- * Class to process recipe cursors
+ * Class to process recipe cursors.<br>
+ * If the cursor includes the id and hash columns, decoded recipes are taken from/added to the
+ * {@link RecipeCache}, so only recipes which have changed are decoded.
  */
 @SuppressWarnings("unused")
 public class RecipeCursorProcessor {
@@ -47,10 +55,21 @@ public class RecipeCursorProcessor {
     public static @Nullable Recipe processSingle(Cursor cursor, int position) {
         Recipe recipe = null;
         if (cursor != null) {
-            int colIndex = cursor.getColumnIndex(COLUMN_JSON);
+            int colIndex = cursor.getColumnIndex(COLUMN_DATA);
+            int idIndex = cursor.getColumnIndex(_ID);
+            int hashIndex = cursor.getColumnIndex(COLUMN_HASH);
 
             if (cursor.moveToPosition(position)) {
-                recipe = processOne(cursor, colIndex, new Recipe());
+                boolean cacheable = isCacheable(cursor, idIndex, hashIndex);
+                if (cacheable) {
+                    recipe = RecipeCache.get(cursor.getInt(idIndex), cursor.getLong(hashIndex), false);
+                }
+                if (recipe == null) {
+                    recipe = processOne(cursor, colIndex, false);
+                    if (cacheable) {
+                        RecipeCache.put(cursor.getLong(hashIndex), recipe, false);
+                    }
+                }
             }
         }
         return recipe;
@@ -88,44 +107,138 @@ public class RecipeCursorProcessor {
      * @return  new Recipe object array or <code>null</code>
      */
     public static @Nullable Recipe[] processArray(Cursor cursor) {
+        return processArray(cursor, false);
+    }
+
+    /**
+     * Read a Recipe object array
+     * @return  new Recipe object array or <code>null</code>
+     */
+    public @Nullable Recipe[] processArray() {
+        return processArray(cursor);
+    }
+
+    /**
+     * Read a Recipe summary object array from a cursor. Only the recipe summary info is decoded,
+     * the ingredients and steps are not.
+     * @param cursor    Cursor to read from
+     * @return  new Recipe object array or <code>null</code>
+     * @see Recipe#isSummary()
+     */
+    public static @Nullable Recipe[] processSummaryArray(Cursor cursor) {
+        return processArray(cursor, true);
+    }
+
+    /**
+     * Read a Recipe summary object array
+     * @return  new Recipe object array or <code>null</code>
+     * @see Recipe#isSummary()
+     */
+    public @Nullable Recipe[] processSummaryArray() {
+        return processSummaryArray(cursor);
+    }
+
+    /**
+     * Read a Recipe object array from a cursor
+     * @param cursor    Cursor to read from
+     * @param summary   Only read recipe summary flag
+     * @return  new Recipe object array or <code>null</code>
+     */
+    private static @Nullable Recipe[] processArray(Cursor cursor, final boolean summary) {
         Recipe[] recipes = null;
         if (cursor != null) {
-            Recipe loadRecipe = new Recipe();
             int length = cursor.getCount();
             recipes = new Recipe[length];
-            int colIndex = cursor.getColumnIndex(COLUMN_JSON);
-
+            int colIndex = cursor.getColumnIndex(COLUMN_DATA);
+            int idIndex = cursor.getColumnIndex(_ID);
+            int hashIndex = cursor.getColumnIndex(COLUMN_HASH);
+
+            // take what's possible from the cache, and copy out the row data of the rest
+            final byte[][] rows = new byte[length][];
+            final int[] misses = new int[length];       // indices of rows to decode
+            final long[] versions = new long[length];   // versions of rows to decode
+            final boolean[] cacheable = new boolean[length];
+            int missCount = 0;
             if (cursor.moveToFirst()) {
                 for (int i = 0; i < length; ++i) {
-                    recipes[i] = processOne(cursor, colIndex, loadRecipe);
+                    cacheable[i] = isCacheable(cursor, idIndex, hashIndex);
+                    if (cacheable[i]) {
+                        versions[i] = cursor.getLong(hashIndex);
+                        recipes[i] = RecipeCache.get(cursor.getInt(idIndex), versions[i], summary);
+                    }
+                    if (recipes[i] == null) {
+                        rows[i] = cursor.getBlob(colIndex);
+                        misses[missCount++] = i;
+                    }
                     cursor.moveToNext();
                 }
             }
+
+            if (missCount > 0) {
+                // cursors aren't thread safe, so decode the copied row data, in parallel if worthwhile
+                try {
+                    List<Recipe> list = ParallelDecoder.decode(missCount, new ParallelDecoder.IElementDecoder<Recipe>() {
+                        @Override
+                        public Recipe decode(int index) throws IOException {
+                            return processOne(rows[misses[index]], summary);
+                        }
+                    });
+                    for (int i = 0; i < missCount; ++i) {
+                        recipes[misses[i]] = list.get(i);
+                    }
+                } catch (IOException e) {
+                    Timber.e("Unable to decode recipes", e);
+                }
+            }
+
+            for (int i = 0; i < missCount; ++i) {
+                int row = misses[i];
+                if (cacheable[row]) {
+                    RecipeCache.put(versions[row], recipes[row], summary);
+                }
+            }
         }
         return recipes;
     }
 
     /**
-     * Read a Recipe object array
-     * @return  new Recipe object array or <code>null</code>
+     * Check if the current cursor row may be cached
+     * @param cursor    Cursor to check
+     * @param idIndex   Id column index
+     * @param hashIndex Hash column index
+     * @return  <code>true</code> if cacheable
      */
-    public @Nullable Recipe[] processArray() {
-        return processArray(cursor);
+    private static boolean isCacheable(Cursor cursor, int idIndex, int hashIndex) {
+        return (idIndex >= 0) && (hashIndex >= 0) && !cursor.isNull(hashIndex);
     }
 
     /**
      * Read a recipe from a cursor
      * @param cursor        Cursor to read from
      * @param colIndex      Data column index
-     * @param loadRecipe    Object to process reading
+     * @param summary       Only read recipe summary flag
      * @return  new Recipe object
      */
-    private static @Nullable Recipe processOne(Cursor cursor, int colIndex, Recipe loadRecipe) {
+    private static @Nullable Recipe processOne(Cursor cursor, int colIndex, boolean summary) {
+        return processOne(cursor.getBlob(colIndex), summary);
+    }
+
+    /**
+     * Decode a recipe
+     * @param data          Data to decode
+     * @param summary       Only read recipe summary flag
+     * @return  new Recipe object
+     */
+    private static @Nullable Recipe processOne(byte[] data, boolean summary) {
         Recipe result = null;
         try {
-            result = loadRecipe.read(cursor.getString(colIndex));
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            if (summary) {
+                result = RecipeCodec.decodeSummary(data);
+            } else {
+                result = RecipeCodec.decode(data);
+            }
+        } catch (IOException e) {
+            Timber.e("Unable to decode recipe", e);
         }
         return result;
     }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.network;
+
+import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+
+/**
+ * Http cache diagnostic counters, recording how each response was satisfied.
+ * The network interceptor records every response, and the summary is logged as each recipe load completes.
+ */
+@SuppressWarnings("unused")
+public final class HttpCacheDiagnostics {
+
+    private static final AtomicLong sHits = new AtomicLong();             // responses served from the cache
+    private static final AtomicLong sConditionalHits = new AtomicLong();  // cached responses validated by a 304
+    private static final AtomicLong sNetwork = new AtomicLong();          // responses transferred from the network
+    private static final AtomicLong sStaleRevalidate = new AtomicLong();  // stale responses served while revalidating
+    private static final AtomicLong sStaleIfError = new AtomicLong();     // stale responses served as the network failed
+    private static final AtomicLong sRevalidations = new AtomicLong();    // background revalidations started
+
+    /**
+     * Private constructor
+     */
+    private HttpCacheDiagnostics() {
+        // can't instantiate class
+    }
+
+    /**
+     * Record how a response was satisfied
+     * @param response  Response to record
+     */
+    public static void record(Response response) {
+        Response network = response.networkResponse();
+        if (network == null) {
+            if (response.cacheResponse() != null) {
+                sHits.incrementAndGet();
+            }
+        } else if ((network.code() == HttpURLConnection.HTTP_NOT_MODIFIED) &&
+                (response.cacheResponse() != null)) {
+            sConditionalHits.incrementAndGet();
+        } else {
+            sNetwork.incrementAndGet();
+        }
+    }
+
+    /** Record a stale response served while being revalidated */
+    public static void staleRevalidate() {
+        sStaleRevalidate.incrementAndGet();
+    }
+
+    /** Record a stale response served as the network failed */
+    public static void staleIfError() {
+        sStaleIfError.incrementAndGet();
+    }
+
+    /** Record a background revalidation */
+    public static void revalidation() {
+        sRevalidations.incrementAndGet();
+    }
+
+    public static long getHits() {
+        return sHits.get();
+    }
+
+    public static long getConditionalHits() {
+        return sConditionalHits.get();
+    }
+
+    public static long getNetwork() {
+        return sNetwork.get();
+    }
+
+    public static long getStaleRevalidate() {
+        return sStaleRevalidate.get();
+    }
+
+    public static long getStaleIfError() {
+        return sStaleIfError.get();
+    }
+
+    public static long getRevalidations() {
+        return sRevalidations.get();
+    }
+
+    /**
+     * Reset all counters
+     */
+    public static void reset() {
+        sHits.set(0);
+        sConditionalHits.set(0);
+        sNetwork.set(0);
+        sStaleRevalidate.set(0);
+        sStaleIfError.set(0);
+        sRevalidations.set(0);
+    }
+
+    /**
+     * Get a summary of the counters
+     * @return  summary string
+     */
+    public static String getSummary() {
+        return String.format(Locale.US,
+                "hits=%d, conditional=%d, network=%d, stale-while-revalidate=%d, stale-if-error=%d, revalidations=%d",
+                getHits(), getConditionalHits(), getNetwork(), getStaleRevalidate(), getStaleIfError(), getRevalidations());
+    }
+}
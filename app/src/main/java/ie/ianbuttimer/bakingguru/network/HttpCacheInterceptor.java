@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.network;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.CacheControl;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import timber.log.Timber;
+
+/**
+ * Application interceptor implementing the http cache policy on top of the OkHttp cache.<br>
+ * <ul>
+ *     <li>stale-while-revalidate: a cached response which is stale by no more than the revalidate
+ *     period is served immediately, and revalidated by a background request</li>
+ *     <li>stale-if-error: if the network is unavailable or the server fails, a cached response
+ *     which is stale by no more than the error period is served</li>
+ * </ul>
+ * Requests with their own cache control or conditional headers are passed through unchanged.
+ * @see ForceCacheInterceptor
+ */
+@SuppressWarnings("unused")
+public class HttpCacheInterceptor implements Interceptor {
+
+    /** OkHttp warning code added to stale cached responses */
+    private static final String WARNING_STALE = "110";
+
+    /** Tag identifying background revalidation requests */
+    private static final Object REVALIDATE_TAG = new Object();
+
+    private final Context mContext;
+    private final HttpCachePolicy mPolicy;
+    private final Set<String> mRevalidating = Collections.synchronizedSet(new HashSet<String>());
+    private volatile OkHttpClient mClient;  // client to make revalidation requests with
+
+    /**
+     * Constructor
+     * @param context   The current context
+     * @param policy    Cache policy
+     */
+    public HttpCacheInterceptor(@NonNull Context context, @NonNull HttpCachePolicy policy) {
+        this.mContext = context.getApplicationContext();
+        this.mPolicy = policy;
+    }
+
+    /**
+     * Set the client to make background revalidation requests with
+     * @param client    Client which this interceptor was added to
+     */
+    public void setClient(OkHttpClient client) {
+        this.mClient = client;
+    }
+
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response;
+
+        if (!isPolicyRequest(request)) {
+            response = chain.proceed(request);
+        } else {
+            response = null;
+            int swr = mPolicy.getStaleWhileRevalidateSecs();
+            if (swr > 0) {
+                response = getCached(chain, request, swr);
+                if ((response != null) && isStale(response)) {
+                    HttpCacheDiagnostics.staleRevalidate();
+                    revalidate(request);
+                }
+            }
+            if (response == null) {
+                if (!NetworkStatusReceiver.isInternetAvailable(mContext)) {
+                    // don't wait for the connection to time out
+                    response = getStaleIfError(chain, request);
+                }
+                if (response == null) {
+                    response = getNetwork(chain, request);
+                }
+            }
+        }
+        HttpCacheDiagnostics.record(response);
+        return response;
+    }
+
+    /**
+     * Check if the cache policy applies to a request
+     * @param request   Request to check
+     * @return  <code>true</code> if the policy applies
+     */
+    private boolean isPolicyRequest(Request request) {
+        CacheControl cacheControl = request.cacheControl();
+        return "GET".equals(request.method()) &&
+                (request.tag() != REVALIDATE_TAG) &&
+                !cacheControl.noCache() && !cacheControl.onlyIfCached() &&
+                (request.header(NetworkUtils.HEADER_IF_NONE_MATCH) == null) &&
+                (request.header(NetworkUtils.HEADER_IF_MODIFIED_SINCE) == null);
+    }
+
+    /**
+     * Make a request from the network, falling back to a stale response if it fails
+     * @param chain     Interceptor chain
+     * @param request   Request to make
+     * @return  Response
+     * @throws IOException If the request failed and there was no stale response
+     */
+    private Response getNetwork(Chain chain, Request request) throws IOException {
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            response = getStaleIfError(chain, request);
+            if (response == null) {
+                throw e;
+            }
+        }
+        if (response.code() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            Response stale = getStaleIfError(chain, request);
+            if (stale != null) {
+                response.close();
+                response = stale;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Get a stale response permitted by the stale-if-error period
+     * @param chain     Interceptor chain
+     * @param request   Request to make
+     * @return  Response or <code>null</code> if not available
+     * @throws IOException If the cache could not be read
+     */
+    private Response getStaleIfError(Chain chain, Request request) throws IOException {
+        Response response = null;
+        int sie = mPolicy.getStaleIfErrorSecs();
+        if (sie > 0) {
+            response = getCached(chain, request, sie);
+            if (response != null) {
+                HttpCacheDiagnostics.staleIfError();
+                Timber.d("Serving stale response for " + request.url());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Get a response from the cache only
+     * @param chain     Interceptor chain
+     * @param request   Request to make
+     * @param maxStale  Maximum staleness in seconds
+     * @return  Response or <code>null</code> if not available
+     * @throws IOException If the cache could not be read
+     */
+    private Response getCached(Chain chain, Request request, int maxStale) throws IOException {
+        Request cacheRequest = request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(maxStale, TimeUnit.SECONDS)
+                        .build())
+                .build();
+        Response response = chain.proceed(cacheRequest);
+        if (response.code() == HttpURLConnection.HTTP_GATEWAY_TIMEOUT) {
+            // not in cache
+            response.close();
+            response = null;
+        }
+        return response;
+    }
+
+    /**
+     * Check if a cached response is stale
+     * @param response  Response to check
+     * @return  <code>true</code> if stale
+     */
+    private boolean isStale(Response response) {
+        for (String warning : response.headers("Warning")) {
+            if (warning.startsWith(WARNING_STALE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Revalidate a cached response in the background; only one revalidation per url is in flight
+     * @param request   Request to revalidate
+     */
+    private void revalidate(Request request) {
+        OkHttpClient client = mClient;
+        final String url = request.url().toString();
+        if ((client != null) && mRevalidating.add(url)) {
+            HttpCacheDiagnostics.revalidation();
+
+            // max-age 0 makes the cache send a conditional request with the cached validators
+            Request revalidateRequest = request.newBuilder()
+                    .cacheControl(new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build())
+                    .tag(REVALIDATE_TAG)
+                    .build();
+            client.newCall(revalidateRequest).enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    mRevalidating.remove(url);
+                    Timber.d("Revalidation failed for " + url);
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                    try {
+                        // the body is only written to the cache as it is consumed
+                        ResponseBody body = response.body();
+                        if (body != null) {
+                            BufferedSource source = body.source();
+                            while (!source.exhausted()) {
+                                source.skip(source.buffer().size());
+                            }
+                        }
+                    } finally {
+                        response.close();
+                        mRevalidating.remove(url);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Network interceptor which makes successful responses cacheable for the policy's max-age,
+     * irrespective of the server's cache headers
+     */
+    public static class ForceCacheInterceptor implements Interceptor {
+
+        private final int mMaxAgeSecs;
+
+        /**
+         * Constructor
+         * @param policy    Cache policy
+         */
+        public ForceCacheInterceptor(@NonNull HttpCachePolicy policy) {
+            this.mMaxAgeSecs = policy.getMaxAgeSecs();
+        }
+
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Request request = chain.request();
+            Response response = chain.proceed(request);
+            if ((mMaxAgeSecs > 0) && "GET".equals(request.method()) && response.isSuccessful()) {
+                response = response.newBuilder()
+                        .removeHeader("Pragma")
+                        .header("Cache-Control", "public, max-age=" + mMaxAgeSecs)
+                        .build();
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 Ian Buttimer.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ie.ianbuttimer.bakingguru.network;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import ie.ianbuttimer.bakingguru.R;
+
+/**
+ * Policy for the http response disk cache
+ */
+@SuppressWarnings("unused")
+public class HttpCachePolicy {
+
+    private final long sizeBytes;
+    private final int maxAgeSecs;
+    private final int staleWhileRevalidateSecs;
+    private final int staleIfErrorSecs;
+
+    /**
+     * Constructor
+     * @param sizeBytes                 Maximum size of the cache
+     * @param maxAgeSecs                Time a response is served without revalidation, or 0 to use the server's headers
+     * @param staleWhileRevalidateSecs  Time a stale response is served while being revalidated, or 0 to disable
+     * @param staleIfErrorSecs          Time a stale response is served if the network fails, or 0 to disable
+     */
+    private HttpCachePolicy(long sizeBytes, int maxAgeSecs, int staleWhileRevalidateSecs, int staleIfErrorSecs) {
+        this.sizeBytes = sizeBytes;
+        this.maxAgeSecs = maxAgeSecs;
+        this.staleWhileRevalidateSecs = staleWhileRevalidateSecs;
+        this.staleIfErrorSecs = staleIfErrorSecs;
+    }
+
+    /**
+     * Get the policy configured in resources
+     * @param context   The current context
+     * @return  cache policy
+     */
+    public static HttpCachePolicy fromResources(@NonNull Context context) {
+        Resources resources = context.getResources();
+        return new Builder()
+                .setSizeMb(resources.getInteger(R.integer.http_cache_size_mb))
+                .setMaxAge(resources.getInteger(R.integer.http_cache_max_age_mins), TimeUnit.MINUTES)
+                .setStaleWhileRevalidate(resources.getInteger(R.integer.http_cache_stale_while_revalidate_mins), TimeUnit.MINUTES)
+                .setStaleIfError(resources.getInteger(R.integer.http_cache_stale_if_error_mins), TimeUnit.MINUTES)
+                .build();
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public int getMaxAgeSecs() {
+        return maxAgeSecs;
+    }
+
+    public int getStaleWhileRevalidateSecs() {
+        return staleWhileRevalidateSecs;
+    }
+
+    public int getStaleIfErrorSecs() {
+        return staleIfErrorSecs;
+    }
+
+    /**
+     * Builder class for HttpCachePolicy objects
+     */
+    public static class Builder {
+
+        private long sizeBytes;
+        private int maxAgeSecs;
+        private int staleWhileRevalidateSecs;
+        private int staleIfErrorSecs;
+
+        /**
+         * Constructor
+         */
+        public Builder() {
+            sizeBytes = 10 * 1024 * 1024;
+            maxAgeSecs = 0;
+            staleWhileRevalidateSecs = 0;
+            staleIfErrorSecs = 0;
+        }
+
+        public Builder setSizeMb(int sizeMb) {
+            this.sizeBytes = (long) sizeMb * 1024 * 1024;
+            return this;
+        }
+
+        public Builder setMaxAge(int duration, TimeUnit unit) {
+            this.maxAgeSecs = toSecs(duration, unit);
+            return this;
+        }
+
+        public Builder setStaleWhileRevalidate(int duration, TimeUnit unit) {
+            this.staleWhileRevalidateSecs = toSecs(duration, unit);
+            return this;
+        }
+
+        public Builder setStaleIfError(int duration, TimeUnit unit) {
+            this.staleIfErrorSecs = toSecs(duration, unit);
+            return this;
+        }
+
+        private static int toSecs(int duration, TimeUnit unit) {
+            return (int) Math.max(0, unit.toSeconds(duration));
+        }
+
+        public HttpCachePolicy build() {
+            return new HttpCachePolicy(sizeBytes, maxAgeSecs, staleWhileRevalidateSecs, staleIfErrorSecs);
+        }
+    }
+}
@@ -21,13 +21,17 @@ import android.content.Context;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.StringRes;
+import android.text.TextUtils;
 
 import com.facebook.stetho.okhttp3.StethoInterceptor;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
@@ -36,6 +40,8 @@ import java.util.concurrent.TimeUnit;
 import ie.ianbuttimer.bakingguru.BuildConfig;
 import ie.ianbuttimer.bakingguru.R;
 import ie.ianbuttimer.bakingguru.exception.HttpException;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.Headers;
@@ -51,7 +57,16 @@ import timber.log.Timber;
 @SuppressWarnings("unused")
 public class NetworkUtils {
 
-    private final static OkHttpClient client;
+    private static volatile OkHttpClient client;
+    private static Cache cache;
+
+    /** Name of the http cache directory */
+    public static final String HTTP_CACHE_DIR = "http";
+
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
 
     static {
 
@@ -67,6 +82,90 @@ public class NetworkUtils {
         client = builder.build();
     }
 
+    /**
+     * Install the http response disk cache. Requests made before this is called are not cached.
+     * @param context   The current context
+     * @param policy    Cache policy
+     */
+    public static synchronized void init(@NonNull Context context, @NonNull HttpCachePolicy policy) {
+        if (cache == null) {
+            cache = new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIR), policy.getSizeBytes());
+
+            HttpCacheInterceptor interceptor = new HttpCacheInterceptor(context, policy);
+            client = client.newBuilder()
+                    .cache(cache)
+                    .addInterceptor(interceptor)
+                    .addNetworkInterceptor(new HttpCacheInterceptor.ForceCacheInterceptor(policy))
+                    .build();
+            interceptor.setClient(client);
+        }
+    }
+
+    /**
+     * Get the http response disk cache
+     * @return  cache or <code>null</code> if not installed
+     */
+    public static synchronized Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Interface for processing a response body as a character stream
+     * @param <T>   Type of result produced from the response body
+     */
+    public interface IResponseBodyProcessor<T> {
+
+        /**
+         * Process the response body
+         * @param reader    Reader providing the response body, decoded using the response charset
+         * @return  Result of processing
+         * @throws IOException If the response body could not be read
+         */
+        T process(Reader reader) throws IOException;
+    }
+
+    /**
+     * Result of a conditional HTTP request
+     * @param <T>   Type of result produced from the response body
+     */
+    public static class ConditionalResponse<T> {
+
+        private final boolean notModified;
+        private final T result;
+        private final String etag;
+        private final String lastModified;
+
+        /**
+         * Constructor
+         * @param notModified   <code>true</code> if the server responded 304 Not Modified
+         * @param result        Result of processing the response body, or <code>null</code> if not modified
+         * @param etag          ETag validator from the response, or <code>null</code>
+         * @param lastModified  Last-Modified validator from the response, or <code>null</code>
+         */
+        ConditionalResponse(boolean notModified, T result, String etag, String lastModified) {
+            this.notModified = notModified;
+            this.result = result;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public T getResult() {
+            return result;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
     /**
      * This method synchronously returns the entire result from a HTTP response.
      * @param url The URL to fetch the HTTP response from.
@@ -76,28 +175,70 @@ public class NetworkUtils {
      * @see <a href="https://github.com/square/okhttp/wiki/Recipes">okhttp Recipes</a>
      */
     public static String getHttpResponseStringSync(URL url) throws IOException {
-        Request request = getHttpRequest(url);
-        Call call = client.newCall(request);
         Response response = null;
-        String body = null;
+        String body;
 
         try {
-            response = call.execute();
+            response = executeSync(url);
 
-            if (!response.isSuccessful()) {
-                if (HttpException.isUnauthorised(response.code())) {
-                    throw new HttpException("Unauthorised access " + response, response);
-                } else {
-                    throw new IOException("Unexpected code " + response);
-                }
+            // response body can only be consumed once, and not on another thread
+            body = getResponseBodyString(response);
+        }
+        finally {
+            //  must close the response body to prevent resource leaks
+            if (response != null) {
+                response.close();
             }
+        }
+        return body;
+    }
+
+    /**
+     * This method synchronously processes the result from a HTTP response as it is received,
+     * without first reading the entire response body into memory.
+     * @param url       The URL to fetch the HTTP response from.
+     * @param processor Processor to handle the response body stream
+     * @param <T>       Type of result produced by the processor
+     * @return The result from the processor, or <code>null</code> if there was no response body
+     * @throws IOException If the response was not successfully received, understood, and accepted.
+     * @throws HttpException If the response was unauthorised
+     * @see <a href="https://github.com/square/okhttp/wiki/Recipes">okhttp Recipes</a>
+     */
+    public static <T> T processHttpResponseSync(URL url, @NonNull IResponseBodyProcessor<T> processor) throws IOException {
+        return processHttpResponseSync(url, processor, false);
+    }
 
-            logHeaders(response);
+    /**
+     * This method synchronously processes the result from a HTTP response as it is received,
+     * without first reading the entire response body into memory.
+     * @param url           The URL to fetch the HTTP response from.
+     * @param processor     Processor to handle the response body stream
+     * @param revalidate    <code>true</code> to bypass the http cache and get the response from the server
+     * @param <T>           Type of result produced by the processor
+     * @return The result from the processor, or <code>null</code> if there was no response body
+     * @throws IOException If the response was not successfully received, understood, and accepted.
+     * @throws HttpException If the response was unauthorised
+     * @see <a href="https://github.com/square/okhttp/wiki/Recipes">okhttp Recipes</a>
+     */
+    public static <T> T processHttpResponseSync(URL url, @NonNull IResponseBodyProcessor<T> processor,
+                                                boolean revalidate) throws IOException {
+        Response response = null;
+        T result = null;
+
+        try {
+            Request request = getHttpRequest(url);
+            if (revalidate) {
+                // no-cache requests are not subject to the cache policy, so never get a stale copy
+                request = request.newBuilder()
+                        .cacheControl(CacheControl.FORCE_NETWORK)
+                        .build();
+            }
+            response = executeSync(request, false);
 
             // response body can only be consumed once, and not on another thread
-            body = getResponseBodyString(response);
+            ResponseBody body = response.body();
             if (body != null) {
-                body = body.substring(0);
+                result = processor.process(body.charStream());
             }
         }
         finally {
@@ -106,7 +247,98 @@ public class NetworkUtils {
                 response.close();
             }
         }
-        return body;
+        return result;
+    }
+
+    /**
+     * This method synchronously makes a conditional request, only processing the response body if
+     * the resource has changed since the specified validators were received.
+     * @param url           The URL to fetch the HTTP response from.
+     * @param etag          ETag validator from a previous response, or <code>null</code>
+     * @param lastModified  Last-Modified validator from a previous response, or <code>null</code>
+     * @param processor     Processor to handle the response body stream
+     * @param <T>           Type of result produced by the processor
+     * @return The conditional response
+     * @throws IOException If the response was not successfully received, understood, and accepted.
+     * @throws HttpException If the response was unauthorised
+     * @see <a href="https://tools.ietf.org/html/rfc7232">RFC 7232 Conditional Requests</a>
+     */
+    public static <T> ConditionalResponse<T> processConditionalHttpResponseSync(URL url, String etag, String lastModified,
+                                                                                @NonNull IResponseBodyProcessor<T> processor) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(url.toString());
+        if (!TextUtils.isEmpty(etag)) {
+            builder.header(HEADER_IF_NONE_MATCH, etag);
+        }
+        if (!TextUtils.isEmpty(lastModified)) {
+            builder.header(HEADER_IF_MODIFIED_SINCE, lastModified);
+        }
+
+        Response response = null;
+        ConditionalResponse<T> conditional;
+
+        try {
+            response = executeSync(builder.build(), true);
+
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // keep the existing validators if the server didn't resend them
+                conditional = new ConditionalResponse<>(true, null,
+                        response.header(HEADER_ETAG, etag), response.header(HEADER_LAST_MODIFIED, lastModified));
+            } else {
+                T result = null;
+                ResponseBody body = response.body();
+                if (body != null) {
+                    result = processor.process(body.charStream());
+                }
+                conditional = new ConditionalResponse<>(false, result,
+                        response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED));
+            }
+        }
+        finally {
+            //  must close the response body to prevent resource leaks
+            if (response != null) {
+                response.close();
+            }
+        }
+        return conditional;
+    }
+
+    /**
+     * Synchronously execute a HTTP request and verify the response was successful.
+     * @param url The URL to fetch the HTTP response from.
+     * @return Successful response; the caller is responsible for closing it
+     * @throws IOException If the response was not successfully received, understood, and accepted.
+     * @throws HttpException If the response was unauthorised
+     */
+    private static Response executeSync(URL url) throws IOException {
+        return executeSync(getHttpRequest(url), false);
+    }
+
+    /**
+     * Synchronously execute a HTTP request and verify the response was successful.
+     * @param request           The request to execute.
+     * @param allowNotModified  Accept a 304 Not Modified response; only valid for conditional requests
+     * @return Successful response; the caller is responsible for closing it
+     * @throws IOException If the response was not successfully received, understood, and accepted.
+     * @throws HttpException If the response was unauthorised
+     */
+    private static Response executeSync(Request request, boolean allowNotModified) throws IOException {
+        Call call = client.newCall(request);
+        Response response = call.execute();
+
+        boolean notModified = allowNotModified && (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED);
+        if (!response.isSuccessful() && !notModified) {
+            response.close();
+            if (HttpException.isUnauthorised(response.code())) {
+                throw new HttpException("Unauthorised access " + response, response);
+            } else {
+                throw new IOException("Unexpected code " + response);
+            }
+        }
+
+        logHeaders(response);
+
+        return response;
     }
 
     /**
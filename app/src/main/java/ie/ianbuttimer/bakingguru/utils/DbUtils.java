@@ -48,26 +48,52 @@ public class DbUtils {
         INVALID_DATE = cal.getTime();
     }
 
-    private static SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+    /** Format of timestamps stored as text, database versions prior to 6 */
+    private static final String LEGACY_TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    /* SimpleDateFormat is not thread safe, so each thread gets its own instance */
+    private static final ThreadLocal<SimpleDateFormat> sLegacyFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(LEGACY_TIMESTAMP_FORMAT, Locale.US);
+        }
+    };
 
     /**
-     * Get a SQLite timestamp
+     * Get a database timestamp, i.e. milliseconds since the epoch
      * @param timestamp     Date & time
      * @return  timestamp
      */
-    public static String getTimestamp(Date timestamp) {
-        return sdf.format(timestamp);
+    public static long getTimestamp(Date timestamp) {
+        return timestamp.getTime();
+    }
+
+    /**
+     * Get a database timestamp for the current date & time
+     * @return  timestamp
+     */
+    public static long getTimestamp() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Convert a database timestamp to a Date
+     * @param timestamp     Milliseconds since the epoch
+     * @return  Date object
+     */
+    public static Date timestampToDate(long timestamp) {
+        return new Date(timestamp);
     }
 
     /**
-     * Convert an SQLite timestamp to a Date
+     * Convert a legacy text timestamp to a Date
      * @param timestamp     Timestamp string
      * @return  Date object
      */
     public static Date timestampToDate(String timestamp) {
         Date date;
         try {
-            date = sdf.parse(timestamp);
+            date = sLegacyFormat.get().parse(timestamp);
         } catch (ParseException e) {
             e.printStackTrace();
             date = INVALID_DATE;
@@ -76,7 +102,7 @@ public class DbUtils {
     }
 
     /**
-     * Convert an SQLite timestamp to a Date
+     * Convert a database timestamp to a Date
      * @param cursor    Cursor to get timestamp from
      * @return  Date object
      */
@@ -85,7 +111,7 @@ public class DbUtils {
     }
 
     /**
-     * Convert an SQLite timestamp to a Date
+     * Convert a database timestamp to a Date
      * @param cursor    Cursor to get timestamp from
      * @param column    Name of the column in the cursor
      * @return  Date object
@@ -93,15 +119,16 @@ public class DbUtils {
     public static Date timestampToDate(Cursor cursor, String column) {
         Date date;
         int idx = cursor.getColumnIndex(column);
-        if (idx >= 0) {
+        if (idx < 0) {
+            date = INVALID_DATE;
+        } else if (cursor.getType(idx) == Cursor.FIELD_TYPE_STRING) {
             date = timestampToDate(cursor.getString(idx));
         } else {
-            date = INVALID_DATE;
+            date = timestampToDate(cursor.getLong(idx));
         }
         return date;
     }
 
-
     /**
      * Generate an id argument array
      * @param id    id to include
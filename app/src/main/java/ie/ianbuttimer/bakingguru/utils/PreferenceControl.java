@@ -41,6 +41,16 @@ public class PreferenceControl {
                 R.string.pref_caching_key, R.bool.pref_caching_dflt_value);
     }
 
+    /**
+     * Convenience method to retrieve the refresh saved recipes setting
+     * @param context   The current context
+     * @return  <code>true</code> if saved recipes are refreshed in the background, <code>false</code> otherwise
+     */
+    public static boolean getRevalidatePreference(Context context) {
+        return getSharedBooleanPreference(context,
+                R.string.pref_revalidate_key, R.bool.pref_revalidate_dflt_value);
+    }
+
     /**
      * Convenience method to retrieve the cache length setting
      * @param context   The current context
@@ -65,6 +65,34 @@ public class UriUtils {
                 .appendPath(info).build();
     }
 
+    /**
+     * Make a recipe page uri
+     * @param afterId   Id of last recipe of the previous page, or <code>0</code> for the first page
+     * @param limit     Page size
+     * @return  Uri
+     */
+    public static Uri getRecipePageUri(int afterId, int limit) {
+        return BakingContract.RecipeEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(BakingContract.QUERY_PARAM_AFTER_ID, String.valueOf(afterId))
+                .appendQueryParameter(BakingContract.QUERY_PARAM_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+    /**
+     * Make a recipe search uri
+     * @param query     Search text
+     * @param offset    Index of first result to return
+     * @param limit     Maximum number of results to return
+     * @return  Uri
+     */
+    public static Uri getRecipeSearchUri(String query, int offset, int limit) {
+        return BakingContract.RecipeEntry.SEARCH_CONTENT_URI.buildUpon()
+                .appendQueryParameter(BakingContract.SearchEntry.QUERY_PARAM_QUERY, query)
+                .appendQueryParameter(BakingContract.SearchEntry.QUERY_PARAM_OFFSET, String.valueOf(offset))
+                .appendQueryParameter(BakingContract.SearchEntry.QUERY_PARAM_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
     /**
      * Match a uri
      * @param uri   Uri to match
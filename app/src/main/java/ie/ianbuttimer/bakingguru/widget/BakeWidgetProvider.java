@@ -35,7 +35,7 @@ import ie.ianbuttimer.bakingguru.ItemListActivity;
 import ie.ianbuttimer.bakingguru.R;
 import ie.ianbuttimer.bakingguru.bake.Recipe;
 import ie.ianbuttimer.bakingguru.data.BakeWidgetViewsService;
-import ie.ianbuttimer.bakingguru.data.JsonStringReader;
+import ie.ianbuttimer.bakingguru.data.LoadableRegistry;
 
 import static ie.ianbuttimer.bakingguru.ItemListActivity.ARG_ITEM;
 
@@ -79,8 +79,9 @@ public class BakeWidgetProvider extends AppWidgetProvider {
         CharSequence widgetText = BakeWidgetConfigureActivity.loadRecipePref(context, appWidgetId);
         Recipe recipe = null;
         if (!TextUtils.isEmpty(widgetText)) {
-            JsonStringReader<Recipe, Recipe.Loader> reader = new JsonStringReader<>(widgetText.toString(), new Recipe.Loader());
-            recipe = reader.readObject();
+            // a recipe selected from a summary list is saved with its summary flag, so the full
+            // recipe is loaded on launch
+            recipe = LoadableRegistry.read(Recipe.class, widgetText.toString());
         }
 
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.bake_widget);